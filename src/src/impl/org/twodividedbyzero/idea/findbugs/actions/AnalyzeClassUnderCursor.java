@@ -21,8 +21,6 @@ package org.twodividedbyzero.idea.findbugs.actions;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.compiler.CompileScope;
 import com.intellij.openapi.compiler.CompilerManager;
-import com.intellij.openapi.module.Module;
-import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ProjectRootManager;
@@ -33,7 +31,6 @@ import com.intellij.util.Consumer;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.jetbrains.annotations.NotNull;
 import org.twodividedbyzero.idea.findbugs.common.util.IdeaUtilImpl;
-import org.twodividedbyzero.idea.findbugs.core.FindBugsProject;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsProjects;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsStarter;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsState;
@@ -80,13 +77,8 @@ public final class AnalyzeClassUnderCursor extends AbstractAnalyzeAction {
 
 			@Override
 			protected boolean configure(@NotNull final ProgressIndicator indicator, @NotNull final FindBugsProjects projects, final boolean justCompiled) {
-				final Module module = ModuleUtilCore.findModuleForFile(selectedFile, project);
-				if (module == null) {
-					throw new IllegalStateException("No module found for " + selectedFile);
-				}
 				final boolean isTest = ProjectRootManager.getInstance(project).getFileIndex().isInTestSourceContent(selectedFile);
-				final FindBugsProject findBugsProject = projects.get(module, isTest);
-				findBugsProject.addOutputFile(selectedFile, psiClass);
+				projects.addClass(selectedFile, psiClass, isTest);
 				return true;
 			}
 		}.start();
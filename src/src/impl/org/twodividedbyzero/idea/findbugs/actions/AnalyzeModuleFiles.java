@@ -33,7 +33,7 @@ import com.intellij.util.Consumer;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.twodividedbyzero.idea.findbugs.collectors.RecurseFileCollector;
+import org.twodividedbyzero.idea.findbugs.collectors.ClassFileCollector;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsProject;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsProjects;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsStarter;
@@ -105,10 +105,10 @@ public final class AnalyzeModuleFiles extends AbstractAnalyzeAction {
 				indicator.setText("Collecting files for analysis...");
 				final FindBugsProject findBugsProject = projects.get(module, includeTests && compilerOutputPathForTests != null);
 				final int[] count = new int[1];
-				RecurseFileCollector.addFiles(project, indicator, findBugsProject, new File(compilerOutputPath.getCanonicalPath()), count);
+				ClassFileCollector.addFiles(project, indicator, findBugsProject, new File(compilerOutputPath.getCanonicalPath()), count);
 
 				if (compilerOutputPathForTests != null) {
-					RecurseFileCollector.addFiles(project, indicator, findBugsProject, new File(compilerOutputPathForTests.getCanonicalPath()), count);
+					ClassFileCollector.addFiles(project, indicator, findBugsProject, new File(compilerOutputPathForTests.getCanonicalPath()), count);
 				}
 				return true;
 			}
@@ -37,7 +37,7 @@ import com.intellij.util.Consumer;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.twodividedbyzero.idea.findbugs.collectors.RecurseFileCollector;
+import org.twodividedbyzero.idea.findbugs.collectors.ClassFileCollector;
 import org.twodividedbyzero.idea.findbugs.common.util.IdeaUtilImpl;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsProject;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsProjects;
@@ -110,7 +110,7 @@ public final class AnalyzePackageFiles extends AbstractAnalyzeAction {
 				indicator.setText("Collecting files for analysis...");
 				final FindBugsProject findBugsProject = projects.get(module, isTest);
 				final int[] count = new int[1];
-				RecurseFileCollector.addFiles(project, indicator, findBugsProject, outputPath, count);
+				ClassFileCollector.addFiles(project, indicator, findBugsProject, outputPath, count);
 				return true;
 			}
 		}.start();
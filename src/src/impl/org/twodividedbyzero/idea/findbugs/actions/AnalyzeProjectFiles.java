@@ -33,7 +33,7 @@ import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.util.Consumer;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.jetbrains.annotations.NotNull;
-import org.twodividedbyzero.idea.findbugs.collectors.RecurseFileCollector;
+import org.twodividedbyzero.idea.findbugs.collectors.ClassFileCollector;
 import org.twodividedbyzero.idea.findbugs.common.util.New;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsProject;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsProjects;
@@ -115,7 +115,7 @@ public final class AnalyzeProjectFiles extends AbstractAnalyzeAction {
 				final int[] count = new int[1];
 				for (final Pair.NonNull<Module, VirtualFile> compilerOutputPath : compilerOutputPaths) {
 					final FindBugsProject findBugsProject = projects.get(compilerOutputPath.getFirst(), includeTests);
-					RecurseFileCollector.addFiles(project, indicator, findBugsProject, new File(compilerOutputPath.getSecond().getCanonicalPath()), count);
+					ClassFileCollector.addFiles(project, indicator, findBugsProject, new File(compilerOutputPath.getSecond().getCanonicalPath()), count);
 				}
 				return true;
 			}
@@ -50,13 +50,14 @@ import com.intellij.psi.PsiDirectory;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
-import com.intellij.psi.PsiRecursiveElementVisitor;
 import com.intellij.util.Consumer;
+import com.intellij.util.Processor;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.twodividedbyzero.idea.findbugs.common.util.IdeaUtilImpl;
+import org.twodividedbyzero.idea.findbugs.common.util.New;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsProjects;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsStarter;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsState;
@@ -64,6 +65,9 @@ import org.twodividedbyzero.idea.findbugs.core.FindBugsState;
 import javax.swing.Action;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public final class AnalyzeScopeFiles extends AbstractAnalyzeAction {
@@ -150,6 +154,10 @@ public final class AnalyzeScopeFiles extends AbstractAnalyzeAction {
 		}.start();
 	}
 
+	/**
+	 * The files of the scope are enumerated (and grouped by module) without loading their PSI ;
+	 * the class files are resolved in parallel afterwards, see {@link FindBugsProjects#addFiles(ProgressIndicator, Map, boolean)}.
+	 */
 	@SuppressFBWarnings("SIC_INNER_SHOULD_BE_STATIC_ANON")
 	private void addClasses(
 			@NotNull final ProgressIndicator indicator,
@@ -159,26 +167,31 @@ public final class AnalyzeScopeFiles extends AbstractAnalyzeAction {
 			final boolean includeTests
 	) {
 
-		final PsiManager psiManager = PsiManager.getInstance(project);
-		psiManager.startBatchFilesProcessingMode();
-		final int[] count = new int[1];
-		try {
-			scope.accept(new PsiRecursiveElementVisitor() {
-				@Override
-				public void visitFile(final PsiFile file) {
-					if (indicator.isCanceled() || FindBugsState.get(project).isAborting()) {
-						throw new ProcessCanceledException();
+		final ProjectFileIndex fileIndex = ProjectRootManager.getInstance(project).getFileIndex();
+		final Map<Module, List<VirtualFile>> filesByModule = new LinkedHashMap<Module, List<VirtualFile>>();
+		scope.accept(new Processor<VirtualFile>() {
+			@Override
+			public boolean process(final VirtualFile file) {
+				if (indicator.isCanceled() || FindBugsState.get(project).isAborting()) {
+					throw new ProcessCanceledException();
+				}
+				if (IdeaUtilImpl.SUPPORTED_FILE_TYPES.contains(file.getFileType())) {
+					final Module module = fileIndex.getModuleForFile(file);
+					if (module == null) {
+						throw new IllegalStateException("No module found for " + file);
 					}
-					if (IdeaUtilImpl.SUPPORTED_FILE_TYPES.contains(file.getFileType())) {
-						final VirtualFile vf = file.getVirtualFile();
-						projects.addFile(vf, false, includeTests); // LATER: profile this
-						indicator.setText2("Files collected: " + ++count[0]);
+					List<VirtualFile> files = filesByModule.get(module);
+					if (files == null) {
+						files = New.arrayList();
+						filesByModule.put(module, files);
 					}
+					files.add(file);
 				}
-			});
-		} finally {
-			psiManager.finishBatchFilesProcessingMode();
-		}
+				return true;
+			}
+		});
+
+		projects.addFiles(indicator, filesByModule, includeTests);
 	}
 
 	@NonNls
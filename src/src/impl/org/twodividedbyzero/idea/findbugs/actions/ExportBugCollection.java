@@ -20,59 +20,51 @@ package org.twodividedbyzero.idea.findbugs.actions;
 
 import com.intellij.ide.BrowserUtil;
 import com.intellij.openapi.actionSystem.AnActionEvent;
-import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.wm.ToolWindow;
 import edu.umd.cs.findbugs.BugCollection;
 import edu.umd.cs.findbugs.BugInstance;
-import edu.umd.cs.findbugs.HTMLBugReporter;
 import edu.umd.cs.findbugs.SortedBugCollection;
 import edu.umd.cs.findbugs.cloud.Cloud;
-import org.dom4j.Document;
-import org.dom4j.io.DocumentSource;
 import org.jetbrains.annotations.NotNull;
 import org.twodividedbyzero.idea.findbugs.common.EventDispatchThreadHelper;
 import org.twodividedbyzero.idea.findbugs.common.util.ErrorUtil;
 import org.twodividedbyzero.idea.findbugs.common.util.FileUtilFb;
-import org.twodividedbyzero.idea.findbugs.common.util.IoUtil;
+import org.twodividedbyzero.idea.findbugs.common.util.New;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsProject;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsResult;
+import org.twodividedbyzero.idea.findbugs.core.FindBugsResultSnapshot;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsState;
+import org.twodividedbyzero.idea.findbugs.core.HtmlReportWriter;
 import org.twodividedbyzero.idea.findbugs.core.WorkspaceSettings;
 import org.twodividedbyzero.idea.findbugs.gui.export.ExportBugCollectionDialog;
 import org.twodividedbyzero.idea.findbugs.gui.toolwindow.view.ToolWindowPanel;
 import org.twodividedbyzero.idea.findbugs.resources.ResourcesLoader;
 
-import javax.xml.transform.Result;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStreamWriter;
-import java.net.URL;
-import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class ExportBugCollection extends AbstractAction {
 
-	private static final Logger LOGGER = Logger.getInstance(ExportBugCollection.class);
-	private static final String FINDBUGS_PLAIN_XSL = "plain.xsl";
-
 	@Override
 	void updateImpl(
 			@NotNull final AnActionEvent e,
@@ -118,8 +110,11 @@ public final class ExportBugCollection extends AbstractAction {
 		final String exportDir = workspaceSettings.exportBugCollectionDirectory;
 		final boolean exportXml = workspaceSettings.exportBugCollectionAsXml;
 		final boolean exportHtml = workspaceSettings.exportBugCollectionAsHtml;
+		final boolean htmlPerPackage = workspaceSettings.exportHtmlBugCollectionPerPackage;
+		final boolean exportSnapshot = workspaceSettings.exportBugCollectionAsSnapshot;
 		final boolean createSubDir = workspaceSettings.exportBugCollectionCreateSubDirectory;
 		final boolean openInBrowser = workspaceSettings.openExportedHtmlBugCollectionInBrowser;
+		final int parallelism = Math.max(1, workspaceSettings.exportParallelism);
 
 		if (StringUtil.isEmptyOrSpaces(exportDir)) {
 			showError(ResourcesLoader.getString("export.error.emptyPath"));
@@ -147,27 +142,82 @@ public final class ExportBugCollection extends AbstractAction {
 						finalExportDir = new File(exportDirPath, dirName);
 						FileUtilFb.mkdirs(finalExportDir);
 					}
-					final boolean multiModule = result.getResults().size() > 1;
+					final int moduleCount = result.getResults().size();
+					final boolean multiModule = moduleCount > 1;
+					indicator.setIndeterminate(false);
+					indicator.setFraction(0);
 
-					for (final Map.Entry<edu.umd.cs.findbugs.Project, SortedBugCollection> entry : result.getResults().entrySet()) {
-						final String fileName;
-						if (createSubDir) {
-							if (multiModule && entry.getKey() instanceof FindBugsProject) {
-								fileName = ((FindBugsProject) entry.getKey()).getModule().getName();
+					final Map<File, SortedBugCollection> htmlReports = new LinkedHashMap<File, SortedBugCollection>();
+					// the modules are exported at the same time, so each one needs its own files
+					final Set<String> usedFileNames = New.set();
+					final String indexFileName = createSubDir ? "index" : "findbugs-result-" + project.getName() + "_" + currentTime + "_index";
+					if (multiModule) {
+						usedFileNames.add(indexFileName.toLowerCase(Locale.ENGLISH));
+					}
+					final AtomicInteger exported = new AtomicInteger();
+					final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, moduleCount)), new ExportThreadFactory());
+					try {
+						final List<Future<?>> futures = New.arrayList();
+						for (final Map.Entry<edu.umd.cs.findbugs.Project, SortedBugCollection> entry : result.getResults().entrySet()) {
+							String name;
+							if (createSubDir) {
+								if (multiModule && entry.getKey() instanceof FindBugsProject) {
+									name = ((FindBugsProject) entry.getKey()).getModule().getName();
+								} else if (multiModule && !StringUtil.isEmptyOrSpaces(entry.getKey().getProjectName())) {
+									name = FileUtil.sanitizeFileName(entry.getKey().getProjectName()); // f. e. imported
+								} else {
+									name = "result";
+								}
 							} else {
-								fileName = "result";
+								name = "findbugs-result-" + entry.getKey().getProjectName() + "_" + currentTime;
+							}
+							final String fileName = uniqueFileName(name, usedFileNames);
+							final SortedBugCollection bugCollection = entry.getValue();
+							final File exportDir = finalExportDir;
+							final String projectName = entry.getKey().getProjectName();
+							futures.add(executor.submit(new Callable<Void>() {
+								@Override
+								public Void call() throws Exception {
+									exportImpl(bugCollection, exportDir, fileName, exportXml, exportHtml, htmlPerPackage);
+									final int count = exported.incrementAndGet();
+									indicator.setFraction((double) count / moduleCount);
+									indicator.setText2(ResourcesLoader.getString("export.progress.module", count, moduleCount, projectName));
+									return null;
+								}
+							}));
+							htmlReports.put(new File(finalExportDir, fileName + ".html"), bugCollection);
+						}
+						for (final Future<?> future : futures) {
+							try {
+								future.get();
+							} catch (final ExecutionException e) {
+								final Throwable cause = e.getCause();
+								if (cause instanceof Exception) {
+									throw (Exception) cause;
+								}
+								if (cause instanceof Error) {
+									throw (Error) cause;
+								}
+								throw e;
 							}
-						} else {
-							fileName = "findbugs-result-" + entry.getKey().getProjectName() + "_" + currentTime;
 						}
-						exportImpl(
-								entry.getValue(),
-								finalExportDir,
-								fileName,
-								exportXml,
-								exportHtml,
-								openInBrowser
-						);
+					} finally {
+						executor.shutdownNow();
+					}
+
+					if (exportHtml && !htmlReports.isEmpty()) {
+						File html = htmlReports.keySet().iterator().next();
+						if (multiModule) {
+							html = new File(finalExportDir, indexFileName + ".html");
+							HtmlReportWriter.writeIndex(html, project.getName(), htmlReports);
+						}
+						if (openInBrowser) {
+							openInBrowser(html);
+						}
+					}
+					if (exportSnapshot) {
+						final String fileName = createSubDir ? "result" : "findbugs-result-" + project.getName() + "_" + currentTime;
+						exportSnapshot(result, new File(finalExportDir, fileName + "." + FindBugsResultSnapshot.EXTENSION));
 					}
 				} catch (final Exception e) {
 					throw ErrorUtil.toUnchecked(e);
@@ -176,14 +226,29 @@ public final class ExportBugCollection extends AbstractAction {
 		}.queue();
 	}
 
+	/**
+	 * @return {@code name} or, if it is already used (ignoring case), {@code name} with a number appended
+	 */
+	@NotNull
+	private static String uniqueFileName(@NotNull final String name, @NotNull final Set<String> usedNames) {
+		String ret = name;
+		for (int i = 2; !usedNames.add(ret.toLowerCase(Locale.ENGLISH)); i++) {
+			ret = name + "_" + i;
+		}
+		return ret;
+	}
+
+	/**
+	 * Invoked by an export thread, so at the same time for different modules.
+	 */
 	private void exportImpl(
 			@NotNull final SortedBugCollection bugCollection,
 			@NotNull final File exportDir,
 			@NotNull final String fileName,
 			final boolean exportXml,
 			final boolean exportHtml,
-			final boolean openInBrowser
-	) throws Exception {
+			final boolean htmlPerPackage
+	) throws IOException {
 		final boolean withMessages = bugCollection.getWithMessages();
 		try {
 			bugCollection.setWithMessages(true);
@@ -193,10 +258,7 @@ public final class ExportBugCollection extends AbstractAction {
 			}
 			if (exportHtml) {
 				final File html = new File(exportDir, fileName + ".html");
-				exportHtml(bugCollection, html);
-				if (openInBrowser) {
-					openInBrowser(html);
-				}
+				exportHtml(bugCollection, html, htmlPerPackage);
 			}
 		} finally {
 			bugCollection.setWithMessages(withMessages);
@@ -204,6 +266,20 @@ public final class ExportBugCollection extends AbstractAction {
 	}
 
 	private void exportXml(@NotNull final BugCollection bugCollection, @NotNull final String fileName) throws IOException {
+		fixConsensus(bugCollection);
+		bugCollection.writeXML(fileName);
+	}
+
+	private static void exportSnapshot(@NotNull final FindBugsResult result, @NotNull final File file) throws IOException {
+		for (final SortedBugCollection bugCollection : result.getResults().values()) {
+			if (bugCollection != null) {
+				fixConsensus(bugCollection);
+			}
+		}
+		FindBugsResultSnapshot.write(file, result, true);
+	}
+
+	private static void fixConsensus(@NotNull final BugCollection bugCollection) {
 		// Issue 77: workaround internal FindBugs NPE
 		// As of my point of view, the NPE is a FindBugs bug
 		for (final BugInstance bugInstance : bugCollection) {
@@ -213,34 +289,10 @@ public final class ExportBugCollection extends AbstractAction {
 				}
 			}
 		}
-		bugCollection.writeXML(fileName);
 	}
 
-	private void exportHtml(@NotNull final BugCollection bugCollection, @NotNull final File file) throws IOException, TransformerException {
-		final Document document = bugCollection.toDocument();
-		final InputStream stylesheet = getStylesheetStream(FINDBUGS_PLAIN_XSL);
-		try {
-			final Source xsl = new StreamSource(stylesheet);
-			xsl.setSystemId(FINDBUGS_PLAIN_XSL);
-
-			// Create a transformer using the stylesheet
-			final Transformer transformer = TransformerFactory.newInstance().newTransformer(xsl);
-
-			// Source document is the XML generated from the BugCollection
-			final Source source = new DocumentSource(document);
-
-			// Write result to output stream
-			final OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8").newEncoder());
-			try {
-				final Result result = new StreamResult(writer);
-				// Do the transformation
-				transformer.transform(source, result);
-			} finally {
-				IoUtil.safeClose(writer);
-			}
-		} finally {
-			IoUtil.safeClose(stylesheet);
-		}
+	private static void exportHtml(@NotNull final SortedBugCollection bugCollection, @NotNull final File file, final boolean perPackage) throws IOException {
+		new HtmlReportWriter(bugCollection, perPackage).write(file);
 	}
 
 	private static void openInBrowser(@NotNull final File file) {
@@ -252,6 +304,17 @@ public final class ExportBugCollection extends AbstractAction {
 		});
 	}
 
+	private static class ExportThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		@Override
+		public Thread newThread(@NotNull final Runnable runnable) {
+			final Thread ret = new Thread(runnable, "FindBugs-IDEA Export #" + threadNumber.getAndIncrement());
+			ret.setDaemon(true);
+			return ret;
+		}
+	}
+
 	private static void showError(@NotNull final String message) {
 		EventDispatchThreadHelper.invokeLater(new Runnable() {
 			@Override
@@ -260,23 +323,4 @@ public final class ExportBugCollection extends AbstractAction {
 			}
 		});
 	}
-
-	@NotNull
-	private static InputStream getStylesheetStream(@NotNull final String stylesheet) throws IOException {
-		try {
-			final URL url = new URL(stylesheet);
-			return url.openStream();
-		} catch (final Exception e) {
-			LOGGER.info("xls read failed.", e);
-		}
-		try {
-			return new BufferedInputStream(new FileInputStream(stylesheet));
-		} catch (final Exception ignored) {
-		}
-		final InputStream xslInputStream = HTMLBugReporter.class.getResourceAsStream('/' + stylesheet);
-		if (xslInputStream == null) {
-			throw new IOException("Could not load HTML generation stylesheet " + stylesheet);
-		}
-		return xslInputStream;
-	}
 }
@@ -20,6 +20,7 @@ package org.twodividedbyzero.idea.findbugs.actions;
 
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.DialogBuilder;
@@ -28,11 +29,7 @@ import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.util.Condition;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.wm.ToolWindow;
-import com.intellij.util.Processor;
-import com.intellij.util.containers.TransferToEDTQueue;
-import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.Plugin;
-import edu.umd.cs.findbugs.ProjectStats;
 import edu.umd.cs.findbugs.SortedBugCollection;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.dom4j.DocumentException;
@@ -40,11 +37,13 @@ import org.jetbrains.annotations.NotNull;
 import org.twodividedbyzero.idea.findbugs.common.EventDispatchThreadHelper;
 import org.twodividedbyzero.idea.findbugs.common.FindBugsPluginConstants;
 import org.twodividedbyzero.idea.findbugs.common.util.New;
-import org.twodividedbyzero.idea.findbugs.core.Bug;
+import org.twodividedbyzero.idea.findbugs.core.BugBatchQueue;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsResult;
+import org.twodividedbyzero.idea.findbugs.core.FindBugsResultSnapshot;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsState;
 import org.twodividedbyzero.idea.findbugs.core.PluginSettings;
 import org.twodividedbyzero.idea.findbugs.core.ProjectSettings;
+import org.twodividedbyzero.idea.findbugs.core.StreamingBugCollection;
 import org.twodividedbyzero.idea.findbugs.core.WorkspaceSettings;
 import org.twodividedbyzero.idea.findbugs.gui.PluginGuiCallback;
 import org.twodividedbyzero.idea.findbugs.gui.common.BalloonTipFactory;
@@ -53,10 +52,11 @@ import org.twodividedbyzero.idea.findbugs.gui.toolwindow.view.ToolWindowPanel;
 import org.twodividedbyzero.idea.findbugs.messages.MessageBusManager;
 import org.twodividedbyzero.idea.findbugs.tasks.BackgroundableTask;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 
 public final class ImportBugCollection extends AbstractAction {
 
@@ -119,18 +119,12 @@ public final class ImportBugCollection extends AbstractAction {
 		}
 
 		final AtomicBoolean taskCanceled = new AtomicBoolean();
-		final TransferToEDTQueue<Runnable> transferToEDTQueue = new TransferToEDTQueue<Runnable>("Add New Bug Instance", new Processor<Runnable>() {
-			@Override
-			public boolean process(Runnable runnable) {
-				runnable.run();
-				return true;
-			}
-		}, new Condition<Object>() {
+		final BugBatchQueue newBugs = new BugBatchQueue(project, new Condition<Object>() {
 			@Override
 			public boolean value(Object o) {
-				return project.isDisposed() || taskCanceled.get();
+				return taskCanceled.get();
 			}
-		}, 500);
+		});
 
 		//Create a task to import the bug collection from XML
 		final BackgroundableTask task = new BackgroundableTask(project, "Importing Findbugs Result", true) {
@@ -146,62 +140,43 @@ public final class ImportBugCollection extends AbstractAction {
 				indicator.setFraction(0.0);
 				indicator.setIndeterminate(false);
 				indicator.setText(fileToImport);
-				SortedBugCollection importBugCollection = null;
-				edu.umd.cs.findbugs.Project importProject = null;
+				final FindBugsResult result = new FindBugsResult();
 				boolean success = false;
 				try {
-					final SortedBugCollection bugCollection = new SortedBugCollection();
-					importBugCollection = bugCollection.createEmptyCollectionWithMetadata();
-					importProject = importBugCollection.getProject();
-					importProject.setGuiCallback(new PluginGuiCallback(project));
-					importBugCollection.setDoNotUseCloud(true);
-					for (final Plugin plugin : Plugin.getAllPlugins()) {
-						importProject.setPluginStatusTrinary(plugin.getPluginId(), plugin.isCorePlugin() || enabledPluginIds.contains(plugin.getPluginId()));
-					}
-					importBugCollection.readXML(fileToImport);
-
-					final ProjectStats projectStats = importBugCollection.getProjectStats();
-					int bugCount = 0;
-					for (final BugInstance bugInstance : importBugCollection) {
-						if (indicator.isCanceled()) {
-							taskCanceled.set(true);
-							MessageBusManager.publishAnalysisAbortedToEDT(project);
-							Thread.currentThread().interrupt();
-							return;
+					final long start = System.currentTimeMillis();
+					final File file = new File(fileToImport);
+					// bugs are transferred to the tree while reading (see StreamingBugCollection#add)
+					if (FindBugsResultSnapshot.isSnapshot(file)) {
+						final List<String> names = FindBugsResultSnapshot.getNames(file);
+						for (int i = 0; i < names.size(); i++) {
+							indicator.setFraction((double) i / names.size());
+							final StreamingBugCollection importBugCollection = createImportBugCollection(indicator);
+							FindBugsResultSnapshot.read(file, names.get(i), importBugCollection);
+							result.put(importBugCollection.getProject(), importBugCollection);
 						}
-						final Integer bugCounter = bugCount++;
-						final double fraction = bugCounter.doubleValue() / projectStats.getTotalBugs();
-						indicator.setFraction(fraction);
-						indicator.setText2("Importing bug '" + bugCount + "' of '" + projectStats.getTotalBugs() + "' - " + bugInstance.getMessageWithoutPrefix());
-						/**
-						 * Guarantee thread visibility *one* time.
-						 */
-						final AtomicReference<BugInstance> bugInstanceRef = New.atomicRef(bugInstance);
-						final AtomicReference<SortedBugCollection> importBugCollectionRef = New.atomicRef(importBugCollection);
-						final int analyzedClassCount = projectStats.getNumClasses();
-						transferToEDTQueue.offer(new Runnable() {
-							/**
-							 * Invoked by EDT.
-							 */
-							@Override
-							public void run() {
-								final Bug bug = new Bug(null, importBugCollectionRef.get(), bugInstanceRef.get());
-								MessageBusManager.publishNewBug(project, bug, analyzedClassCount);
-							}
-						});
+					} else {
+						final StreamingBugCollection importBugCollection = createImportBugCollection(indicator);
+						importBugCollection.readXML(file);
+						result.put(importBugCollection.getProject(), importBugCollection);
 					}
+					LOGGER.info("Imported " + file + " (" + file.length() + " bytes) in " + (System.currentTimeMillis() - start) + " ms");
 
 					EventDispatchThreadHelper.invokeLater(new Runnable() {
 						public void run() {
-							transferToEDTQueue.drain();
+							newBugs.drain();
 							BalloonTipFactory.showToolWindowInfoNotifier(project, "Imported bug collection from '" + fileToImport + "'.");
 						}
 					});
 
-					importBugCollection.setDoNotUseCloud(false);
-					importBugCollection.setTimestamp(System.currentTimeMillis());
-					importBugCollection.reinitializeCloud();
+					for (final SortedBugCollection importBugCollection : result.getResults().values()) {
+						importBugCollection.setDoNotUseCloud(false);
+						importBugCollection.setTimestamp(System.currentTimeMillis());
+						importBugCollection.reinitializeCloud();
+					}
 					success = true;
+				} catch (final ProcessCanceledException ignored) {
+					taskCanceled.set(true);
+
 				} catch (final IOException e1) {
 					final String message = "Import failed";
 					showToolWindowErrorNotifier(project, message);
@@ -214,8 +189,6 @@ public final class ImportBugCollection extends AbstractAction {
 
 				} finally {
 					if (success) {
-						final FindBugsResult result = new FindBugsResult();
-						result.put(importProject, importBugCollection);
 						MessageBusManager.publishAnalysisFinishedToEDT(project, result, null);
 						Thread.currentThread().interrupt();
 					} else {
@@ -225,6 +198,19 @@ public final class ImportBugCollection extends AbstractAction {
 			}
 
 
+			@NotNull
+			private StreamingBugCollection createImportBugCollection(@NotNull final ProgressIndicator indicator) {
+				final StreamingBugCollection importBugCollection = new StreamingBugCollection(indicator, newBugs);
+				final edu.umd.cs.findbugs.Project importProject = importBugCollection.getProject();
+				importProject.setGuiCallback(new PluginGuiCallback(project));
+				importBugCollection.setDoNotUseCloud(true);
+				for (final Plugin plugin : Plugin.getAllPlugins()) {
+					importProject.setPluginStatusTrinary(plugin.getPluginId(), plugin.isCorePlugin() || enabledPluginIds.contains(plugin.getPluginId()));
+				}
+				return importBugCollection;
+			}
+
+
 			@Override
 			public void setProgressIndicator(@NotNull final ProgressIndicator indicator) {
 				_indicator = indicator;
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.collectors;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.twodividedbyzero.idea.findbugs.core.FindBugsProject;
+import org.twodividedbyzero.idea.findbugs.core.FindBugsState;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Collects the class files of a compiler output directory for analysis.
+ * <p>
+ * The directory tree is listed by a few threads in parallel. Class files are recognized by their
+ * {@link AbstractClassAdder#CLASS_FILE_SUFFIX suffix} only (no file type lookup and no stat per file) and handed
+ * over in batches to the invoking thread, which is the only one that adds them to the {@link FindBugsProject}
+ * and updates the progress (at most every {@link #PROGRESS_INTERVAL_MILLIS} ms).
+ */
+public final class ClassFileCollector {
+
+	private static final int BATCH_SIZE = 1000;
+
+	private static final long PROGRESS_INTERVAL_MILLIS = 100;
+
+	private static final long POLL_MILLIS = 50;
+
+	private static final int MAX_THREADS = 4;
+
+	@NotNull
+	private final BlockingQueue<File> _directories;
+
+	/**
+	 * Queued directories plus directories which are being listed.
+	 */
+	@NotNull
+	private final AtomicInteger _pendingDirectories;
+
+	@NotNull
+	private final BlockingQueue<List<String>> _batches;
+
+	private volatile boolean _canceled;
+
+
+	private ClassFileCollector() {
+		_directories = new LinkedBlockingQueue<File>();
+		_pendingDirectories = new AtomicInteger();
+		_batches = new LinkedBlockingQueue<List<String>>();
+	}
+
+
+	public static void addFiles(
+			@NotNull final Project project,
+			@NotNull final ProgressIndicator indicator,
+			@NotNull final FindBugsProject findBugsProject,
+			@NotNull final File classesDir,
+			@NotNull final int[] count
+	) {
+		if (classesDir.isDirectory()) {
+			new ClassFileCollector().addFilesImpl(project, indicator, findBugsProject, classesDir, count);
+		}
+	}
+
+
+	private void addFilesImpl(
+			@NotNull final Project project,
+			@NotNull final ProgressIndicator indicator,
+			@NotNull final FindBugsProject findBugsProject,
+			@NotNull final File classesDir,
+			@NotNull final int[] count
+	) {
+		_pendingDirectories.incrementAndGet();
+		_directories.add(classesDir);
+
+		final int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+		final AtomicInteger runningThreads = new AtomicInteger(threads);
+		final ExecutorService executor = Executors.newFixedThreadPool(threads, new CollectorThreadFactory());
+		try {
+			for (int i = 0; i < threads; i++) {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							collect();
+						} finally {
+							runningThreads.decrementAndGet();
+						}
+					}
+				});
+			}
+
+			long lastProgress = 0;
+			while (true) {
+				if (indicator.isCanceled() || FindBugsState.get(project).isAborting()) {
+					_canceled = true;
+					throw new ProcessCanceledException();
+				}
+				final boolean done = runningThreads.get() == 0; // read before poll, so no batch is missed
+				final List<String> batch = _batches.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (batch != null) {
+					findBugsProject.addFiles(batch);
+					count[0] += batch.size();
+					final long now = System.currentTimeMillis();
+					if (now - lastProgress >= PROGRESS_INTERVAL_MILLIS) {
+						lastProgress = now;
+						indicator.setText2("Files collected: " + count[0]);
+					}
+				} else if (done) {
+					break;
+				}
+			}
+			indicator.setText2("Files collected: " + count[0]);
+		} catch (final InterruptedException ignored) {
+			_canceled = true;
+			Thread.currentThread().interrupt();
+			throw new ProcessCanceledException();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+
+	private void collect() {
+		List<String> batch = new ArrayList<String>(BATCH_SIZE);
+		while (!_canceled) {
+			final File directory;
+			try {
+				directory = _directories.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (final InterruptedException ignored) {
+				return;
+			}
+			if (directory == null) {
+				if (_pendingDirectories.get() == 0) {
+					break;
+				}
+				continue;
+			}
+			try {
+				final File[] files = directory.listFiles();
+				if (files != null) {
+					for (final File file : files) {
+						if (file.getName().endsWith(AbstractClassAdder.CLASS_FILE_SUFFIX)) {
+							batch.add(file.getAbsolutePath());
+							if (batch.size() >= BATCH_SIZE) {
+								_batches.add(batch);
+								batch = new ArrayList<String>(BATCH_SIZE);
+							}
+						} else {
+							// listing a file (f. e. a resource) just fails, this avoids a stat for every class file
+							_pendingDirectories.incrementAndGet();
+							_directories.add(file);
+						}
+					}
+				}
+			} finally {
+				_pendingDirectories.decrementAndGet();
+			}
+		}
+		if (!batch.isEmpty()) {
+			_batches.add(batch);
+		}
+	}
+
+
+	private static class CollectorThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		@Override
+		public Thread newThread(@NotNull final Runnable runnable) {
+			final Thread ret = new Thread(runnable, "FindBugs-IDEA Collector #" + threadNumber.getAndIncrement());
+			ret.setDaemon(true);
+			return ret;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.collectors;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.twodividedbyzero.idea.findbugs.common.util.New;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * The classes of a file (including inner and anonymous classes) by their simple binary name, f. e.
+ * {@code Outer$1$Inner}. Computed once per file and dropped when the file is changed, so looking up the
+ * class of a bug does not collect all classes of the file again.
+ */
+public final class ClassNameCache {
+
+	private ClassNameCache() {
+	}
+
+	@Nullable
+	public static PsiElement findClass(@NotNull final PsiFile psiFile, @NotNull final String simpleClassName) {
+		return CachedValuesManager.getCachedValue(psiFile, new ClassNamesProvider(psiFile)).get(simpleClassName);
+	}
+
+	private static final class ClassNamesProvider implements CachedValueProvider<Map<String, PsiElement>> {
+
+		@NotNull
+		private final PsiFile _psiFile;
+
+		private ClassNamesProvider(@NotNull final PsiFile psiFile) {
+			_psiFile = psiFile;
+		}
+
+		@Nullable
+		@Override
+		public Result<Map<String, PsiElement>> compute() {
+			final Collector collector = new Collector(_psiFile.getProject());
+			final VirtualFile virtualFile = _psiFile.getVirtualFile();
+			if (virtualFile != null) {
+				collector.addContainingClasses(virtualFile);
+			}
+			return Result.create(collector._classes, _psiFile);
+		}
+	}
+
+	private static final class Collector extends AbstractClassAdder {
+
+		private final Map<String, PsiElement> _classes;
+
+		private Collector(@NotNull final Project project) {
+			super(project);
+			_classes = New.map();
+		}
+
+		@Override
+		void put(@NotNull final String fqp, @NotNull final PsiElement element) {
+			// the package part is separated by '/', the output path by the system separator
+			final int nameStart = Math.max(fqp.lastIndexOf('/'), fqp.lastIndexOf(File.separatorChar)) + 1;
+			_classes.put(fqp.substring(nameStart), element);
+		}
+	}
+}
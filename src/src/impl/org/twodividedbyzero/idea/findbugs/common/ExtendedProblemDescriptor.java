@@ -22,10 +22,13 @@ import com.intellij.codeInspection.ProblemDescriptor;
 import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.QuickFix;
 import com.intellij.lang.annotation.ProblemGroup;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.colors.TextAttributesKey;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.twodividedbyzero.idea.findbugs.common.util.BugInstanceUtil;
@@ -37,7 +40,13 @@ public class ExtendedProblemDescriptor implements ProblemDescriptor, ProblemGrou
 	@NotNull
 	private final PsiFile psiFile;
 
-	private PsiElement psiElement;
+	/**
+	 * Follows the edits of the file, so the element is resolved only once ; see {@link #resolvePsiElement()}.
+	 */
+	@Nullable
+	private volatile SmartPsiElementPointer<PsiElement> psiElementPointer;
+
+	private volatile boolean resolved;
 
 	/**
 	 * This is the line as reported by FindBugs, rather than that computed by IDEA.
@@ -103,15 +112,33 @@ public class ExtendedProblemDescriptor implements ProblemDescriptor, ProblemGrou
 
 	@Override
 	public PsiElement getPsiElement() {
-		if (psiElement != null) {
-			return psiElement;
+		if (!resolved) {
+			if (ApplicationManager.getApplication().isDispatchThread()) {
+				return null; // resolved in background, see ProblemCache#resolvePsiElements
+			}
+			resolvePsiElement();
+		}
+		final SmartPsiElementPointer<PsiElement> pointer = psiElementPointer;
+		return pointer != null ? pointer.getElement() : null;
+	}
+
+	/**
+	 * Must be called inside a read action.
+	 */
+	public void resolvePsiElement() {
+		if (resolved) {
+			return;
 		}
+		final PsiElement psiElement;
 		if (lineStart < 0) {
 			psiElement = IdeaUtilImpl.findAnonymousClassPsiElement(psiFile, bug.getInstance(), psiFile.getProject());
 		} else {
 			psiElement = IdeaUtilImpl.getElementAtLine(psiFile, lineStart);
 		}
-		return psiElement;
+		if (psiElement != null) {
+			psiElementPointer = SmartPointerManager.getInstance(psiFile.getProject()).createSmartPsiElementPointer(psiElement);
+		}
+		resolved = true;
 	}
 
 	@Override
@@ -57,15 +57,12 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import gnu.trove.THashSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.twodividedbyzero.idea.findbugs.collectors.AbstractClassAdder;
-import org.twodividedbyzero.idea.findbugs.collectors.ClassCollector;
+import org.twodividedbyzero.idea.findbugs.collectors.ClassNameCache;
 import org.twodividedbyzero.idea.findbugs.common.ExtendedProblemDescriptor;
 
 import java.io.File;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 @SuppressWarnings({"HardcodedFileSeparator"})
@@ -455,18 +452,8 @@ public final class IdeaUtilImpl {
 
 	@Nullable
 	public static PsiElement findAnonymousClassPsiElement(@Nullable final PsiFileSystemItem psiFile, @NotNull final BugInstance bugInstance, @NotNull final Project project) {
-		if (psiFile != null) {
-			final String classNameToFind = BugInstanceUtil.getSimpleClassName(bugInstance);
-			final ClassCollector cc = new ClassCollector(project);
-			cc.addContainingClasses(psiFile.getVirtualFile());
-			final Map<String, PsiElement> classes = cc.getClasses();
-
-			for (final Entry<String, PsiElement> entry : classes.entrySet()) {
-				final String fileName = new File(entry.getKey()).getName();
-				if (fileName.equals(classNameToFind + AbstractClassAdder.CLASS_FILE_SUFFIX)) {
-					return entry.getValue();
-				}
-			}
+		if (psiFile instanceof PsiFile) {
+			return ClassNameCache.findClass((PsiFile) psiFile, BugInstanceUtil.getSimpleClassName(bugInstance));
 		}
 		return null;
 	}
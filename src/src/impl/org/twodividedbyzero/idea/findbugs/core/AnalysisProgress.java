@@ -0,0 +1,91 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.core;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Aggregated progress of modules which are analyzed concurrently (see {@link FindBugsStarter}).
+ * The {@link Reporter} of each module adds its analyzed classes and bugs here instead of
+ * driving the shared {@link ProgressIndicator} directly, so the progress text and the analyzed
+ * class count add up instead of flipping between the modules.
+ * <p>
+ * Thread safe.
+ */
+final class AnalysisProgress {
+
+	@NotNull
+	private final ProgressIndicator indicator;
+
+	private final int moduleCount;
+
+	@NotNull
+	private final AtomicInteger finishedModuleCount;
+
+	@NotNull
+	private final AtomicInteger analyzedClassCount;
+
+	@NotNull
+	private final AtomicInteger bugCount;
+
+	AnalysisProgress(@NotNull final ProgressIndicator indicator, final int moduleCount) {
+		this.indicator = indicator;
+		this.moduleCount = moduleCount;
+		finishedModuleCount = new AtomicInteger();
+		analyzedClassCount = new AtomicInteger();
+		bugCount = new AtomicInteger();
+	}
+
+	/**
+	 * @param delta number of classes analyzed since the last invocation by the same module
+	 * @return number of classes analyzed so far by all modules
+	 */
+	int addAnalyzedClasses(final int delta) {
+		if (delta == 0) {
+			return analyzedClassCount.get();
+		}
+		final int ret = analyzedClassCount.addAndGet(delta);
+		updateText2(ret);
+		return ret;
+	}
+
+	void bugFound() {
+		bugCount.incrementAndGet();
+	}
+
+	void moduleStarted() {
+		updateText();
+	}
+
+	void moduleFinished() {
+		finishedModuleCount.incrementAndGet();
+		updateText();
+	}
+
+	private void updateText() {
+		indicator.setText("Analyzing modules: " + finishedModuleCount.get() + " of " + moduleCount + " finished (found " + bugCount.get() + " bugs)");
+	}
+
+	private void updateText2(final int analyzedClassCount) {
+		indicator.setText2("Analyzed classes: " + analyzedClassCount + " (found " + bugCount.get() + " bugs)");
+	}
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.core;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.Alarm;
+import com.intellij.util.io.storage.HeavyProcessLatch;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.twodividedbyzero.idea.findbugs.common.EventDispatchThreadHelper;
+import org.twodividedbyzero.idea.findbugs.common.util.New;
+import org.twodividedbyzero.idea.findbugs.messages.AnalysisStateListener;
+import org.twodividedbyzero.idea.findbugs.messages.MessageBusManager;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Schedules the {@link IncrementalAnalysis} after auto make of a project.
+ * <ul>
+ * <li>The changed files of all builds which finish within the delay are merged into one analysis.</li>
+ * <li>At most one analysis of the project runs at a time ; pending files wait until the running analysis
+ * (also one started by the user) finished.</li>
+ * <li>A running auto analysis is canceled (and its files are scheduled again) if some of its files change again,
+ * because its result would be stale.</li>
+ * <li>If many files are pending, the ones open in an editor are analyzed first in a batch of their own.</li>
+ * </ul>
+ * The number of runs and the wait times are logged when the project is closed (see {@link #dispose(Project)}).
+ * <p>
+ * EDT thread confinement (except {@link #schedule(Project, Collection, int)}).
+ */
+final class AutoAnalysisScheduler implements AnalysisStateListener {
+
+	private static final Logger LOGGER = Logger.getInstance(AutoAnalysisScheduler.class);
+
+	/**
+	 * Poll interval while a heavy process (f. e. indexing) is running.
+	 */
+	private static final int HEAVY_PROCESS_RETRY_MS = 1000;
+
+	/**
+	 * Minimum number of pending files before the files open in an editor are analyzed in a batch of their own.
+	 */
+	private static final int PRIORITY_BATCH_MIN_PENDING = 20;
+
+	/**
+	 * The schedulers reference their project, so the entries are removed by {@link #dispose(Project)}.
+	 */
+	private static final Map<Project, AutoAnalysisScheduler> SCHEDULER_BY_PROJECT = New.map();
+
+	@NotNull
+	private final Project _project;
+
+	@NotNull
+	private final Alarm _alarm;
+
+	@NotNull
+	private final Set<VirtualFile> _pending;
+
+	private long _pendingSinceMillis;
+
+	/**
+	 * The files of the running auto analysis or {@code null} if there is none.
+	 */
+	@Nullable
+	private Set<VirtualFile> _running;
+
+	private boolean _rescheduleRunning;
+
+	private int _runCount;
+
+	private int _staleCount;
+
+	private long _totalWaitMillis;
+
+	private long _maxWaitMillis;
+
+	private AutoAnalysisScheduler(@NotNull final Project project) {
+		_project = project;
+		_alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, project);
+		_pending = new LinkedHashSet<VirtualFile>();
+		MessageBusManager.subscribeAnalysisState(project, this, this);
+	}
+
+	/**
+	 * Can be invoked by any thread.
+	 *
+	 * @param delayMs the analysis starts when no further files are scheduled for this time
+	 */
+	static void schedule(@NotNull final Project project, @NotNull final Collection<VirtualFile> changed, final int delayMs) {
+		EventDispatchThreadHelper.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				if (project.isDisposed() || !project.isOpen()) {
+					return;
+				}
+				AutoAnalysisScheduler scheduler = SCHEDULER_BY_PROJECT.get(project);
+				if (scheduler == null) {
+					scheduler = new AutoAnalysisScheduler(project);
+					SCHEDULER_BY_PROJECT.put(project, scheduler);
+				}
+				scheduler.enqueue(changed, delayMs);
+			}
+		});
+	}
+
+	/**
+	 * Invoked by EDT when the project is closed.
+	 */
+	static void dispose(@NotNull final Project project) {
+		EventDispatchThreadHelper.checkEDT();
+		final AutoAnalysisScheduler scheduler = SCHEDULER_BY_PROJECT.remove(project);
+		if (scheduler != null) {
+			scheduler._alarm.cancelAllRequests();
+			if (scheduler._runCount > 0) {
+				LOGGER.info(String.format(
+						"Auto analysis of '%s': %d runs (%d canceled because stale), average wait %d ms, max wait %d ms",
+						project.getName(),
+						scheduler._runCount,
+						scheduler._staleCount,
+						scheduler._totalWaitMillis / scheduler._runCount,
+						scheduler._maxWaitMillis
+				));
+			}
+		}
+	}
+
+	private void enqueue(@NotNull final Collection<VirtualFile> changed, final int delayMs) {
+		if (_pending.isEmpty()) {
+			_pendingSinceMillis = System.currentTimeMillis();
+		}
+		_pending.addAll(changed);
+		if (_running != null && !_rescheduleRunning && containsAny(_running, changed)) {
+			_rescheduleRunning = true;
+			_staleCount++;
+			LOGGER.info("Cancel stale auto analysis of " + _running.size() + " files");
+			MessageBusManager.publishAnalysisAborting(_project);
+		}
+		_alarm.cancelAllRequests();
+		_alarm.addRequest(new Runnable() {
+			@Override
+			public void run() {
+				tryStart();
+			}
+		}, Math.max(0, delayMs));
+	}
+
+	private void tryStart() {
+		if (_pending.isEmpty() || _project.isDisposed()) {
+			return;
+		}
+		if (_running != null || !FindBugsState.get(_project).isIdle()) {
+			return; // see analysisFinished and analysisAborted
+		}
+		if (HeavyProcessLatch.INSTANCE.isRunning()) {
+			_alarm.addRequest(new Runnable() {
+				@Override
+				public void run() {
+					tryStart();
+				}
+			}, HEAVY_PROCESS_RETRY_MS);
+			return;
+		}
+
+		final long waitMillis = System.currentTimeMillis() - _pendingSinceMillis;
+		_running = takeBatch();
+		_runCount++;
+		_totalWaitMillis += waitMillis;
+		_maxWaitMillis = Math.max(_maxWaitMillis, waitMillis);
+		LOGGER.info(String.format("Start auto analysis of %d files (waited %d ms, %d files still queued)", _running.size(), waitMillis, _pending.size()));
+		IncrementalAnalysis.start(_project, _running);
+	}
+
+	@NotNull
+	private Set<VirtualFile> takeBatch() {
+		if (_pending.size() >= PRIORITY_BATCH_MIN_PENDING) {
+			final Set<VirtualFile> open = new LinkedHashSet<VirtualFile>();
+			for (final VirtualFile file : FileEditorManager.getInstance(_project).getOpenFiles()) {
+				if (_pending.contains(file)) {
+					open.add(file);
+				}
+			}
+			if (!open.isEmpty() && open.size() < _pending.size()) {
+				_pending.removeAll(open);
+				return open; // the others keep their wait time
+			}
+		}
+		final Set<VirtualFile> ret = new LinkedHashSet<VirtualFile>(_pending);
+		_pending.clear();
+		return ret;
+	}
+
+	/**
+	 * Invoked when any analysis of the project finished (or was aborted).
+	 */
+	private void analysisDone(final boolean aborted) {
+		if (_running != null) {
+			if (aborted && _rescheduleRunning) {
+				if (_pending.isEmpty()) {
+					_pendingSinceMillis = System.currentTimeMillis();
+				}
+				_pending.addAll(_running);
+			}
+			_running = null;
+			_rescheduleRunning = false;
+		}
+		if (_alarm.getActiveRequestCount() == 0) {
+			tryStart();
+		} // else delay of the last enqueue not elapsed
+	}
+
+	private static boolean containsAny(@NotNull final Set<VirtualFile> set, @NotNull final Collection<VirtualFile> files) {
+		for (final VirtualFile file : files) {
+			if (set.contains(file)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void analysisStarted(final boolean incremental) {
+	}
+
+	@Override
+	public void analysisAborting() {
+	}
+
+	@Override
+	public void analysisAborted() {
+		analysisDone(true);
+	}
+
+	@Override
+	public void analysisFinished(@NotNull final FindBugsResult result, @Nullable final Throwable error) {
+		analysisDone(false);
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.core;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Condition;
+import org.jetbrains.annotations.NotNull;
+import org.twodividedbyzero.idea.findbugs.common.EventDispatchThreadHelper;
+import org.twodividedbyzero.idea.findbugs.messages.MessageBusManager;
+
+import javax.swing.Timer;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transfers new bugs from the analysis thread(s) to the EDT in batches (see {@link org.twodividedbyzero.idea.findbugs.messages.NewBugsBatchListener}).
+ * <p>
+ * {@link #offer(Bug, int)} is lock free and can be invoked by any thread. The EDT flushes at most
+ * {@link #MAX_BATCH_SIZE} bugs per frame and at most one frame per {@link #FRAME_MILLIS}, so the UI stays
+ * responsive regardless of how fast the bugs are reported. Producers which are faster than the EDT (f. e. an import)
+ * can use {@link #awaitPendingAtMost(int, ProgressIndicator)} to bound the number of pending bugs.
+ */
+public final class BugBatchQueue {
+
+	private static final int FRAME_MILLIS = 100;
+	private static final int MAX_BATCH_SIZE = 1000;
+
+	@NotNull
+	private final Project project;
+
+	/**
+	 * Pending bugs are dropped if this condition is true (f. e. the analysis was canceled).
+	 */
+	@NotNull
+	private final Condition<Object> shutUpCondition;
+
+	@NotNull
+	private final Queue<Bug> pending;
+
+	@NotNull
+	private final AtomicInteger pendingCount;
+
+	@NotNull
+	private final AtomicBoolean flushScheduled;
+
+	@NotNull
+	private final Timer timer;
+
+	private volatile int analyzedClassCount;
+
+	public BugBatchQueue(@NotNull final Project project, @NotNull final Condition<Object> shutUpCondition) {
+		this.project = project;
+		this.shutUpCondition = shutUpCondition;
+		pending = new ConcurrentLinkedQueue<Bug>();
+		pendingCount = new AtomicInteger();
+		flushScheduled = new AtomicBoolean();
+		timer = new Timer(FRAME_MILLIS, new ActionListener() {
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				flush();
+			}
+		});
+		timer.setRepeats(false);
+	}
+
+	/**
+	 * @param analyzedClassCount number of classes analyzed so far
+	 */
+	public void offer(@NotNull final Bug bug, final int analyzedClassCount) {
+		this.analyzedClassCount = analyzedClassCount;
+		pending.add(bug);
+		pendingCount.incrementAndGet();
+		if (flushScheduled.compareAndSet(false, true)) {
+			timer.restart();
+		}
+	}
+
+	/**
+	 * Blocks the calling thread while more than {@code maxPending} bugs wait for the EDT.
+	 * Must not be invoked by EDT.
+	 */
+	public void awaitPendingAtMost(final int maxPending, @NotNull final ProgressIndicator indicator) {
+		while (pendingCount.get() > maxPending && !project.isDisposed() && !shutUpCondition.value(null)) {
+			indicator.checkCanceled();
+			try {
+				Thread.sleep(FRAME_MILLIS / 2);
+			} catch (final InterruptedException ignored) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Publishes all pending bugs now (still in batches of at most {@link #MAX_BATCH_SIZE}).
+	 */
+	public void drain() {
+		EventDispatchThreadHelper.checkEDT();
+		timer.stop();
+		flushScheduled.set(false);
+		while (publishBatch()) {
+			// next batch
+		}
+	}
+
+	/**
+	 * Invoked by EDT.
+	 */
+	private void flush() {
+		flushScheduled.set(false);
+		if (publishBatch() && flushScheduled.compareAndSet(false, true)) {
+			timer.restart(); // more bugs than fit in one frame
+		}
+	}
+
+	/**
+	 * @return true if there are more pending bugs
+	 */
+	private boolean publishBatch() {
+		if (project.isDisposed() || shutUpCondition.value(null)) {
+			while (pending.poll() != null) {
+				pendingCount.decrementAndGet();
+			}
+			return false;
+		}
+		final List<Bug> batch = new ArrayList<Bug>(Math.min(MAX_BATCH_SIZE, 64));
+		Bug bug;
+		while (batch.size() < MAX_BATCH_SIZE && (bug = pending.poll()) != null) {
+			batch.add(bug);
+		}
+		if (!batch.isEmpty()) {
+			pendingCount.addAndGet(-batch.size());
+			MessageBusManager.publishNewBugs(project, batch, analyzedClassCount);
+		}
+		return !pending.isEmpty();
+	}
+}
@@ -20,6 +20,7 @@
 package org.twodividedbyzero.idea.findbugs.core;
 
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.fileTypes.FileTypeManager;
 import com.intellij.openapi.project.Project;
@@ -30,25 +31,33 @@ import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.openapi.vfs.VirtualFileAdapter;
-import com.intellij.openapi.vfs.VirtualFileCopyEvent;
-import com.intellij.openapi.vfs.VirtualFileEvent;
-import com.intellij.openapi.vfs.VirtualFileMoveEvent;
-import com.intellij.openapi.vfs.VirtualFilePropertyEvent;
 import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
 import com.intellij.openapi.vfs.newvfs.NewVirtualFile;
-import com.intellij.util.Function;
-import gnu.trove.THashSet;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.twodividedbyzero.idea.findbugs.common.util.New;
 
-import java.io.File;
-import java.util.Collection;
-import java.util.Set;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
  * Based on {@link com.intellij.compiler.impl.TranslatingCompilerFilesMonitor} of IC-140.2285.5.
+ * <p>
+ * The VFS listener only records the files of the events ; the directories are expanded and the files are
+ * filtered by a pooled thread in short read actions (chunks of {@link #COLLECT_CHUNK_SIZE} event files), so neither
+ * the VFS write action (f. e. a VCS update of thousands of files) nor other write actions wait for it.
+ * Use {@link #awaitCollected(long)} before the changes are taken from {@link Changes}.
  *
  * $Date: 2015-02-14 16:52:01 +0100 (Sa, 14 Feb 2015) $
  *
@@ -56,45 +65,145 @@ import java.util.Set;
  * @version $Revision: 343 $
  * @since 0.9.995
  */
-final class ChangeCollector extends VirtualFileAdapter {
+final class ChangeCollector extends BulkFileListener.Adapter {
+
+
+	private static final int COLLECT_CHUNK_SIZE = 100;
+
+
+	/**
+	 * Files of the VFS events which are not collected yet.
+	 */
+	@NotNull
+	private final Queue<VirtualFile> _pending;
+
+	@NotNull
+	private final AtomicBoolean _collectScheduled;
+
+	/**
+	 * Number of files added to {@link #_pending} so far.
+	 */
+	@NotNull
+	private final AtomicLong _queuedCount;
+
+	/**
+	 * Number of files taken from {@link #_pending} and collected (or failed) so far ; guarded by {@link #_lock}.
+	 */
+	private long _collectedCount;
+
+	@NotNull
+	private final Object _lock;
 
 
 	ChangeCollector() {
+		_pending = new ConcurrentLinkedQueue<VirtualFile>();
+		_collectScheduled = new AtomicBoolean();
+		_queuedCount = new AtomicLong();
+		_lock = new Object();
 	}
 
 
 	@Override
-	public void propertyChanged(@NotNull final VirtualFilePropertyEvent event) {
-		if (VirtualFile.PROP_NAME.equals(event.getPropertyName())) {
-			final VirtualFile eventFile = event.getFile();
-			if (isInContentOfOpenedProject(eventFile)) {
-				collectPathsAndNotify(eventFile, NOTIFY_CHANGED);
+	public void after(@NotNull final List<? extends VFileEvent> events) {
+		boolean added = false;
+		for (final VFileEvent event : events) {
+			final VirtualFile eventFile = getChangedFile(event);
+			if (eventFile != null) {
+				_pending.add(eventFile);
+				_queuedCount.incrementAndGet();
+				added = true;
 			}
 		}
+		if (added && _collectScheduled.compareAndSet(false, true)) {
+			ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+				@Override
+				public void run() {
+					collectPending();
+				}
+			});
+		}
 	}
 
 
-	@Override
-	public void contentsChanged(@NotNull final VirtualFileEvent event) {
-		collectPathsAndNotify(event.getFile(), NOTIFY_CHANGED);
+	/**
+	 * Waits until the files of all VFS events so far are passed to {@link Changes}.
+	 *
+	 * @return false if they are not collected within {@code timeoutMillis}
+	 */
+	boolean awaitCollected(final long timeoutMillis) throws InterruptedException {
+		final long target = _queuedCount.get();
+		final long deadline = System.currentTimeMillis() + timeoutMillis;
+		synchronized (_lock) {
+			while (_collectedCount < target) {
+				final long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return false;
+				}
+				_lock.wait(remaining);
+			}
+		}
+		return true;
 	}
 
 
-	@Override
-	public void fileCreated(@NotNull final VirtualFileEvent event) {
-		collectPathsAndNotify(event.getFile(), NOTIFY_CHANGED);
+	/**
+	 * Invoked by a pooled thread. Files which are added meanwhile are collected by the same thread
+	 * (or by a new one if they were added after the last check).
+	 */
+	private void collectPending() {
+		do {
+			final List<VirtualFile> eventFiles = New.arrayList();
+			for (VirtualFile file = _pending.poll(); file != null; file = _pending.poll()) {
+				eventFiles.add(file);
+			}
+			try {
+				for (int start = 0; start < eventFiles.size(); start += COLLECT_CHUNK_SIZE) {
+					collect(eventFiles.subList(start, Math.min(start + COLLECT_CHUNK_SIZE, eventFiles.size())));
+				}
+			} finally {
+				synchronized (_lock) {
+					_collectedCount += eventFiles.size();
+					_lock.notifyAll();
+				}
+				_collectScheduled.set(false);
+			}
+		} while (!_pending.isEmpty() && _collectScheduled.compareAndSet(false, true));
 	}
 
 
-	@Override
-	public void fileCopied(@NotNull final VirtualFileCopyEvent event) {
-		collectPathsAndNotify(event.getFile(), NOTIFY_CHANGED);
+	private static void collect(@NotNull final List<VirtualFile> eventFiles) {
+		ApplicationManager.getApplication().runReadAction(new Runnable() {
+			@Override
+			public void run() {
+				final List<VirtualFile> changed = New.arrayList();
+				for (final VirtualFile eventFile : eventFiles) {
+					if (eventFile.isValid()) {
+						collectFiles(eventFile, changed);
+					}
+				}
+				if (!changed.isEmpty()) {
+					Changes.INSTANCE.addChanged(changed);
+				}
+			}
+		});
 	}
 
 
-	@Override
-	public void fileMoved(@NotNull VirtualFileMoveEvent event) {
-		collectPathsAndNotify(event.getFile(), NOTIFY_CHANGED);
+	@Nullable
+	private static VirtualFile getChangedFile(@NotNull final VFileEvent event) {
+		if (event instanceof VFileContentChangeEvent || event instanceof VFileCreateEvent || event instanceof VFileMoveEvent) {
+			return event.getFile();
+		}
+		if (event instanceof VFileCopyEvent) {
+			return ((VFileCopyEvent) event).findCreatedFile();
+		}
+		if (event instanceof VFilePropertyChangeEvent) {
+			final VFilePropertyChangeEvent propertyChangeEvent = (VFilePropertyChangeEvent) event;
+			if (VirtualFile.PROP_NAME.equals(propertyChangeEvent.getPropertyName())) {
+				return propertyChangeEvent.getFile(); // the content check is done by collectFiles
+			}
+		}
+		return null;
 	}
 
 
@@ -151,27 +260,15 @@ final class ChangeCollector extends VirtualFileAdapter {
 	}
 
 
-	private static final Function<Collection<File>, Void> NOTIFY_CHANGED = new Function<Collection<File>, Void>() {
-		public Void fun(Collection<File> files) {
-			notifyFilesChanged(files);
-			return null;
-		}
-	};
-
-
-	private static void collectPathsAndNotify(final VirtualFile file, final Function<Collection<File>, Void> notification) {
-		final Set<File> pathsToMark = new THashSet<File>(FileUtil.FILE_HASHING_STRATEGY);
+	private static void collectFiles(final VirtualFile file, final List<VirtualFile> changed) {
 		if (!isIgnoredOrUnderIgnoredDirectory(file)) {
 			final boolean inContent = isInContentOfOpenedProject(file);
 			processRecursively(file, !inContent, new FileProcessor() {
 				public void execute(final VirtualFile file) {
-					pathsToMark.add(new File(file.getPath()));
+					changed.add(file);
 				}
 			});
 		}
-		if (!pathsToMark.isEmpty()) {
-			notification.fun(pathsToMark);
-		}
 	}
 
 
@@ -197,11 +294,4 @@ final class ChangeCollector extends VirtualFileAdapter {
 						ProjectUtil.isProjectOrWorkspaceFile( file )        ||
 						FileUtil.isAncestor( PathManager.getConfigPath(), file.getPath(), false); // is config file
 	}
-
-
-	private static void notifyFilesChanged(Collection<File> paths) {
-		if (!paths.isEmpty()) {
-			Changes.INSTANCE.addChanged( paths );
-		}
-	}
 }
\ No newline at end of file
@@ -14,31 +14,31 @@
  * GNU General Public License for more details.
  *
  * You should have received a copy of the GNU General Public License
- * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
- */
 
 package org.twodividedbyzero.idea.findbugs.core;
 
 
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ProjectFileIndex;
-import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
-import gnu.trove.THashMap;
-import gnu.trove.THashSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.twodividedbyzero.idea.findbugs.common.util.IdeaUtilImpl;
 import org.twodividedbyzero.idea.findbugs.common.util.New;
 
-import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 
 /**
+ * Changed source files per project (see {@link ChangeCollector}).
+ * <p>
+ * Thread safe without locks ; the VFS event thread never waits for a reader.
+ * A file which is added concurrently to {@link #getAndRemoveChanged(Project)} may end up in the returned set.
+ *
  * $Date: 2015-02-14 17:45:23 +0100 (Sa, 14 Feb 2015) $
  *
  * @author $Author: reto.merz@gmail.com $
@@ -49,33 +49,33 @@ final class Changes {
 
 
 	static final Changes INSTANCE = new Changes();
-	private final Set<Project> _listeners = new THashSet<Project>();
-	private final Map<Project, Set<VirtualFile>> _changed = new THashMap<Project, Set<VirtualFile>>();
+	private final Set<Project> _listeners = Collections.newSetFromMap(New.<Project, Boolean>concurrentMap());
+	private final ConcurrentMap<Project, Set<VirtualFile>> _changed = New.concurrentMap();
 
 
 	private Changes() {
 	}
 
 
-	synchronized void addListener(@NotNull final Project project) {
+	void addListener(@NotNull final Project project) {
 		_listeners.add(project);
 	}
 
 
-	synchronized boolean removeListener(@NotNull final Project project) {
+	boolean removeListener(@NotNull final Project project) {
 		_listeners.remove(project);
 		_changed.remove(project);
 		return _listeners.isEmpty();
 	}
 
 
-	synchronized void addChanged(@NotNull final Collection<File> paths) {
-		final LocalFileSystem lfs = LocalFileSystem.getInstance();
-		VirtualFile vf;
+	/**
+	 * Must be invoked in a read action (f. e. by a VFS listener).
+	 */
+	void addChanged(@NotNull final Collection<VirtualFile> files) {
 		List<VirtualFile> vfs = null;
-		for (File f : paths) {
-			vf = lfs.findFileByIoFile(f);
-			if (vf != null && vf.isValid() && !vf.isDirectory() && IdeaUtilImpl.isValidFileType(vf.getFileType())) {
+		for (final VirtualFile vf : files) {
+			if (vf.isValid() && !vf.isDirectory() && IdeaUtilImpl.isValidFileType(vf.getFileType())) {
 				if (vfs == null) {
 					vfs = New.arrayList();
 				}
@@ -84,19 +84,16 @@ final class Changes {
 		}
 
 		if (vfs != null) {
-			ProjectFileIndex index;
-			Set<VirtualFile> changesPerProject;
-			for (Project project : _listeners) {
-				index = ProjectFileIndex.SERVICE.getInstance( project );
-				changesPerProject = null;
-				for (VirtualFile f : vfs) {
+			for (final Project project : _listeners) {
+				if (project.isDisposed()) {
+					continue;
+				}
+				final ProjectFileIndex index = ProjectFileIndex.SERVICE.getInstance(project);
+				Set<VirtualFile> changesPerProject = null;
+				for (final VirtualFile f : vfs) {
 					if (index.isInSource(f)) {
 						if (changesPerProject == null) {
-							changesPerProject = _changed.get(project);
-							if (changesPerProject == null) {
-								changesPerProject = New.tSet();
-								_changed.put(project, changesPerProject);
-							}
+							changesPerProject = getOrCreateChanged(project);
 						}
 						changesPerProject.add(f);
 					}
@@ -106,8 +103,22 @@ final class Changes {
 	}
 
 
+	@NotNull
+	private Set<VirtualFile> getOrCreateChanged(@NotNull final Project project) {
+		Set<VirtualFile> ret = _changed.get(project);
+		if (ret == null) {
+			final Set<VirtualFile> created = Collections.newSetFromMap(New.<VirtualFile, Boolean>concurrentMap());
+			ret = _changed.putIfAbsent(project, created);
+			if (ret == null) {
+				ret = created;
+			}
+		}
+		return ret;
+	}
+
+
 	@Nullable
-	synchronized Set<VirtualFile> getAndRemoveChanged(@NotNull final Project project) {
+	Set<VirtualFile> getAndRemoveChanged(@NotNull final Project project) {
 		return _changed.remove(project);
 	}
 }
\ No newline at end of file
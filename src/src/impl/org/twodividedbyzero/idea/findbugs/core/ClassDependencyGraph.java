@@ -0,0 +1,326 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.core;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.twodividedbyzero.idea.findbugs.collectors.AbstractClassAdder;
+import org.twodividedbyzero.idea.findbugs.common.util.New;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class level dependency graph of compiler output directories, built from the bytecode.
+ * <p>
+ * The references of a class are the classes of its constant pool and the types of the field and method
+ * descriptors (declared and used ones). An output directory is scanned completely when it is updated the first
+ * time ; afterwards only the given (package) directories of it are scanned again, and a class file is only read
+ * again if its size or modification time has changed since the last {@link #update(Collection, Collection)}.
+ * <p>
+ * Thread safe.
+ */
+final class ClassDependencyGraph {
+
+	private static final Logger LOGGER = Logger.getInstance(ClassDependencyGraph.class);
+
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	/**
+	 * Class file path (absolute) -> node
+	 */
+	@NotNull
+	private Map<String, Node> nodesByPath;
+
+	/**
+	 * Class name (dotted) -> node
+	 */
+	@NotNull
+	private Map<String, Node> nodesByName;
+
+	/**
+	 * Class name (dotted) -> names of the classes referencing it
+	 */
+	@NotNull
+	private Map<String, Set<String>> dependents;
+
+	/**
+	 * Output directories which were scanned completely.
+	 */
+	@NotNull
+	private Set<File> scannedOutputDirs;
+
+	ClassDependencyGraph() {
+		nodesByPath = New.map();
+		nodesByName = New.map();
+		dependents = New.map();
+		scannedOutputDirs = New.set();
+	}
+
+	/**
+	 * Scans the new {@code outputDirs} completely and the {@code changedDirs} (not recursive) of the known ones,
+	 * and reads all new and changed class files. Classes which no longer exist in a scanned directory are removed.
+	 * Must not be invoked in a read action because the directories are scanned.
+	 *
+	 * @param outputDirs  all compiler output directories (absolute) of the project
+	 * @param changedDirs directories (absolute) which contain new, changed or deleted class files
+	 */
+	synchronized void update(@NotNull final Collection<File> outputDirs, @NotNull final Collection<File> changedDirs) {
+		final Map<String, Node> seen = New.map();
+		for (final Map.Entry<String, Node> entry : nodesByPath.entrySet()) {
+			final Node node = entry.getValue();
+			if (outputDirs.contains(node.outputDir) && scannedOutputDirs.contains(node.outputDir) && !changedDirs.contains(node.file.getParentFile())) {
+				seen.put(entry.getKey(), node);
+			}
+		}
+		int readCount = 0;
+		for (final File outputDir : outputDirs) {
+			if (scannedOutputDirs.contains(outputDir)) {
+				for (final File changedDir : changedDirs) {
+					if (FileUtil.isAncestor(outputDir, changedDir, false)) {
+						readCount += collect(outputDir, changedDir, false, seen);
+					}
+				}
+			} else {
+				readCount += collect(outputDir, outputDir, true, seen);
+			}
+		}
+
+		final Map<String, Node> byName = New.map();
+		for (final Node node : seen.values()) {
+			byName.put(node.className, node);
+		}
+		final Map<String, Set<String>> byReference = New.map();
+		for (final Node node : byName.values()) {
+			for (final String reference : node.references) {
+				if (byName.containsKey(reference)) {
+					Set<String> set = byReference.get(reference);
+					if (set == null) {
+						set = New.set();
+						byReference.put(reference, set);
+					}
+					set.add(node.className);
+				}
+			}
+		}
+
+		nodesByPath = seen;
+		nodesByName = byName;
+		dependents = byReference;
+		scannedOutputDirs = new HashSet<File>(outputDirs);
+		LOGGER.debug(String.format("Dependency graph updated: %d classes (%d read)", byName.size(), readCount));
+	}
+
+	private int collect(@NotNull final File outputDir, @NotNull final File dir, final boolean recursive, @NotNull final Map<String, Node> seen) {
+		final File[] files = dir.listFiles();
+		if (files == null) {
+			return 0;
+		}
+		int ret = 0;
+		for (final File file : files) {
+			if (file.isDirectory()) {
+				if (recursive) {
+					ret += collect(outputDir, file, true, seen);
+				}
+			} else if (file.getName().endsWith(AbstractClassAdder.CLASS_FILE_SUFFIX)) {
+				final String path = file.getAbsolutePath();
+				final long lastModified = file.lastModified();
+				final long length = file.length();
+				Node node = nodesByPath.get(path);
+				if (node == null || node.lastModified != lastModified || node.length != length) {
+					node = read(outputDir, file, lastModified, length);
+					ret++;
+				}
+				if (node != null) {
+					seen.put(path, node);
+				}
+			}
+		}
+		return ret;
+	}
+
+	@Nullable
+	synchronized String getClassName(@NotNull final String classFilePath) {
+		final Node node = nodesByPath.get(new File(classFilePath).getAbsolutePath());
+		return node != null ? node.className : null;
+	}
+
+	/**
+	 * @return false if the class does not exist (anymore) in the output directories of the last update
+	 */
+	synchronized boolean contains(@NotNull final String className) {
+		return nodesByName.containsKey(className);
+	}
+
+	@Nullable
+	synchronized File getClassFile(@NotNull final String className) {
+		final Node node = nodesByName.get(className);
+		return node != null ? node.file : null;
+	}
+
+	@Nullable
+	synchronized File getOutputDir(@NotNull final String className) {
+		final Node node = nodesByName.get(className);
+		return node != null ? node.outputDir : null;
+	}
+
+	/**
+	 * @return the classes which reference one of {@code classNames} directly (but are not part of {@code classNames})
+	 */
+	@NotNull
+	synchronized Set<String> getDependents(@NotNull final Collection<String> classNames) {
+		final Set<String> ret = New.set();
+		for (final String className : classNames) {
+			final Set<String> set = dependents.get(className);
+			if (set != null) {
+				ret.addAll(set);
+			}
+		}
+		ret.removeAll(classNames);
+		return ret;
+	}
+
+	@Nullable
+	private static Node read(@NotNull final File outputDir, @NotNull final File file, final long lastModified, final long length) {
+		try {
+			final ClassReader reader = new ClassReader(FileUtil.loadFileBytes(file));
+			final String className = reader.getClassName().replace('/', '.');
+			final Set<String> references = readReferences(reader);
+			references.remove(className);
+			return new Node(outputDir, file, lastModified, length, className, references);
+		} catch (final IOException e) {
+			LOGGER.debug("Could not read class file " + file, e);
+		} catch (final RuntimeException e) { // corrupt or unsupported class file
+			LOGGER.debug("Could not read class file " + file, e);
+		}
+		return null;
+	}
+
+	@NotNull
+	private static Set<String> readReferences(@NotNull final ClassReader reader) {
+		final Set<String> ret = New.set();
+		final char[] buf = new char[reader.getMaxStringLength()];
+		for (int i = 1; i < reader.getItemCount(); i++) {
+			final int offset = reader.getItem(i);
+			if (offset > 0) { // second slot of long and double is empty
+				final int tag = reader.b[offset - 1];
+				if (tag == CONSTANT_CLASS) {
+					addInternalName(ret, reader.readUTF8(offset, buf));
+				} else if (tag == CONSTANT_NAME_AND_TYPE) {
+					addDescriptor(ret, reader.readUTF8(offset + 2, buf));
+				}
+			}
+		}
+		reader.accept(new ClassVisitor(Opcodes.ASM5) {
+			@Override
+			public FieldVisitor visitField(final int access, final String name, final String desc, final String signature, final Object value) {
+				addDescriptor(ret, desc);
+				return null;
+			}
+
+			@Override
+			public MethodVisitor visitMethod(final int access, final String name, final String desc, final String signature, final String[] exceptions) {
+				addDescriptor(ret, desc);
+				return null;
+			}
+		}, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		return ret;
+	}
+
+	private static void addInternalName(@NotNull final Set<String> references, @Nullable final String internalName) {
+		if (internalName == null) {
+			return;
+		}
+		if (internalName.startsWith("[")) { // array class
+			addType(references, Type.getType(internalName));
+		} else {
+			references.add(internalName.replace('/', '.'));
+		}
+	}
+
+	private static void addDescriptor(@NotNull final Set<String> references, @Nullable final String descriptor) {
+		if (descriptor == null) {
+			return;
+		}
+		if (descriptor.startsWith("(")) {
+			for (final Type type : Type.getArgumentTypes(descriptor)) {
+				addType(references, type);
+			}
+			addType(references, Type.getReturnType(descriptor));
+		} else {
+			addType(references, Type.getType(descriptor));
+		}
+	}
+
+	private static void addType(@NotNull final Set<String> references, @NotNull Type type) {
+		if (type.getSort() == Type.ARRAY) {
+			type = type.getElementType();
+		}
+		if (type.getSort() == Type.OBJECT) {
+			references.add(type.getClassName());
+		}
+	}
+
+	private static final class Node {
+		@NotNull
+		private final File outputDir;
+
+		@NotNull
+		private final File file;
+
+		private final long lastModified;
+
+		private final long length;
+
+		@NotNull
+		private final String className;
+
+		@NotNull
+		private final Set<String> references;
+
+		private Node(
+				@NotNull final File outputDir,
+				@NotNull final File file,
+				final long lastModified,
+				final long length,
+				@NotNull final String className,
+				@NotNull final Set<String> references
+		) {
+			this.outputDir = outputDir;
+			this.file = file;
+			this.lastModified = lastModified;
+			this.length = length;
+			this.className = className;
+			this.references = references;
+		}
+	}
+}
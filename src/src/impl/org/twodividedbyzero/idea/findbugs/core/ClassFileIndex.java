@@ -0,0 +1,255 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.core;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.twodividedbyzero.idea.findbugs.collectors.AbstractClassAdder;
+import org.twodividedbyzero.idea.findbugs.common.util.New;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the class files of compiler output directories by their source file, built from the bytecode.
+ * <p>
+ * The source of a class is the SourceFile attribute of the class (or of its outer class if the class has none),
+ * so inner, anonymous and local classes as well as the classes of other JVM languages are found without
+ * knowing the naming scheme of the compiler. All classes of a source file are in the package directory of the
+ * source, so only the package directories of the requested sources are scanned (not the whole output directory).
+ * A class file is only read again if its size or modification time has changed since the last
+ * {@link #update(File, String)} of its package directory.
+ * <p>
+ * Thread safe. The disk is not accessed while the index is locked.
+ */
+final class ClassFileIndex {
+
+	private static final Logger LOGGER = Logger.getInstance(ClassFileIndex.class);
+
+	/**
+	 * Package directory (absolute) -> index ; guarded by this
+	 */
+	@NotNull
+	private final Map<File, PackageDir> packageDirs;
+
+	ClassFileIndex() {
+		packageDirs = New.map();
+	}
+
+	/**
+	 * Scans the package directory {@code packagePath} of {@code outputDir} (not its sub directories) and reads all
+	 * new and changed class files. Classes which no longer exist are removed.
+	 *
+	 * @param packagePath f. e. {@code org/foo/} (empty for the default package), see {@link #getPackagePath(String)}
+	 */
+	void update(@NotNull final File outputDir, @NotNull final String packagePath) {
+		final File key = new File(outputDir, packagePath).getAbsoluteFile();
+		final PackageDir previous;
+		synchronized (this) {
+			previous = packageDirs.get(key);
+		}
+		final Map<String, Node> seen = New.map();
+		final int readCount = collect(key, previous != null ? previous.nodesByPath : Collections.<String, Node>emptyMap(), seen);
+
+		final Map<String, Node> byName = New.map();
+		for (final Node node : seen.values()) {
+			byName.put(node.internalName, node);
+		}
+		final Map<String, List<String>> bySource = New.map();
+		for (final Node node : seen.values()) {
+			final String sourcePath = getSourcePath(node, byName);
+			List<String> classFiles = bySource.get(sourcePath);
+			if (classFiles == null) {
+				classFiles = new ArrayList<String>();
+				bySource.put(sourcePath, classFiles);
+			}
+			classFiles.add(node.path);
+		}
+
+		synchronized (this) {
+			packageDirs.put(key, new PackageDir(seen, bySource));
+		}
+		LOGGER.debug(String.format("Class file index of %s updated: %d classes (%d read)", key, seen.size(), readCount));
+	}
+
+	private static int collect(@NotNull final File dir, @NotNull final Map<String, Node> previous, @NotNull final Map<String, Node> seen) {
+		final File[] files = dir.listFiles();
+		if (files == null) {
+			return 0;
+		}
+		int ret = 0;
+		for (final File file : files) {
+			if (file.getName().endsWith(AbstractClassAdder.CLASS_FILE_SUFFIX) && file.isFile()) {
+				final String path = file.getAbsolutePath();
+				final long lastModified = file.lastModified();
+				final long length = file.length();
+				Node node = previous.get(path);
+				if (node == null || node.lastModified != lastModified || node.length != length) {
+					node = read(file, path, lastModified, length);
+					ret++;
+				}
+				if (node != null) {
+					seen.put(path, node);
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Note that {@link #update(File, String)} must be invoked for the package directory of the source before.
+	 *
+	 * @param sourcePath package path and name of the source file, f. e. {@code org/foo/Bar.java}
+	 * @return the class files (absolute paths) compiled from the source file
+	 */
+	@NotNull
+	synchronized List<String> getClassFiles(@NotNull final File outputDir, @NotNull final String sourcePath) {
+		final PackageDir index = packageDirs.get(new File(outputDir, getPackagePath(sourcePath)).getAbsoluteFile());
+		if (index == null) {
+			return Collections.emptyList();
+		}
+		final List<String> ret = index.classFilesBySource.get(sourcePath);
+		return ret != null ? Collections.unmodifiableList(ret) : Collections.<String>emptyList();
+	}
+
+	/**
+	 * @param sourcePath package path and name of the source file, f. e. {@code org/foo/Bar.java}
+	 * @return the package path of the source file, f. e. {@code org/foo/}
+	 */
+	@NotNull
+	static String getPackagePath(@NotNull final String sourcePath) {
+		return sourcePath.substring(0, sourcePath.lastIndexOf('/') + 1);
+	}
+
+	/**
+	 * Follows the outer classes up to a class with a SourceFile attribute. If there is none (compiled without debug
+	 * information), the javac naming scheme (source file name = top level class name) is assumed.
+	 */
+	@NotNull
+	private static String getSourcePath(@NotNull final Node node, @NotNull final Map<String, Node> byName) {
+		Node current = node;
+		for (int i = 0; current.source == null && current.outerName != null && i < byName.size(); i++) {
+			final Node outer = byName.get(current.outerName);
+			if (outer == null) {
+				break;
+			}
+			current = outer;
+		}
+		final int packageEnd = current.internalName.lastIndexOf('/') + 1;
+		final String packagePath = current.internalName.substring(0, packageEnd);
+		if (current.source != null) {
+			return packagePath + current.source;
+		}
+		String topLevelName = current.internalName.substring(packageEnd);
+		final int innerStart = topLevelName.indexOf('$');
+		if (innerStart > 0) {
+			topLevelName = topLevelName.substring(0, innerStart);
+		}
+		return packagePath + topLevelName + ".java";
+	}
+
+	@Nullable
+	private static Node read(@NotNull final File file, @NotNull final String path, final long lastModified, final long length) {
+		try {
+			final ClassReader reader = new ClassReader(FileUtil.loadFileBytes(file));
+			final Node ret = new Node(path, lastModified, length, reader.getClassName());
+			reader.accept(new ClassVisitor(Opcodes.ASM5) {
+				@Override
+				public void visitSource(final String source, final String debug) {
+					ret.source = source;
+				}
+
+				@Override
+				public void visitOuterClass(final String owner, final String name, final String desc) {
+					ret.outerName = owner; // local or anonymous class
+				}
+
+				@Override
+				public void visitInnerClass(final String name, final String outerName, final String innerName, final int access) {
+					if (ret.internalName.equals(name) && outerName != null) {
+						ret.outerName = outerName; // member class
+					}
+				}
+			}, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+			return ret;
+		} catch (final IOException e) {
+			LOGGER.debug("Could not read class file " + file, e);
+		} catch (final RuntimeException e) { // corrupt or unsupported class file
+			LOGGER.debug("Could not read class file " + file, e);
+		}
+		return null;
+	}
+
+	private static final class PackageDir {
+
+		/**
+		 * Class file path (absolute) -> node
+		 */
+		@NotNull
+		private final Map<String, Node> nodesByPath;
+
+		/**
+		 * Source path (see {@link #getClassFiles(File, String)}) -> class file paths
+		 */
+		@NotNull
+		private final Map<String, List<String>> classFilesBySource;
+
+		private PackageDir(@NotNull final Map<String, Node> nodesByPath, @NotNull final Map<String, List<String>> classFilesBySource) {
+			this.nodesByPath = nodesByPath;
+			this.classFilesBySource = classFilesBySource;
+		}
+	}
+
+	private static final class Node {
+		@NotNull
+		private final String path;
+
+		private final long lastModified;
+
+		private final long length;
+
+		/**
+		 * f. e. {@code org/foo/Bar$1}
+		 */
+		@NotNull
+		private final String internalName;
+
+		@Nullable
+		private String source;
+
+		@Nullable
+		private String outerName;
+
+		private Node(@NotNull final String path, final long lastModified, final long length, @NotNull final String internalName) {
+			this.path = path;
+			this.lastModified = lastModified;
+			this.length = length;
+			this.internalName = internalName;
+		}
+	}
+}
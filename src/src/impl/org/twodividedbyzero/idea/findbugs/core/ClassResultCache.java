@@ -0,0 +1,279 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.core;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.config.UserPreferences;
+import org.dom4j.DocumentException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.twodividedbyzero.idea.findbugs.collectors.AbstractClassAdder;
+import org.twodividedbyzero.idea.findbugs.common.VersionManager;
+import org.twodividedbyzero.idea.findbugs.common.util.FindBugsUtil;
+import org.twodividedbyzero.idea.findbugs.common.util.New;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk cache (below the IDE system directory) of the bugs reported per class file.
+ * <p>
+ * An entry is keyed by the content hash of the class file and lives in a directory named by the
+ * fingerprint of the analysis configuration (FindBugs and plugin version, effort, filters, enabled detectors).
+ * Class files with a cache hit are removed from the {@link FindBugsProject} before the analysis starts
+ * (they stay resolvable through the aux classpath) and their cached bugs are replayed instead.
+ * <p>
+ * Note that bugs which depend on facts of other (changed) classes are not invalidated by this cache.
+ */
+final class ClassResultCache {
+
+	private static final Logger LOGGER = Logger.getInstance(ClassResultCache.class.getName());
+	private static final String ENTRY_SUFFIX = ".xml.gz";
+
+	@NotNull
+	private final File directory;
+
+	/**
+	 * Class name to content hash of all class files which are not cached and therefore analyzed.
+	 */
+	@NotNull
+	private final Map<String, String> pending;
+
+	@NotNull
+	private final List<BugInstance> cachedBugs;
+
+	private int hitCount;
+
+	ClassResultCache(@NotNull final String configurationFingerprint) {
+		// PathManager.getSystemPath() may return relative path
+		directory = new File(new File(new File(PathManager.getSystemPath(), "findbugs-idea"), "classResults"), configurationFingerprint).getAbsoluteFile();
+		pending = New.map();
+		cachedBugs = New.arrayList();
+	}
+
+	/**
+	 * Removes all class files with a cache hit from {@code findBugsProject}.
+	 * Use {@link #getCachedBugs()} to get the bugs of these classes.
+	 */
+	void prepare(@NotNull final FindBugsProject findBugsProject) {
+		for (int i = findBugsProject.getFileCount() - 1; i >= 0; i--) {
+			final String path = findBugsProject.getFile(i);
+			if (!path.endsWith(AbstractClassAdder.CLASS_FILE_SUFFIX)) {
+				continue;
+			}
+			final byte[] bytes;
+			try {
+				bytes = FileUtil.loadFileBytes(new File(path));
+			} catch (final IOException e) {
+				LOGGER.debug("Could not read class file " + path, e);
+				continue;
+			}
+			final String hash = hash(bytes);
+			final List<BugInstance> bugs = read(hash);
+			if (bugs != null) {
+				findBugsProject.removeFile(i);
+				cachedBugs.addAll(bugs);
+				hitCount++;
+			} else {
+				final String className = getClassName(path, bytes);
+				if (className != null) {
+					pending.put(className, hash);
+				} // else: analyzed, but not cached
+			}
+		}
+	}
+
+	@Nullable
+	private static String getClassName(@NotNull final String path, @NotNull final byte[] bytes) {
+		try {
+			return new ClassReader(bytes).getClassName().replace('/', '.');
+		} catch (final RuntimeException e) { // corrupt or unsupported class file
+			LOGGER.debug("Could not read class file " + path, e);
+			return null;
+		}
+	}
+
+	@NotNull
+	List<BugInstance> getCachedBugs() {
+		return cachedBugs;
+	}
+
+	int getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Stores the bugs of all analyzed (not cached) classes.
+	 * Must only be invoked when the analysis was completed (not canceled).
+	 */
+	void store(@NotNull final SortedBugCollection bugCollection) {
+		if (pending.isEmpty()) {
+			return;
+		}
+		final Map<String, List<BugInstance>> bugsByClass = New.map();
+		for (final BugInstance bug : bugCollection.getCollection()) {
+			final String className = bug.getPrimaryClass().getClassName();
+			if (pending.containsKey(className)) {
+				List<BugInstance> bugs = bugsByClass.get(className);
+				if (bugs == null) {
+					bugs = New.arrayList();
+					bugsByClass.put(className, bugs);
+				}
+				bugs.add(bug);
+			}
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			LOGGER.warn("Could not create class result cache directory: " + directory);
+			return;
+		}
+		for (final Map.Entry<String, String> entry : pending.entrySet()) {
+			final List<BugInstance> bugs = bugsByClass.get(entry.getKey());
+			write(entry.getValue(), bugs != null ? bugs : Collections.<BugInstance>emptyList());
+		}
+	}
+
+	@Nullable
+	private List<BugInstance> read(@NotNull final String hash) {
+		final File file = new File(directory, hash + ENTRY_SUFFIX);
+		if (!file.isFile()) {
+			return null;
+		}
+		final SortedBugCollection collection = new SortedBugCollection();
+		collection.setDoNotUseCloud(true);
+		try {
+			collection.readXML(new GZIPInputStream(new FileInputStream(file)));
+		} catch (final IOException e) {
+			LOGGER.warn("Could not read class result cache entry " + file, e);
+			FileUtil.delete(file);
+			return null;
+		} catch (final DocumentException e) {
+			LOGGER.warn("Could not read class result cache entry " + file, e);
+			FileUtil.delete(file);
+			return null;
+		}
+		return new ArrayList<BugInstance>(collection.getCollection());
+	}
+
+	private void write(@NotNull final String hash, @NotNull final List<BugInstance> bugs) {
+		final SortedBugCollection collection = new SortedBugCollection();
+		collection.setDoNotUseCloud(true);
+		for (final BugInstance bug : bugs) {
+			collection.add((BugInstance) bug.clone(), false);
+		}
+		final File file = new File(directory, hash + ENTRY_SUFFIX);
+		final File tmp = new File(directory, hash + ENTRY_SUFFIX + ".tmp");
+		try {
+			collection.writeXML(new GZIPOutputStream(new FileOutputStream(tmp)));
+			if (!FileUtil.delete(file) || !tmp.renameTo(file)) {
+				LOGGER.warn("Could not write class result cache entry " + file);
+				FileUtil.delete(tmp);
+			}
+		} catch (final IOException e) {
+			LOGGER.warn("Could not write class result cache entry " + file, e);
+			FileUtil.delete(tmp);
+		}
+	}
+
+	/**
+	 * @return a stable fingerprint of everything (except the class files itself) which affects the reported bugs
+	 */
+	@NotNull
+	static String createFingerprint(
+			@NotNull final AbstractSettings settings,
+			@NotNull final UserPreferences userPrefs,
+			@NotNull final DetectorFactoryCollection detectorFactoryCollection
+	) {
+		final StringBuilder ret = new StringBuilder();
+		ret.append(VersionManager.getFullVersion()).append('|');
+		ret.append(FindBugsUtil.getFindBugsFullVersion()).append('|');
+		ret.append(settings.analysisEffort).append('|');
+		ret.append(settings.minRank).append('|');
+		ret.append(settings.minPriority).append('|');
+		ret.append(new TreeSet<String>(settings.hiddenBugCategory)).append('|');
+
+		final Set<String> detectors = new TreeSet<String>();
+		for (final DetectorFactory factory : detectorFactoryCollection.getFactories()) {
+			if (userPrefs.isDetectorEnabled(factory)) {
+				detectors.add(factory.getFullName() + '@' + factory.getPlugin().getVersion());
+			}
+		}
+		ret.append(detectors).append('|');
+
+		appendFilterFiles(ret, "include", settings.includeFilterFiles);
+		appendFilterFiles(ret, "exclude", settings.excludeFilterFiles);
+		appendFilterFiles(ret, "baseline", settings.excludeBugsFiles);
+		return hash(ret.toString());
+	}
+
+	static void appendFilterFiles(@NotNull final StringBuilder builder, @NotNull final String kind, @NotNull final Map<String, Boolean> files) {
+		final Set<String> enabled = new TreeSet<String>();
+		for (final Map.Entry<String, Boolean> entry : files.entrySet()) {
+			if (entry.getValue()) {
+				enabled.add(entry.getKey() + '@' + new File(entry.getKey()).lastModified());
+			}
+		}
+		builder.append(kind).append(enabled).append('|');
+	}
+
+	@NotNull
+	private static String hash(@NotNull final String value) {
+		try {
+			return hash(value.getBytes("UTF-8"));
+		} catch (final UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@NotNull
+	private static String hash(@NotNull final byte[] bytes) {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		final byte[] hash = digest.digest(bytes);
+		final StringBuilder ret = new StringBuilder(hash.length * 2);
+		for (final byte b : hash) {
+			ret.append(Character.forDigit((b >> 4) & 0xF, 16));
+			ret.append(Character.forDigit(b & 0xF, 16));
+		}
+		return ret.toString();
+	}
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.core;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.PathUtil;
+import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.Plugin;
+import edu.umd.cs.findbugs.config.ProjectFilterSettings;
+import edu.umd.cs.findbugs.config.UserPreferences;
+import edu.umd.cs.findbugs.filter.Filter;
+import org.dom4j.DocumentException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.twodividedbyzero.idea.findbugs.common.util.New;
+import org.twodividedbyzero.idea.findbugs.worker.AnalysisWorker;
+import org.twodividedbyzero.idea.findbugs.worker.FilterCache;
+import org.twodividedbyzero.idea.findbugs.worker.WorkerClient;
+import org.twodividedbyzero.idea.findbugs.worker.WorkerRequest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the engine setup of a project warm between analysis runs: the {@link UserPreferences}
+ * (detector and filter settings) and the filters and baselines per settings, and the
+ * aux classpath per module, the {@link ClassFileIndex} and the {@link WorkerClient analysis worker} (if analysis runs out of process).
+ * <p>
+ * A configuration is rebuilt when its settings or one of its filter files change or the plugins
+ * were reloaded. The aux classpath is rebuilt when the project roots change. The worker is restarted
+ * when it died or its heap size was changed. The parsed filter and baseline files are shared by all
+ * configurations and are only parsed again when they change (see {@link FilterCache}).
+ * <p>
+ * Thread safe.
+ */
+public final class EngineSession implements Disposable {
+
+	private static final Logger LOGGER = Logger.getInstance(EngineSession.class);
+
+	@NotNull
+	private final Project project;
+
+	@NotNull
+	private final Map<AbstractSettings, Configuration> configurations;
+
+	@NotNull
+	private final Map<Module, List<String>> auxClasspath;
+
+	@NotNull
+	private final Map<Module, List<String>> auxClasspathWithTests;
+
+	@NotNull
+	private final ClassFileIndex classFileIndex;
+
+	private long rootsModificationCount;
+
+	@Nullable
+	private WorkerClient workerClient;
+
+	public EngineSession(@NotNull final Project project) {
+		this.project = project;
+		configurations = New.weakHashMap();
+		auxClasspath = New.map();
+		auxClasspathWithTests = New.map();
+		classFileIndex = new ClassFileIndex();
+		rootsModificationCount = -1;
+	}
+
+	@NotNull
+	static EngineSession getInstance(@NotNull final Project project) {
+		return ServiceManager.getService(project, EngineSession.class);
+	}
+
+	/**
+	 * Note that the plugins of {@code settings} must be loaded already (see {@link org.twodividedbyzero.idea.findbugs.plugins.PluginLoader}).
+	 */
+	@NotNull
+	synchronized Configuration getConfiguration(@NotNull final AbstractSettings settings) {
+		final DetectorFactoryCollection detectorFactoryCollection = DetectorFactoryCollection.instance();
+		final String key = createKey(settings);
+		Configuration ret = configurations.get(settings);
+		if (ret != null && ret.key.equals(key) && ret.detectorFactoryCollection == detectorFactoryCollection) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Reuse warm engine configuration (saved " + TimeUnit.NANOSECONDS.toMillis(ret.setupNanos) + " ms setup)");
+			}
+			return ret;
+		}
+		final long start = System.nanoTime();
+		ret = new Configuration(key, detectorFactoryCollection, settings);
+		ret.setupNanos = System.nanoTime() - start;
+		configurations.put(settings, ret);
+		return ret;
+	}
+
+	/**
+	 * Must be invoked in a read action.
+	 */
+	@NotNull
+	synchronized List<String> getAuxClasspath(@NotNull final Module module, final boolean includeTests) {
+		final long modificationCount = ProjectRootManager.getInstance(project).getModificationCount();
+		if (modificationCount != rootsModificationCount) {
+			auxClasspath.clear();
+			auxClasspathWithTests.clear();
+			rootsModificationCount = modificationCount;
+		}
+		final Map<Module, List<String>> cache = includeTests ? auxClasspathWithTests : auxClasspath;
+		List<String> ret = cache.get(module);
+		if (ret == null) {
+			final Collection<VirtualFile> compilerOutputPaths = FindBugsProjects.getCompilerOutputPaths(module, includeTests);
+			ret = new ArrayList<String>(compilerOutputPaths.size());
+			for (final VirtualFile compilerOutputPath : compilerOutputPaths) {
+				ret.add(compilerOutputPath.getCanonicalPath());
+			}
+			ret = Collections.unmodifiableList(ret);
+			cache.put(module, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * The index is kept between runs so only new and changed class files are read again.
+	 */
+	@NotNull
+	ClassFileIndex getClassFileIndex() {
+		return classFileIndex;
+	}
+
+	/**
+	 * @param maxHeapMb maximum heap size of the worker JVM in megabytes
+	 * @return a running worker ; started if there is none yet
+	 */
+	@NotNull
+	synchronized WorkerClient getWorkerClient(final int maxHeapMb) throws IOException {
+		if (workerClient != null && (!workerClient.isAlive() || workerClient.getMaxHeapMb() != maxHeapMb)) {
+			workerClient.dispose();
+			workerClient = null;
+		}
+		if (workerClient == null) {
+			final File javaExecutable = new File(System.getProperty("java.home"), "bin" + File.separator + "java");
+			workerClient = WorkerClient.start(javaExecutable, getWorkerClasspath(), maxHeapMb);
+			LOGGER.info("Started analysis worker with " + maxHeapMb + " MB heap");
+		}
+		return workerClient;
+	}
+
+	@Override
+	public synchronized void dispose() {
+		if (workerClient != null) {
+			workerClient.dispose();
+			workerClient = null;
+		}
+	}
+
+	/**
+	 * The plugin classes and the FindBugs libraries.
+	 */
+	@NotNull
+	private static Collection<File> getWorkerClasspath() {
+		final Class<?>[] anchors = new Class<?>[]{
+				AnalysisWorker.class,
+				FindBugs2.class,
+				org.apache.bcel.Repository.class,
+				org.objectweb.asm.ClassReader.class,
+				org.dom4j.Document.class,
+				org.jaxen.XPath.class,
+				org.apache.commons.lang.StringUtils.class,
+				javax.annotation.Nonnull.class,
+				edu.umd.cs.findbugs.formatStringChecker.Formatter.class
+		};
+		final Set<File> ret = new LinkedHashSet<File>();
+		for (final Class<?> anchor : anchors) {
+			final String path = PathUtil.getJarPathForClass(anchor);
+			if (path != null) {
+				ret.add(new File(path));
+			}
+		}
+		return ret;
+	}
+
+	@NotNull
+	private static String createKey(@NotNull final AbstractSettings settings) {
+		final StringBuilder ret = new StringBuilder();
+		ret.append(settings.analysisEffort).append('|');
+		ret.append(settings.minRank).append('|');
+		ret.append(settings.minPriority).append('|');
+		ret.append(new TreeSet<String>(settings.hiddenBugCategory)).append('|');
+		ret.append(new TreeMap<String, Boolean>(settings.detectors)).append('|');
+		for (final PluginSettings pluginSettings : new TreeSet<PluginSettings>(settings.plugins)) {
+			ret.append(pluginSettings.id).append('@').append(pluginSettings.url).append('=').append(pluginSettings.enabled);
+			ret.append(new TreeMap<String, Boolean>(pluginSettings.detectors)).append('|');
+		}
+		ClassResultCache.appendFilterFiles(ret, "include", settings.includeFilterFiles);
+		ClassResultCache.appendFilterFiles(ret, "exclude", settings.excludeFilterFiles);
+		ClassResultCache.appendFilterFiles(ret, "baseline", settings.excludeBugsFiles);
+		return ret.toString();
+	}
+
+	/**
+	 * Immutable after creation ; shared by concurrent analysis of modules with the same settings.
+	 */
+	static final class Configuration {
+
+		@NotNull
+		private final String key;
+
+		@NotNull
+		private final DetectorFactoryCollection detectorFactoryCollection;
+
+		@NotNull
+		private final UserPreferences userPrefs;
+
+		/**
+		 * Like {@link #userPrefs} without filter files, see {@link #getEngineUserPreferences()}.
+		 */
+		@NotNull
+		private final UserPreferences engineUserPrefs;
+
+		@NotNull
+		private final List<Filter> excludeFilters;
+
+		@NotNull
+		private final List<Filter> includeFilters;
+
+		/**
+		 * Instance hashes per baseline file.
+		 */
+		@NotNull
+		private final List<Set<String>> baselines;
+
+		private long setupNanos;
+
+		private Configuration(
+				@NotNull final String key,
+				@NotNull final DetectorFactoryCollection detectorFactoryCollection,
+				@NotNull final AbstractSettings settings
+		) {
+			this.key = key;
+			this.detectorFactoryCollection = detectorFactoryCollection;
+
+			userPrefs = UserPreferences.createDefaultUserPreferences();
+			userPrefs.setEffort(settings.analysisEffort);
+			final ProjectFilterSettings projectFilterSettings = userPrefs.getFilterSettings();
+			projectFilterSettings.setMinRank(settings.minRank);
+			projectFilterSettings.setMinPriority(settings.minPriority);
+
+			for (final String category : detectorFactoryCollection.getBugCategories()) {
+				projectFilterSettings.removeCategory(category);
+				projectFilterSettings.addCategory(category);
+			}
+			for (final String category : settings.hiddenBugCategory) {
+				projectFilterSettings.removeCategory(category);
+			}
+
+			userPrefs.setIncludeFilterFiles(new HashMap<String, Boolean>(settings.includeFilterFiles));
+			userPrefs.setExcludeBugsFiles(new HashMap<String, Boolean>(settings.excludeBugsFiles));
+			userPrefs.setExcludeFilterFiles(new HashMap<String, Boolean>(settings.excludeFilterFiles));
+
+			configureDetectors(settings.detectors, detectorFactoryCollection, userPrefs);
+			for (final PluginSettings pluginSettings : settings.plugins) {
+				configureDetectors(pluginSettings.detectors, detectorFactoryCollection, userPrefs);
+			}
+
+			engineUserPrefs = userPrefs.clone();
+			engineUserPrefs.setIncludeFilterFiles(new HashMap<String, Boolean>());
+			engineUserPrefs.setExcludeFilterFiles(new HashMap<String, Boolean>());
+			engineUserPrefs.setExcludeBugsFiles(new HashMap<String, Boolean>());
+
+			excludeFilters = parseFilters(userPrefs.getExcludeFilterFiles(), "ExcludeFilter");
+			includeFilters = parseFilters(userPrefs.getIncludeFilterFiles(), "IncludeFilter");
+			baselines = New.arrayList();
+			for (final Map.Entry<String, Boolean> excludeBugFile : userPrefs.getExcludeBugsFiles().entrySet()) {
+				if (excludeBugFile.getValue()) {
+					try {
+						baselines.add(FilterCache.getBaselineHashes(excludeBugFile.getKey()));
+					} catch (final IOException e) {
+						LOGGER.error("ExcludeBaseLineBug files configuration failed.", e);
+					} catch (final DocumentException e) {
+						LOGGER.error("ExcludeBaseLineBug files configuration failed.", e);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Describes the analysis of {@code findBugsProject} with this configuration for the analysis worker.
+		 */
+		@NotNull
+		WorkerRequest createWorkerRequest(@NotNull final FindBugsProject findBugsProject) {
+			final WorkerRequest ret = new WorkerRequest();
+			ret.projectName = findBugsProject.getProjectName();
+			ret.files.addAll(findBugsProject.getFileList());
+			ret.auxClasspath.addAll(findBugsProject.getAuxClasspathEntryList());
+			ret.sourceDirs.addAll(findBugsProject.getSourceDirList());
+			for (final Map.Entry<URI, Plugin> plugin : Plugin.getAllPluginsMap().entrySet()) {
+				if (!plugin.getValue().isCorePlugin()) {
+					ret.plugins.add(plugin.getKey());
+				}
+				ret.pluginStatus.put(plugin.getValue().getPluginId(), findBugsProject.getPluginStatus(plugin.getValue()));
+			}
+			ret.effort = userPrefs.getEffort();
+			final ProjectFilterSettings projectFilterSettings = userPrefs.getFilterSettings();
+			ret.minRank = projectFilterSettings.getMinRank();
+			ret.minPriority = projectFilterSettings.getMinPriority();
+			for (final String category : detectorFactoryCollection.getBugCategories()) {
+				if (!projectFilterSettings.containsCategory(category)) {
+					ret.hiddenBugCategories.add(category);
+				}
+			}
+			for (final DetectorFactory detectorFactory : detectorFactoryCollection.getFactories()) {
+				ret.detectors.put(detectorFactory.getShortName(), userPrefs.isDetectorEnabled(detectorFactory));
+			}
+			addEnabled(userPrefs.getIncludeFilterFiles(), ret.includeFilterFiles);
+			addEnabled(userPrefs.getExcludeFilterFiles(), ret.excludeFilterFiles);
+			addEnabled(userPrefs.getExcludeBugsFiles(), ret.excludeBugsFiles);
+			return ret;
+		}
+
+		/**
+		 * Do not modify.
+		 */
+		@NotNull
+		UserPreferences getUserPreferences() {
+			return userPrefs;
+		}
+
+		/**
+		 * The preferences for {@link edu.umd.cs.findbugs.FindBugs2#setUserPreferences(UserPreferences)} : without the
+		 * filter and baseline files, otherwise the engine parses them again and filters twice. The filters are applied
+		 * by {@link #createFilteredReporter(BugReporter)} only. Do not modify.
+		 */
+		@NotNull
+		UserPreferences getEngineUserPreferences() {
+			return engineUserPrefs;
+		}
+
+		/**
+		 * Wraps {@code reporter} with the configured filters (see {@link FilterCache#createFilteredReporter}).
+		 */
+		@NotNull
+		BugReporter createFilteredReporter(@NotNull final BugReporter reporter) {
+			return FilterCache.createFilteredReporter(reporter, excludeFilters, includeFilters, baselines);
+		}
+
+		@NotNull
+		private static List<Filter> parseFilters(@NotNull final Map<String, Boolean> filterFiles, @NotNull final String kind) {
+			final List<Filter> ret = New.arrayList();
+			for (final Map.Entry<String, Boolean> filterFile : filterFiles.entrySet()) {
+				if (filterFile.getValue()) {
+					try {
+						ret.add(FilterCache.getFilter(filterFile.getKey()));
+					} catch (final IOException e) {
+						LOGGER.error(kind + " configuration failed.", e);
+					}
+				}
+			}
+			return ret;
+		}
+
+		private static void addEnabled(@NotNull final Map<String, Boolean> files, @NotNull final List<String> enabledFiles) {
+			for (final Map.Entry<String, Boolean> file : files.entrySet()) {
+				if (file.getValue()) {
+					enabledFiles.add(file.getKey());
+				}
+			}
+		}
+
+		private static void configureDetectors(
+				@NotNull final Map<String, Boolean> detectors,
+				@NotNull final DetectorFactoryCollection detectorFactoryCollection,
+				@NotNull final UserPreferences userPreferences
+		) {
+			for (final Map.Entry<String, Boolean> enabled : detectors.entrySet()) {
+				final DetectorFactory detectorFactory = detectorFactoryCollection.getFactory(enabled.getKey());
+				if (detectorFactory != null) {
+					userPreferences.enableDetector(detectorFactory, enabled.getValue());
+				}
+			}
+		}
+	}
+}
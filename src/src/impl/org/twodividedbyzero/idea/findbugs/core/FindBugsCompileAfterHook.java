@@ -25,6 +25,7 @@ import com.intellij.openapi.compiler.CompileContext;
 import com.intellij.openapi.compiler.CompileScope;
 import com.intellij.openapi.compiler.CompilerManager;
 import com.intellij.openapi.components.ProjectComponent;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtilCore;
@@ -33,30 +34,33 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
-import com.intellij.util.Alarm;
 import com.intellij.util.Consumer;
-import com.intellij.util.io.storage.HeavyProcessLatch;
+import com.intellij.util.messages.MessageBusConnection;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.jetbrains.annotations.NotNull;
-import org.twodividedbyzero.idea.findbugs.common.EventDispatchThreadHelper;
 import org.twodividedbyzero.idea.findbugs.common.FindBugsPluginConstants;
 import org.twodividedbyzero.idea.findbugs.common.util.IdeaUtilImpl;
 import org.twodividedbyzero.idea.findbugs.common.util.New;
 
-import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
-import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 public class FindBugsCompileAfterHook implements CompilationStatusListener, ProjectComponent {
 
+	private static final Logger LOGGER = Logger.getInstance(FindBugsCompileAfterHook.class.getName());
+
 	private static final int DEFAULT_DELAY_MS = 30000;
+
+	/**
+	 * Maximum time {@link BuildManagerListener#buildStarted} waits for the {@link ChangeCollector}.
+	 */
+	private static final long COLLECT_TIMEOUT_MS = 2000;
 	private static final int DELAY_MS = StringUtil.parseInt(System.getProperty("idea.findbugs.autoanalyze.delaymillis", String.valueOf(DEFAULT_DELAY_MS)), DEFAULT_DELAY_MS);
 	private static final ConcurrentMap<UUID, Set<VirtualFile>> CHANGED_BY_SESSION_ID = New.concurrentMap();
-	private static final WeakHashMap<Project, DelayedExecutor> DELAYED_EXECUTOR_BY_PROJECT = New.weakHashMap();
-	private static ChangeCollector CHANGE_COLLECTOR; // EDT thread confinement
+	private static MessageBusConnection CHANGE_COLLECTOR_CONNECTION; // EDT thread confinement
+	private static volatile ChangeCollector CHANGE_COLLECTOR; // written by EDT
 
 	static {
 		/**
@@ -74,6 +78,7 @@ public class FindBugsCompileAfterHook implements CompilationStatusListener, Proj
 			@Override
 			public void buildStarted(final Project project, final UUID sessionId, final boolean isAutomake) {
 				if (isAutomake && isAfterAutoMakeEnabled(project)) {
+					awaitCollected();
 					final Set<VirtualFile> changed = Changes.INSTANCE.getAndRemoveChanged(project);
 					if (changed != null) {
 						CHANGED_BY_SESSION_ID.put(sessionId, changed);
@@ -86,18 +91,7 @@ public class FindBugsCompileAfterHook implements CompilationStatusListener, Proj
 				if (isAutomake) {
 					final Set<VirtualFile> changed = CHANGED_BY_SESSION_ID.remove(sessionId);
 					if (changed != null) {
-						if (DELAY_MS <= 0) {
-							initWorkerForAutoMake(project, changed);
-						} else {
-							synchronized (DELAYED_EXECUTOR_BY_PROJECT) {
-								DelayedExecutor task = DELAYED_EXECUTOR_BY_PROJECT.get(project);
-								if (task == null) {
-									task = new DelayedExecutor(project);
-									DELAYED_EXECUTOR_BY_PROJECT.put(project, task);
-								}
-								task.schedule(changed);
-							}
-						}
+						AutoAnalysisScheduler.schedule(project, changed, DELAY_MS);
 					}
 				} // else do nothing ; see FindBugsCompileAfterHook#compilationFinished
 			}
@@ -144,6 +138,7 @@ public class FindBugsCompileAfterHook implements CompilationStatusListener, Proj
 	public void projectClosed() {
 		CompilerManager.getInstance(_project).removeCompilationStatusListener(this);
 		setAnalyzeAfterAutomake(_project, false);
+		AutoAnalysisScheduler.dispose(_project);
 	}
 
 	@Override
@@ -165,21 +160,41 @@ public class FindBugsCompileAfterHook implements CompilationStatusListener, Proj
 	static void setAnalyzeAfterAutomake(@NotNull final Project project, final boolean enabled) {
 		if (enabled) {
 			Changes.INSTANCE.addListener(project);
-			if (CHANGE_COLLECTOR == null) {
+			if (CHANGE_COLLECTOR_CONNECTION == null) {
 				CHANGE_COLLECTOR = new ChangeCollector();
-				VirtualFileManager.getInstance().addVirtualFileListener(CHANGE_COLLECTOR);
+				CHANGE_COLLECTOR_CONNECTION = ApplicationManager.getApplication().getMessageBus().connect();
+				CHANGE_COLLECTOR_CONNECTION.subscribe(VirtualFileManager.VFS_CHANGES, CHANGE_COLLECTOR);
 			}
 		} else {
 			final boolean empty = Changes.INSTANCE.removeListener(project);
 			if (empty) {
-				if (CHANGE_COLLECTOR != null) {
-					VirtualFileManager.getInstance().removeVirtualFileListener(CHANGE_COLLECTOR);
+				if (CHANGE_COLLECTOR_CONNECTION != null) {
+					CHANGE_COLLECTOR_CONNECTION.disconnect();
+					CHANGE_COLLECTOR_CONNECTION = null;
 					CHANGE_COLLECTOR = null;
 				}
 			}
 		}
 	}
 
+	/**
+	 * The {@link ChangeCollector} collects the files in background, so the changes of the last VFS events
+	 * (f. e. the save before the auto-make) may not be available yet.
+	 */
+	private static void awaitCollected() {
+		final ChangeCollector changeCollector = CHANGE_COLLECTOR;
+		if (changeCollector == null) {
+			return;
+		}
+		try {
+			if (!changeCollector.awaitCollected(COLLECT_TIMEOUT_MS)) {
+				LOGGER.warn("Changed files not collected within " + COLLECT_TIMEOUT_MS + " ms ; they are analyzed after the next auto-make");
+			}
+		} catch (final InterruptedException ignored) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	private static void initWorker(final CompileContext compileContext) {
 		final com.intellij.openapi.project.Project project = compileContext.getProject();
 		if (null == project) { // project reload, eg: open IDEA project with unknown JRE and fix it
@@ -239,83 +254,4 @@ public class FindBugsCompileAfterHook implements CompilationStatusListener, Proj
 		final WorkspaceSettings settings = WorkspaceSettings.getInstance(project);
 		return settings.analyzeAfterAutoMake;
 	}
-
-	private static void initWorkerForAutoMake(@NotNull final Project project, @NotNull final Collection<VirtualFile> changed) {
-		ApplicationManager.getApplication().runReadAction(new Runnable() {
-			@Override
-			public void run() {
-				initWorkerForAutoMakeImpl(project, changed);
-			}
-		});
-	}
-
-	private static void initWorkerForAutoMakeImpl(@NotNull final Project project, @NotNull final Collection<VirtualFile> changed) {
-		EventDispatchThreadHelper.invokeLater(new Runnable() {
-			@Override
-			public void run() {
-				new FindBugsStarter(
-						project,
-						"Running FindBugs analysis for affected files...",
-						ProgressStartType.RunInBackground
-				) {
-					@Override
-					protected boolean isCompileBeforeAnalyze() {
-						return false;
-					}
-
-					@Override
-					protected void createCompileScope(@NotNull final CompilerManager compilerManager, @NotNull final Consumer<CompileScope> consumer) {
-						throw new UnsupportedOperationException();
-					}
-
-					@Override
-					protected boolean configure(@NotNull final ProgressIndicator indicator, @NotNull final FindBugsProjects projects, final boolean justCompiled) {
-						projects.addFiles(changed, false, hasTests(changed));
-						return true;
-					}
-				}.start();
-			}
-		});
-	}
-
-	private static class DelayedExecutor {
-		private final Project _project;
-		private final Alarm _alarm;
-		private Set<VirtualFile> _changed;
-
-		DelayedExecutor(@NotNull final Project project) {
-			_project = project;
-			_alarm = new Alarm(Alarm.ThreadToUse.SHARED_THREAD);
-		}
-
-		void schedule(@NotNull final Set<VirtualFile> changed) {
-			_alarm.cancelAllRequests();
-			synchronized (this) {
-				if (_changed == null) {
-					_changed = changed;
-				} else {
-					_changed.addAll(changed);
-				}
-			}
-			addRequest();
-		}
-
-		private void addRequest() {
-			_alarm.addRequest(new Runnable() {
-				@Override
-				public void run() {
-					if (HeavyProcessLatch.INSTANCE.isRunning()) {
-						addRequest();
-					} else {
-						final Set<VirtualFile> changed;
-						synchronized (DelayedExecutor.this) {
-							changed = _changed;
-							_changed = null;
-						}
-						initWorkerForAutoMake(_project, changed);
-					}
-				}
-			}, DELAY_MS);
-		}
-	}
 }
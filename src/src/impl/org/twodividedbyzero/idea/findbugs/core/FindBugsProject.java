@@ -21,30 +21,30 @@ package org.twodividedbyzero.idea.findbugs.core;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiClass;
 import edu.umd.cs.findbugs.Plugin;
 import org.jetbrains.annotations.NotNull;
-import org.twodividedbyzero.idea.findbugs.collectors.StatelessClassAdder;
 import org.twodividedbyzero.idea.findbugs.common.util.New;
 import org.twodividedbyzero.idea.findbugs.gui.PluginGuiCallback;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class FindBugsProject extends edu.umd.cs.findbugs.Project {
 
-	@NotNull
-	private final Project project;
-
 	@NotNull
 	private final Module module;
 
 	private List<String> _outputFiles;
 
-	private StatelessClassAdder classAdder;
+	/**
+	 * The entries of {@link #getFileList()} for the duplicate check of {@link #addFiles(Collection)}.
+	 */
+	private Set<String> _files;
 
-	private FindBugsProject(@NotNull final Project project, @NotNull final Module module) {
-		this.project = project;
+	private FindBugsProject(@NotNull final Module module) {
 		this.module = module;
 	}
 
@@ -53,28 +53,45 @@ public class FindBugsProject extends edu.umd.cs.findbugs.Project {
 		return module;
 	}
 
-	@NotNull
-	private StatelessClassAdder getClassAdder() {
-		if (classAdder == null) {
-			classAdder = new StatelessClassAdder(this, project);
-		}
-		return classAdder;
-	}
-
-	void addOutputFile(@NotNull final VirtualFile file) {
+	/**
+	 * @param classFiles the class files (absolute paths) compiled from {@code file}, see {@link ClassFileIndex}
+	 */
+	void addOutputFile(@NotNull final VirtualFile file, @NotNull final Collection<String> classFiles) {
 		if (_outputFiles == null) {
 			_outputFiles = New.arrayList();
 		}
 		_outputFiles.add(file.getPath());
-		getClassAdder().addContainingClasses(file);
+		addFiles(classFiles);
 	}
 
-	public void addOutputFile(@NotNull final VirtualFile file, @NotNull final PsiClass psiClass) {
-		if (_outputFiles == null) {
-			_outputFiles = New.arrayList();
+	/**
+	 * Like {@link #addFile(String)} for many absolute paths at once ; {@link #addFile(String)} searches the whole
+	 * file list for a duplicate per file which is quadratic for large output directories.
+	 * The known entries are kept between the invocations and only collected again if the file list was
+	 * changed otherwise (e.g. by {@link #removeFile(int)}).
+	 */
+	public void addFiles(@NotNull final Collection<String> absolutePaths) {
+		final List<String> fileList = getFileList();
+		if (_files == null || _files.size() != fileList.size()) {
+			_files = new HashSet<String>(fileList);
 		}
-		_outputFiles.add(file.getPath());
-		getClassAdder().addContainingClasses(file, psiClass);
+		for (final String path : absolutePaths) {
+			if (_files.add(path)) {
+				fileList.add(path);
+			}
+		}
+	}
+
+	@Override
+	public boolean addFile(final String fileName) {
+		_files = null;
+		return super.addFile(fileName);
+	}
+
+	@Override
+	public void removeFile(final int num) {
+		_files = null;
+		super.removeFile(num);
 	}
 
 	@NotNull
@@ -98,7 +115,7 @@ public class FindBugsProject extends edu.umd.cs.findbugs.Project {
 			settings = ProjectSettings.getInstance(project);
 		}
 
-		final FindBugsProject ret = new FindBugsProject(project, module);
+		final FindBugsProject ret = new FindBugsProject(module);
 		ret.setProjectName(projectName);
 		for (final Plugin plugin : Plugin.getAllPlugins()) {
 			if (!plugin.isCorePlugin()) {
@@ -18,20 +18,31 @@
  */
 package org.twodividedbyzero.idea.findbugs.core;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileTypes.StdFileTypes;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.CompilerModuleExtension;
 import com.intellij.openapi.roots.CompilerProjectExtension;
 import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.NotNullComputable;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassOwner;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.PsiManager;
+import com.intellij.psi.util.ClassUtil;
+import com.intellij.psi.util.PsiTreeUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.twodividedbyzero.idea.findbugs.collectors.AbstractClassAdder;
 import org.twodividedbyzero.idea.findbugs.common.EventDispatchThreadHelper;
 import org.twodividedbyzero.idea.findbugs.common.util.IdeaUtilImpl;
 import org.twodividedbyzero.idea.findbugs.common.util.New;
@@ -42,23 +53,50 @@ import org.twodividedbyzero.idea.findbugs.resources.ResourcesLoader;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class FindBugsProjects {
 
 	private static final Logger LOGGER = Logger.getInstance(FindBugsProjects.class);
 
+	private static final int RESOLVE_CHUNK_SIZE = 50;
+
+	private static final int MAX_RESOLVE_THREADS = 4;
+
 	@NotNull
 	private final Project project;
 
 	@NotNull
 	private final Map<Module, FindBugsProject> projects;
 
+	/**
+	 * Package directories (of the output directories) of which the {@link ClassFileIndex} was updated in this run ;
+	 * all lookups of a run (including the "is compiled" checks) use this snapshot.
+	 */
+	@NotNull
+	private final Set<File> indexedPackageDirs;
+
+	/**
+	 * Files whose class files are not resolved yet, see {@link #resolveClassFiles(ProgressIndicator)}.
+	 */
+	@NotNull
+	private final List<PendingFile> pendingFiles;
+
 	FindBugsProjects(@NotNull final Project project) {
 		this.project = project;
-		projects = New.map();
+		projects = new LinkedHashMap<Module, FindBugsProject>();
+		indexedPackageDirs = New.set();
+		pendingFiles = New.arrayList();
 	}
 
 	public boolean addFiles(@NotNull final Iterable<VirtualFile> files, final boolean checkCompiled, final boolean includeTests) {
@@ -89,36 +127,267 @@ public final class FindBugsProjects {
 			throw new IllegalStateException("No module found for " + file);
 		}
 
+		boolean requiresClassFiles = false;
 		if (checkCompiled) {
-			final CompilerModuleExtension extension = CompilerModuleExtension.getInstance(module);
-			if (extension == null) {
+			if (CompilerModuleExtension.getInstance(module) == null) {
 				throw new IllegalStateException("No compiler extension for module " + module.getName());
 			}
-			final VirtualFile compilerOutputPath = extension.getCompilerOutputPath();
-			if (compilerOutputPath == null) {
+			if (getCompilerOutputPath(module, file) == null) {
 				showWarning("Source is not compiled.");
 				return false;
 			}
+			// checked against the class file index snapshot by resolveClassFiles
 			final PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
-			if (psiFile != null && psiFile instanceof PsiJavaFile) { // think of scala, groovy, aj etc
-				final PsiJavaFile javaFile = (PsiJavaFile) psiFile;
-				String fileName = javaFile.getName();
-				if (fileName.endsWith(".java")) {
-					fileName = fileName.substring(0, fileName.length() - ".java".length());
+			requiresClassFiles = psiFile instanceof PsiJavaFile && ((PsiJavaFile) psiFile).getClasses().length > 0; // think of scala, groovy, aj etc
+		}
+
+		pendingFiles.add(createPendingFile(get(module, includeTests), module, file, null, requiresClassFiles));
+		return true;
+	}
+
+	/**
+	 * Like {@link #addFiles(Iterable, boolean, boolean)} without "is compiled" check for many files, f. e. of a whole
+	 * project scope. The PSI of the files is not loaded ; the class files are resolved in parallel by
+	 * {@link #resolveClassFiles(ProgressIndicator)}. The files are added in the order of {@code filesByModule}.
+	 * <p>
+	 * Must be invoked in a read action.
+	 *
+	 * @throws ProcessCanceledException if {@code indicator} was canceled or the analysis is aborting
+	 */
+	public void addFiles(
+			@NotNull final ProgressIndicator indicator,
+			@NotNull final Map<Module, List<VirtualFile>> filesByModule,
+			final boolean includeTests
+	) {
+		final AtomicBoolean canceled = new AtomicBoolean();
+		int collected = 0;
+		for (final Map.Entry<Module, List<VirtualFile>> entry : filesByModule.entrySet()) {
+			final FindBugsProject findBugsProject = get(entry.getKey(), includeTests);
+			for (final VirtualFile file : entry.getValue()) {
+				if (collected++ % RESOLVE_CHUNK_SIZE == 0) {
+					checkCanceled(indicator, canceled);
+					indicator.setText2("Files collected: " + collected);
+				}
+				pendingFiles.add(createPendingFile(findBugsProject, entry.getKey(), file, null, false));
+			}
+		}
+	}
+
+	private void checkCanceled(@NotNull final ProgressIndicator indicator, @NotNull final AtomicBoolean canceled) {
+		if (indicator.isCanceled() || FindBugsState.get(project).isAborting()) {
+			canceled.set(true);
+			throw new ProcessCanceledException();
+		}
+	}
+
+	/**
+	 * Waits for {@code futures} and reports the progress meanwhile.
+	 *
+	 * @throws ProcessCanceledException if {@code indicator} was canceled or the analysis is aborting
+	 */
+	private void awaitAll(
+			@NotNull final ProgressIndicator indicator,
+			@NotNull final AtomicBoolean canceled,
+			@NotNull final List<Future<?>> futures,
+			@NotNull final String progressText,
+			@NotNull final AtomicInteger progress
+	) {
+		try {
+			for (final Future<?> future : futures) {
+				while (true) {
+					checkCanceled(indicator, canceled);
+					try {
+						future.get(100, TimeUnit.MILLISECONDS);
+						break;
+					} catch (final TimeoutException ignored) {
+						indicator.setText2(progressText + progress.get());
+					}
 				}
-				final File outputPath = new File(compilerOutputPath.getCanonicalPath(), javaFile.getPackageName().replace(".", File.separator) + File.separator + fileName + ".class");
-				if (!outputPath.exists()) {
-					showWarning("Source is not compiled (" + outputPath + ").");
-					return false;
+			}
+		} catch (final InterruptedException e) {
+			canceled.set(true);
+			Thread.currentThread().interrupt();
+			throw new ProcessCanceledException(e);
+		} catch (final ExecutionException e) {
+			canceled.set(true);
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Like {@link #addFile(VirtualFile, boolean, boolean)} but adds only the class files of {@code psiClass}
+	 * (including its inner, local and anonymous classes).
+	 */
+	public void addClass(@NotNull final VirtualFile file, @NotNull final PsiClass psiClass, final boolean includeTests) {
+		final Module module = ModuleUtilCore.findModuleForFile(file, project);
+		if (module == null) {
+			throw new IllegalStateException("No module found for " + file);
+		}
+
+		String jvmClassName = ClassUtil.getJVMClassName(psiClass);
+		PsiClass current = psiClass;
+		while (jvmClassName == null && current != null) { // local or anonymous class
+			current = PsiTreeUtil.getParentOfType(current, PsiClass.class);
+			jvmClassName = current != null ? ClassUtil.getJVMClassName(current) : null;
+		}
+		final String simpleClassName = jvmClassName != null ? jvmClassName.substring(jvmClassName.lastIndexOf('.') + 1) : null;
+		pendingFiles.add(createPendingFile(get(module, includeTests), module, file, simpleClassName, false));
+	}
+
+	/**
+	 * Resolves the class files of the files added by {@link #addFile(VirtualFile, boolean, boolean)},
+	 * {@link #addClass(VirtualFile, PsiClass, boolean)} and {@link #addFiles(ProgressIndicator, Map, boolean)}
+	 * and adds them to their projects in the order the files were added.
+	 * <p>
+	 * The package directory of each file in its output directory is scanned (see {@link ClassFileIndex#update(File, String)})
+	 * once per run, so class files compiled by this run are found ; all lookups of a run (including the "is compiled"
+	 * checks) use this snapshot. The package directories are scanned by several threads. Must not be invoked in a read
+	 * action, so the disk access does not block write actions.
+	 *
+	 * @return false if a source is not compiled (a warning was shown)
+	 * @throws ProcessCanceledException if {@code indicator} was canceled or the analysis is aborting
+	 */
+	boolean resolveClassFiles(@NotNull final ProgressIndicator indicator) {
+		final ClassFileIndex index = EngineSession.getInstance(project).getClassFileIndex();
+		final List<Pair<File, String>> packageDirs = New.arrayList();
+		for (final PendingFile pendingFile : pendingFiles) {
+			if (pendingFile.outputDir != null && pendingFile.sourcePath != null) {
+				final String packagePath = ClassFileIndex.getPackagePath(pendingFile.sourcePath);
+				if (indexedPackageDirs.add(new File(pendingFile.outputDir, packagePath))) {
+					packageDirs.add(Pair.create(pendingFile.outputDir, packagePath));
+				}
+			}
+		}
+
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger scanned = new AtomicInteger();
+		final AtomicBoolean canceled = new AtomicBoolean();
+		final Runnable scanNext = new Runnable() {
+			@Override
+			public void run() {
+				final int i = next.getAndIncrement();
+				if (i < packageDirs.size()) {
+					index.update(packageDirs.get(i).getFirst(), packageDirs.get(i).getSecond());
+					scanned.incrementAndGet();
 				}
 			}
+		};
+
+		final int threads = Math.min(MAX_RESOLVE_THREADS, Runtime.getRuntime().availableProcessors()) - 1;
+		final List<Future<?>> futures = New.arrayList();
+		try {
+			for (int i = 0; i < threads && i < packageDirs.size() - 1; i++) {
+				futures.add(ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+					@Override
+					public void run() {
+						while (!canceled.get() && next.get() < packageDirs.size()) {
+							scanNext.run();
+						}
+					}
+				}));
+			}
+			while (next.get() < packageDirs.size()) {
+				checkCanceled(indicator, canceled);
+				scanNext.run();
+				indicator.setText2("Package directories scanned: " + scanned.get());
+			}
+			awaitAll(indicator, canceled, futures, "Package directories scanned: ", scanned);
+		} catch (final RuntimeException e) {
+			canceled.set(true);
+			throw e;
 		}
 
-		final FindBugsProject findBugsProject = get(module, includeTests);
-		findBugsProject.addOutputFile(file);
+		for (final PendingFile pendingFile : pendingFiles) {
+			List<String> classFiles = Collections.emptyList();
+			if (pendingFile.outputDir != null && pendingFile.sourcePath != null) {
+				classFiles = index.getClassFiles(pendingFile.outputDir, pendingFile.sourcePath);
+				if (classFiles.isEmpty()) {
+					LOGGER.debug("No class files found for " + pendingFile.sourcePath + " in " + pendingFile.outputDir + ". Try to recompile your sources.");
+				}
+			}
+			if (pendingFile.requiresClassFiles && classFiles.isEmpty()) {
+				showWarning("Source is not compiled (" + pendingFile.file.getPresentableUrl() + ").");
+				return false;
+			}
+			if (pendingFile.simpleClassName != null) {
+				final List<String> filtered = New.arrayList();
+				for (final String classFile : classFiles) {
+					final String fileName = new File(classFile).getName();
+					if (fileName.equals(pendingFile.simpleClassName + AbstractClassAdder.CLASS_FILE_SUFFIX) || fileName.startsWith(pendingFile.simpleClassName + "$")) {
+						filtered.add(classFile);
+					}
+				}
+				classFiles = filtered;
+			}
+			pendingFile.findBugsProject.addOutputFile(pendingFile.file, classFiles);
+		}
+		pendingFiles.clear();
 		return true;
 	}
 
+	/**
+	 * Must be invoked in a read action.
+	 */
+	@NotNull
+	private PendingFile createPendingFile(
+			@NotNull final FindBugsProject findBugsProject,
+			@NotNull final Module module,
+			@NotNull final VirtualFile file,
+			@Nullable final String simpleClassName,
+			final boolean requiresClassFiles
+	) {
+		final VirtualFile compilerOutputPath = getCompilerOutputPath(module, file);
+		final File outputDir = compilerOutputPath != null ? new File(compilerOutputPath.getPath()) : null;
+		final String sourcePath = outputDir != null ? getSourcePath(file) : null;
+		return new PendingFile(findBugsProject, file, outputDir, sourcePath, simpleClassName, requiresClassFiles);
+	}
+
+	/**
+	 * The package of a Java file is the one of the source root relative directory (like javac expects it), so the PSI
+	 * of the file is not loaded. Other languages (f. e. Kotlin, Scala, Groovy) do not require that the package matches
+	 * the directory, so the declared package of their PSI file is used.
+	 * Must be invoked in a read action.
+	 *
+	 * @return package path and name of {@code file}, f. e. {@code org/foo/Bar.java} ({@code null} if it is not in a source root)
+	 */
+	@Nullable
+	private String getSourcePath(@NotNull final VirtualFile file) {
+		String packageName = null;
+		if (file.getFileType() != StdFileTypes.JAVA && file.getFileType() != StdFileTypes.CLASS) {
+			final PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+			if (psiFile instanceof PsiClassOwner) {
+				packageName = ((PsiClassOwner) psiFile).getPackageName();
+			}
+		}
+		if (packageName == null) {
+			final VirtualFile dir = file.getParent();
+			packageName = dir != null ? ProjectRootManager.getInstance(project).getFileIndex().getPackageNameByDirectory(dir) : null;
+		}
+		if (packageName == null) {
+			return null;
+		}
+		return packageName.isEmpty() ? file.getName() : packageName.replace('.', '/') + '/' + file.getName();
+	}
+
+	@Nullable
+	private VirtualFile getCompilerOutputPath(@NotNull final Module module, @NotNull final VirtualFile file) {
+		final CompilerModuleExtension extension = CompilerModuleExtension.getInstance(module);
+		if (extension == null) {
+			return null;
+		}
+		if (ProjectRootManager.getInstance(project).getFileIndex().isInTestSourceContent(file)) {
+			return extension.getCompilerOutputPathForTests();
+		}
+		return extension.getCompilerOutputPath();
+	}
+
 	@NotNull
 	public FindBugsProject get(@NotNull final Module module, final boolean includeTests) {
 		FindBugsProject ret = projects.get(module);
@@ -143,9 +412,9 @@ public final class FindBugsProjects {
 				}
 			}
 
-			final Collection<VirtualFile> compilerOutputPaths = getCompilerOutputPaths(module, includeTests);
-			for (final VirtualFile compilerOutputPath : compilerOutputPaths) {
-				if (!ret.addAuxClasspathEntry(compilerOutputPath.getCanonicalPath())) {
+			final List<String> compilerOutputPaths = EngineSession.getInstance(project).getAuxClasspath(module, includeTests);
+			for (final String compilerOutputPath : compilerOutputPaths) {
+				if (!ret.addAuxClasspathEntry(compilerOutputPath)) {
 					LOGGER.debug(String.format("Aux classpath '%s' of module '%s' already added", compilerOutputPath, module.getName()));
 				}
 			}
@@ -168,8 +437,11 @@ public final class FindBugsProjects {
 		return projects;
 	}
 
+	/**
+	 * Use {@link EngineSession#getAuxClasspath(Module, boolean)} which caches the result.
+	 */
 	@NotNull
-	private Collection<VirtualFile> getCompilerOutputPaths(@NotNull final Module module, final boolean includeTests) {
+	static Collection<VirtualFile> getCompilerOutputPaths(@NotNull final Module module, final boolean includeTests) {
 
 		final Set<Module> modules = New.set();
 		ModuleUtilCore.getDependencies(module, modules);
@@ -198,7 +470,7 @@ public final class FindBugsProjects {
 			if (!added) {
 				if (!projectFallbackExecuted) {
 					projectFallbackExecuted = true;
-					final CompilerProjectExtension compilerProjectExtension = CompilerProjectExtension.getInstance(project);
+					final CompilerProjectExtension compilerProjectExtension = CompilerProjectExtension.getInstance(module.getProject());
 					if (compilerProjectExtension != null) {
 						final VirtualFile path = compilerProjectExtension.getCompilerOutput();
 						if (path != null) {
@@ -224,4 +496,51 @@ public final class FindBugsProjects {
 			}
 		});
 	}
+
+	/**
+	 * A file added to a project whose class files are resolved by {@link #resolveClassFiles(ProgressIndicator)}.
+	 */
+	private static final class PendingFile {
+		@NotNull
+		private final FindBugsProject findBugsProject;
+
+		@NotNull
+		private final VirtualFile file;
+
+		/**
+		 * {@code null} if the module has no output directory
+		 */
+		@Nullable
+		private final File outputDir;
+
+		/**
+		 * See {@link ClassFileIndex#getClassFiles(File, String)} ; {@code null} if the file can not contain classes
+		 */
+		@Nullable
+		private final String sourcePath;
+
+		/**
+		 * Only the class files of this class (and its inner classes) are added ; {@code null} for all class files of the file
+		 */
+		@Nullable
+		private final String simpleClassName;
+
+		private final boolean requiresClassFiles;
+
+		private PendingFile(
+				@NotNull final FindBugsProject findBugsProject,
+				@NotNull final VirtualFile file,
+				@Nullable final File outputDir,
+				@Nullable final String sourcePath,
+				@Nullable final String simpleClassName,
+				final boolean requiresClassFiles
+		) {
+			this.findBugsProject = findBugsProject;
+			this.file = file;
+			this.outputDir = outputDir;
+			this.sourcePath = sourcePath;
+			this.simpleClassName = simpleClassName;
+			this.requiresClassFiles = requiresClassFiles;
+		}
+	}
 }
@@ -23,17 +23,20 @@ import edu.umd.cs.findbugs.ProjectStats;
 import edu.umd.cs.findbugs.SortedBugCollection;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.twodividedbyzero.idea.findbugs.common.util.New;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public final class FindBugsResult {
+	/**
+	 * Keeps the insertion order so the results are presented in the order the projects were configured.
+	 */
 	@NotNull
 	private Map<Project, SortedBugCollection> results;
 
 	public FindBugsResult() {
-		this.results = New.map();
+		this.results = new LinkedHashMap<Project, SortedBugCollection>();
 	}
 
 	public void put(@NotNull final Project project, @Nullable final SortedBugCollection bugCollection) {
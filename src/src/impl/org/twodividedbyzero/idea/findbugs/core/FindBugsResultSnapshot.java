@@ -0,0 +1,511 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.core;
+
+import com.intellij.openapi.diagnostic.Logger;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.SAXBugCollectionHandler;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.xml.XMLAttributeList;
+import edu.umd.cs.findbugs.xml.XMLOutput;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.twodividedbyzero.idea.findbugs.common.util.IoUtil;
+import org.twodividedbyzero.idea.findbugs.common.util.New;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact binary snapshot of a {@link FindBugsResult}.
+ * <p>
+ * The snapshot does not define its own model: each bug collection is recorded as the stream of elements which
+ * {@link SortedBugCollection#writeXML(XMLOutput)} produces, and loading replays this stream into a
+ * {@link SAXBugCollectionHandler}. So the snapshot contains exactly what the XML export contains, but it
+ * needs neither markup, escaping nor XML parsing, and every distinct string is stored only once per collection.
+ * <p>
+ * Layout (all numbers big endian, "varint" is an unsigned LEB128):
+ * <pre>
+ * header:    int MAGIC, int VERSION, int flags
+ * blocks:    one block per bug collection, deflated if flags contain FLAG_DEFLATE
+ * directory: int count, count * (UTF name, long offset, long length)
+ * trailer:   long directory offset
+ * </pre>
+ * A block is a sequence of tokens: {@link #TOKEN_OPEN} name attributeCount (name value)*,
+ * {@link #TOKEN_CLOSE}, {@link #TOKEN_TEXT} text, terminated by {@link #TOKEN_END}.
+ * Strings are varint references into the string table of the block; reference 0 is followed by
+ * a new string (varint UTF-8 length and bytes) which gets the next table index.
+ * <p>
+ * The directory allows to load the collection of a single module without reading the other blocks
+ * (see {@link #read(File, String, SortedBugCollection)}).
+ */
+public final class FindBugsResultSnapshot {
+
+	private static final Logger LOGGER = Logger.getInstance(FindBugsResultSnapshot.class);
+
+	public static final String EXTENSION = "fbr";
+
+	private static final int MAGIC = 0x46425253; // FBRS
+	private static final int VERSION = 1;
+	private static final int FLAG_DEFLATE = 1;
+
+	private static final int TOKEN_END = 0;
+	private static final int TOKEN_OPEN = 1;
+	private static final int TOKEN_CLOSE = 2;
+	private static final int TOKEN_TEXT = 3;
+
+	private FindBugsResultSnapshot() {
+	}
+
+	public static boolean isSnapshot(@NotNull final File file) {
+		return file.getName().toLowerCase().endsWith("." + EXTENSION);
+	}
+
+	/**
+	 * @param compress true to deflate each block
+	 */
+	public static void write(@NotNull final File file, @NotNull final FindBugsResult result, final boolean compress) throws IOException {
+		final long start = System.currentTimeMillis();
+		final CountingOutputStream counting = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			final DataOutputStream out = new DataOutputStream(counting);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(compress ? FLAG_DEFLATE : 0);
+
+			final List<String> names = New.arrayList();
+			final List<long[]> ranges = New.arrayList();
+			final Set<String> usedNames = New.set();
+			for (final Map.Entry<Project, SortedBugCollection> entry : result.getResults().entrySet()) {
+				if (entry.getValue() == null) {
+					continue;
+				}
+				out.flush();
+				final long offset = counting.count;
+				writeBlock(counting, entry.getValue(), compress);
+				out.flush();
+				names.add(uniqueName(getName(entry.getKey()), usedNames));
+				ranges.add(new long[]{offset, counting.count - offset});
+			}
+
+			out.flush();
+			final long directoryOffset = counting.count;
+			out.writeInt(names.size());
+			for (int i = 0; i < names.size(); i++) {
+				out.writeUTF(names.get(i));
+				out.writeLong(ranges.get(i)[0]);
+				out.writeLong(ranges.get(i)[1]);
+			}
+			out.writeLong(directoryOffset);
+			out.flush();
+		} finally {
+			IoUtil.safeClose(counting);
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Wrote snapshot " + file + " (" + file.length() + " bytes) in " + (System.currentTimeMillis() - start) + " ms");
+		}
+	}
+
+	/**
+	 * @return names of the bug collections in the snapshot, in the order they were written
+	 */
+	@NotNull
+	public static List<String> getNames(@NotNull final File file) throws IOException {
+		final List<String> ret = New.arrayList();
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			readHeader(raf);
+			raf.seek(raf.length() - 8);
+			raf.seek(raf.readLong());
+			final int count = raf.readInt();
+			for (int i = 0; i < count; i++) {
+				ret.add(raf.readUTF());
+				raf.readLong();
+				raf.readLong();
+			}
+		} finally {
+			IoUtil.safeClose(raf);
+		}
+		return ret;
+	}
+
+	/**
+	 * Loads the bug collection {@code name} into {@code target} (which should be empty).
+	 * The other bug collections of the snapshot are not read.
+	 */
+	public static void read(@NotNull final File file, @NotNull final String name, @NotNull final SortedBugCollection target) throws IOException {
+		final long start = System.currentTimeMillis();
+		final int flags;
+		long offset = -1;
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			flags = readHeader(raf);
+			raf.seek(raf.length() - 8);
+			raf.seek(raf.readLong());
+			final int count = raf.readInt();
+			for (int i = 0; i < count && offset == -1; i++) {
+				final String blockName = raf.readUTF();
+				final long blockOffset = raf.readLong();
+				raf.readLong();
+				if (name.equals(blockName)) {
+					offset = blockOffset;
+				}
+			}
+		} finally {
+			IoUtil.safeClose(raf);
+		}
+		if (offset == -1) {
+			throw new IOException("No bug collection '" + name + "' in " + file);
+		}
+
+		final FileInputStream fileIn = new FileInputStream(file);
+		try {
+			fileIn.getChannel().position(offset);
+			InputStream in = new BufferedInputStream(fileIn);
+			if ((flags & FLAG_DEFLATE) != 0) {
+				// buffered again, otherwise each single byte read of DataInputStream inflates
+				in = new BufferedInputStream(new InflaterInputStream(in, new Inflater(), 8192));
+			}
+			readBlock(new DataInputStream(in), file, target);
+		} finally {
+			IoUtil.safeClose(fileIn);
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Read '" + name + "' (" + target.getCollection().size() + " bugs) from snapshot " + file + " in " + (System.currentTimeMillis() - start) + " ms");
+		}
+	}
+
+	private static int readHeader(@NotNull final RandomAccessFile raf) throws IOException {
+		if (raf.length() < 20 || raf.readInt() != MAGIC) {
+			throw new IOException("Not a FindBugs result snapshot");
+		}
+		final int version = raf.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported FindBugs result snapshot version " + version);
+		}
+		return raf.readInt();
+	}
+
+	private static void writeBlock(@NotNull final OutputStream fileOut, @NotNull final SortedBugCollection bugCollection, final boolean compress) throws IOException {
+		final OutputStream nonClosing = new FilterOutputStream(fileOut) {
+			@Override
+			public void write(@NotNull final byte[] b, final int off, final int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		};
+		Deflater deflater = null;
+		OutputStream blockOut = nonClosing;
+		if (compress) {
+			deflater = new Deflater(Deflater.BEST_SPEED);
+			blockOut = new DeflaterOutputStream(nonClosing, deflater, 8192);
+		}
+		try {
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(blockOut));
+			bugCollection.writeXML(new BinaryXMLOutput(out)); // finish() writes TOKEN_END and flushes
+			if (blockOut instanceof DeflaterOutputStream) {
+				((DeflaterOutputStream) blockOut).finish();
+			}
+			nonClosing.flush();
+		} finally {
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+	}
+
+	private static void readBlock(@NotNull final DataInputStream in, @NotNull final File file, @NotNull final SortedBugCollection target) throws IOException {
+		final SAXBugCollectionHandler handler = new SAXBugCollectionHandler(target, file);
+		final List<String> strings = New.arrayList();
+		final List<String> elements = New.arrayList();
+		final AttributesImpl attributes = new AttributesImpl();
+		try {
+			handler.startDocument();
+			int token;
+			while ((token = in.readUnsignedByte()) != TOKEN_END) {
+				switch (token) {
+					case TOKEN_OPEN:
+						final String element = readString(in, strings);
+						attributes.clear();
+						final int attributeCount = readVarInt(in);
+						for (int i = 0; i < attributeCount; i++) {
+							final String attributeName = readString(in, strings);
+							attributes.addAttribute("", attributeName, attributeName, "CDATA", readString(in, strings));
+						}
+						elements.add(element);
+						handler.startElement("", element, element, attributes);
+						break;
+					case TOKEN_CLOSE:
+						if (elements.isEmpty()) {
+							throw new IOException("Corrupt snapshot " + file + ": unbalanced element");
+						}
+						final String closed = elements.remove(elements.size() - 1);
+						handler.endElement("", closed, closed);
+						break;
+					case TOKEN_TEXT:
+						final char[] text = readString(in, strings).toCharArray();
+						handler.characters(text, 0, text.length);
+						break;
+					default:
+						throw new IOException("Corrupt snapshot " + file + ": unknown token " + token);
+				}
+			}
+			handler.endDocument();
+		} catch (final EOFException e) {
+			throw new IOException("Corrupt snapshot " + file + ": unexpected end of file", e);
+		} catch (final SAXException e) {
+			throw new IOException("Could not load snapshot " + file, e);
+		}
+		target.bugsPopulated();
+		target.getProject().setModified(false);
+	}
+
+	@NotNull
+	private static String readString(@NotNull final DataInputStream in, @NotNull final List<String> strings) throws IOException {
+		final int ref = readVarInt(in);
+		if (ref != 0) {
+			if (ref > strings.size()) {
+				throw new IOException("Corrupt snapshot: invalid string reference " + ref);
+			}
+			return strings.get(ref - 1);
+		}
+		final byte[] bytes = new byte[readVarInt(in)];
+		in.readFully(bytes);
+		final String ret = new String(bytes, "UTF-8");
+		strings.add(ret);
+		return ret;
+	}
+
+	private static int readVarInt(@NotNull final DataInputStream in) throws IOException {
+		int ret = 0;
+		int shift = 0;
+		int b;
+		do {
+			if (shift > 28) {
+				throw new IOException("Corrupt snapshot: varint too long");
+			}
+			b = in.readUnsignedByte();
+			ret |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return ret;
+	}
+
+	private static void writeVarInt(@NotNull final DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	@NotNull
+	private static String getName(@NotNull final Project project) {
+		if (project instanceof FindBugsProject) {
+			return ((FindBugsProject) project).getModule().getName();
+		}
+		final String ret = project.getProjectName();
+		return ret != null ? ret : "result";
+	}
+
+	@NotNull
+	private static String uniqueName(@NotNull final String name, @NotNull final Set<String> usedNames) {
+		String ret = name;
+		for (int i = 2; !usedNames.add(ret); i++) {
+			ret = name + " (" + i + ")";
+		}
+		return ret;
+	}
+
+	/**
+	 * Records the elements as tokens (see class doc). Text and attribute values are stored unescaped,
+	 * that is the way {@link SAXBugCollectionHandler} receives them from a parser.
+	 */
+	private static final class BinaryXMLOutput implements XMLOutput {
+
+		@NotNull
+		private final DataOutputStream out;
+
+		@NotNull
+		private final Map<String, Integer> strings;
+
+		@NotNull
+		private final List<String> pendingAttributes;
+
+		@Nullable
+		private String pendingElement;
+
+		BinaryXMLOutput(@NotNull final DataOutputStream out) {
+			this.out = out;
+			strings = New.map();
+			pendingAttributes = New.arrayList();
+		}
+
+		@Override
+		public void beginDocument() {
+		}
+
+		@Override
+		public void openTag(@NotNull final String tagName) throws IOException {
+			writeOpen(tagName, Collections.<String>emptyList());
+		}
+
+		@Override
+		public void openTag(@NotNull final String tagName, @NotNull final XMLAttributeList attributeList) throws IOException {
+			writeOpen(tagName, toList(attributeList));
+		}
+
+		@Override
+		public void startTag(@NotNull final String tagName) {
+			pendingElement = tagName;
+			pendingAttributes.clear();
+		}
+
+		@Override
+		public void addAttribute(@NotNull final String name, @NotNull final String value) {
+			pendingAttributes.add(name);
+			pendingAttributes.add(value);
+		}
+
+		@Override
+		public void stopTag(final boolean close) throws IOException {
+			if (pendingElement == null) {
+				throw new IllegalStateException("stopTag without startTag");
+			}
+			writeOpen(pendingElement, pendingAttributes);
+			pendingElement = null;
+			if (close) {
+				out.writeByte(TOKEN_CLOSE);
+			}
+		}
+
+		@Override
+		public void openCloseTag(@NotNull final String tagName) throws IOException {
+			openTag(tagName);
+			out.writeByte(TOKEN_CLOSE);
+		}
+
+		@Override
+		public void openCloseTag(@NotNull final String tagName, @NotNull final XMLAttributeList attributeList) throws IOException {
+			openTag(tagName, attributeList);
+			out.writeByte(TOKEN_CLOSE);
+		}
+
+		@Override
+		public void closeTag(@NotNull final String tagName) throws IOException {
+			out.writeByte(TOKEN_CLOSE);
+		}
+
+		@Override
+		public void writeText(@NotNull final String text) throws IOException {
+			out.writeByte(TOKEN_TEXT);
+			writeString(text);
+		}
+
+		@Override
+		public void writeCDATA(@NotNull final String cdata) throws IOException {
+			writeText(cdata);
+		}
+
+		@Override
+		public void finish() throws IOException {
+			out.writeByte(TOKEN_END);
+			out.flush();
+		}
+
+		private void writeOpen(@NotNull final String tagName, @NotNull final List<String> attributes) throws IOException {
+			out.writeByte(TOKEN_OPEN);
+			writeString(tagName);
+			writeVarInt(out, attributes.size() / 2);
+			for (final String attribute : attributes) {
+				writeString(attribute);
+			}
+		}
+
+		private void writeString(@NotNull final String value) throws IOException {
+			final Integer ref = strings.get(value);
+			if (ref != null) {
+				writeVarInt(out, ref);
+				return;
+			}
+			strings.put(value, strings.size() + 1);
+			final byte[] bytes = value.getBytes("UTF-8");
+			writeVarInt(out, 0);
+			writeVarInt(out, bytes.length);
+			out.write(bytes);
+		}
+
+		@NotNull
+		private static List<String> toList(@NotNull final XMLAttributeList attributeList) {
+			final List<String> ret = New.arrayList();
+			for (final Iterator<XMLAttributeList.NameValuePair> it = attributeList.iterator(); it.hasNext(); ) {
+				final XMLAttributeList.NameValuePair pair = it.next();
+				ret.add(pair.getName());
+				ret.add(pair.getValue());
+			}
+			return ret;
+		}
+	}
+
+	private static final class CountingOutputStream extends FilterOutputStream {
+		private long count;
+
+		CountingOutputStream(@NotNull final OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(@NotNull final byte[] b, final int off, final int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+}
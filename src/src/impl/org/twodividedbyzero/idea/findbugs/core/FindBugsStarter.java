@@ -45,13 +45,12 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.impl.ToolWindowImpl;
 import com.intellij.util.Consumer;
-import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.DetectorFactoryCollection;
 import edu.umd.cs.findbugs.FindBugs2;
 import edu.umd.cs.findbugs.SortedBugCollection;
 import edu.umd.cs.findbugs.config.ProjectFilterSettings;
 import edu.umd.cs.findbugs.config.UserPreferences;
-import org.dom4j.DocumentException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.twodividedbyzero.idea.findbugs.common.EventDispatchThreadHelper;
@@ -62,13 +61,21 @@ import org.twodividedbyzero.idea.findbugs.messages.AnalysisAbortingListener;
 import org.twodividedbyzero.idea.findbugs.messages.MessageBusManager;
 import org.twodividedbyzero.idea.findbugs.plugins.PluginLoader;
 import org.twodividedbyzero.idea.findbugs.resources.ResourcesLoader;
+import org.twodividedbyzero.idea.findbugs.worker.WorkerClient;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class FindBugsStarter implements AnalysisAbortingListener {
 
@@ -134,6 +141,30 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 		return workspaceSettings.compileBeforeAnalyze;
 	}
 
+	/**
+	 * Invoked by EDT when the analysis starts. Override to merge the bugs of this analysis into an existing result
+	 * (see {@link #mergeResult(FindBugsResult, FindBugsResult)}) instead of starting from scratch.
+	 * The tool window is not cleared in this case.
+	 *
+	 * @return the result to merge into or {@code null} (default)
+	 */
+	@Nullable
+	protected FindBugsResult getBaseResult() {
+		return null;
+	}
+
+	/**
+	 * Invoked in background when the analysis is finished (not canceled) and {@link #getBaseResult()} was not {@code null}.
+	 *
+	 * @param baseResult the result returned by {@link #getBaseResult()}
+	 * @param result     the result of this analysis
+	 * @return the merged result
+	 */
+	@NotNull
+	protected FindBugsResult mergeResult(@NotNull final FindBugsResult baseResult, @NotNull final FindBugsResult result) {
+		return result;
+	}
+
 	public final void start() {
 		EventDispatchThreadHelper.checkEDT();
 		if (isCompileBeforeAnalyze()) {
@@ -170,7 +201,8 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 	}
 
 	private void startImpl(final boolean justCompiled) {
-		MessageBusManager.publishAnalysisStarted(project);
+		final FindBugsResult baseResult = getBaseResult();
+		MessageBusManager.publishAnalysisStarted(project, baseResult != null);
 
 		final ToolWindow toolWindow = ToolWindowPanel.getWindow(project);
 		if (toolWindow == null) {
@@ -191,14 +223,14 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 			task = new Task.Modal(project, _title, true) {
 				@Override
 				public void run(@NotNull final ProgressIndicator indicator) {
-					asyncStart(indicator, justCompiled);
+					asyncStart(indicator, justCompiled, baseResult);
 				}
 			};
 		} else {
 			task = new Task.Backgroundable(project, _title, true) {
 				@Override
 				public void run(@NotNull final ProgressIndicator indicator) {
-					asyncStart(indicator, justCompiled);
+					asyncStart(indicator, justCompiled, baseResult);
 				}
 
 				@Override
@@ -210,17 +242,17 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 		task.queue();
 	}
 
-	private void asyncStart(@NotNull final ProgressIndicator indicator, final boolean justCompiled) {
+	private void asyncStart(@NotNull final ProgressIndicator indicator, final boolean justCompiled, @Nullable final FindBugsResult baseResult) {
 		indicator.setIndeterminate(true);
 		indicator.setText("Configure FindBugs...");
 		try {
-			asyncStartImpl(indicator, justCompiled);
+			asyncStartImpl(indicator, justCompiled, baseResult);
 		} catch (final ProcessCanceledException ignore) {
 			MessageBusManager.publishAnalysisAbortedToEDT(project);
 		}
 	}
 
-	private void asyncStartImpl(@NotNull final ProgressIndicator indicator, final boolean justCompiled) {
+	private void asyncStartImpl(@NotNull final ProgressIndicator indicator, final boolean justCompiled, @Nullable final FindBugsResult baseResult) {
 
 		final FindBugsProjects projects = new FindBugsProjects(project);
 
@@ -230,25 +262,25 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 				return configure(indicator, projects, justCompiled);
 			}
 		});
+		// outside of a read action because the output directories are scanned
+		if (!canceled) {
+			canceled = !projects.resolveClassFiles(indicator);
+		}
+		if (!canceled) {
+			canceled = !configureResolved(indicator, projects);
+		}
 
-		final FindBugsResult result = new FindBugsResult();
+		FindBugsResult result = new FindBugsResult();
 		Throwable error = null;
 
 		if (!canceled) {
 			try {
-				int numClassesOffset = 0;
-				for (final Map.Entry<Module, FindBugsProject> entry : projects.getProjects().entrySet()) {
-					final FindBugsProject findBugsProject = entry.getValue();
-					final Module module = entry.getKey();
-					indicator.setText("Start FindBugs analysis of " + findBugsProject.getProjectName());
-					final Pair<SortedBugCollection, Reporter> data = executeImpl(indicator, module, findBugsProject, numClassesOffset);
-					final int numClasses = data.getSecond().getProjectStats().getNumClasses();
-					numClassesOffset += numClasses;
-					result.put(findBugsProject, data.getFirst());
-					if (data.getSecond().isCanceled()) {
-						canceled = true;
-						break;
-					}
+				// the analysis worker executes one analysis at a time
+				final int parallelism = workspaceSettings.analysisOutOfProcess ? 1 : Math.min(workspaceSettings.analysisParallelism, projects.getProjects().size());
+				if (parallelism > 1) {
+					canceled = executeParallel(indicator, projects, result, parallelism);
+				} else {
+					canceled = executeSequential(indicator, projects, result);
 				}
 			} catch (final InterruptedException e) {
 				Thread.currentThread().interrupt();
@@ -260,17 +292,150 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 		if (canceled) {
 			MessageBusManager.publishAnalysisAbortedToEDT(project);
 		} else {
+			if (baseResult != null) {
+				result = mergeResult(baseResult, result);
+			}
 			MessageBusManager.publishAnalysisFinishedToEDT(project, result, error);
 		}
 	}
 
+	/**
+	 * @return true if the analysis was canceled
+	 */
+	private boolean executeSequential(
+			@NotNull final ProgressIndicator indicator,
+			@NotNull final FindBugsProjects projects,
+			@NotNull final FindBugsResult result
+	) throws IOException, InterruptedException {
+
+		int numClassesOffset = 0;
+		for (final Map.Entry<Module, FindBugsProject> entry : projects.getProjects().entrySet()) {
+			final FindBugsProject findBugsProject = entry.getValue();
+			final Module module = entry.getKey();
+			indicator.setText("Start FindBugs analysis of " + findBugsProject.getProjectName());
+			final Pair<SortedBugCollection, Reporter> data = executeImpl(indicator, module, findBugsProject, numClassesOffset, null);
+			final int numClasses = data.getSecond().getProjectStats().getNumClasses();
+			numClassesOffset += numClasses;
+			result.put(findBugsProject, data.getFirst());
+			if (data.getSecond().isCanceled()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Plugins and detector factories are global FindBugs state. So only the modules which use the project settings
+	 * are analyzed concurrently (the plugins are loaded once for all of them). Modules which override the project
+	 * settings are analyzed one after another afterwards.
+	 * The results are put in the same order as {@link FindBugsProjects#getProjects()} regardless of completion order.
+	 * The progress of all modules is aggregated by one {@link AnalysisProgress}.
+	 *
+	 * @return true if the analysis was canceled
+	 */
+	private boolean executeParallel(
+			@NotNull final ProgressIndicator indicator,
+			@NotNull final FindBugsProjects projects,
+			@NotNull final FindBugsResult result,
+			final int parallelism
+	) throws Exception {
+
+		final List<Map.Entry<Module, FindBugsProject>> shared = New.arrayList();
+		final List<Map.Entry<Module, FindBugsProject>> overriding = New.arrayList();
+		for (final Map.Entry<Module, FindBugsProject> entry : projects.getProjects().entrySet()) {
+			if (ModuleSettings.getInstance(entry.getKey()).overrideProjectSettings) {
+				overriding.add(entry);
+			} else {
+				shared.add(entry);
+			}
+		}
+
+		final Map<Module, SortedBugCollection> collections = New.map();
+		boolean canceled = false;
+		final AnalysisProgress progress = new AnalysisProgress(indicator, shared.size() + overriding.size());
+
+		if (!shared.isEmpty()) {
+			final AbstractSettings settings = loadSettings(shared.get(0).getKey());
+			indicator.setText("Start FindBugs analysis of " + shared.size() + " modules (" + parallelism + " parallel)");
+			final ExecutorService executor = Executors.newFixedThreadPool(parallelism, new AnalysisThreadFactory());
+			try {
+				final List<Future<Pair<SortedBugCollection, Reporter>>> futures = New.arrayList();
+				for (final Map.Entry<Module, FindBugsProject> entry : shared) {
+					final Module module = entry.getKey();
+					final FindBugsProject findBugsProject = entry.getValue();
+					futures.add(executor.submit(new Callable<Pair<SortedBugCollection, Reporter>>() {
+						@Override
+						public Pair<SortedBugCollection, Reporter> call() throws Exception {
+							progress.moduleStarted();
+							return executeEngine(indicator, module, findBugsProject, settings, 0, progress);
+						}
+					}));
+				}
+				for (int i = 0; i < futures.size(); i++) {
+					final Pair<SortedBugCollection, Reporter> data;
+					try {
+						data = futures.get(i).get();
+					} catch (final ExecutionException e) {
+						final Throwable cause = e.getCause();
+						if (cause instanceof Exception) {
+							throw (Exception) cause;
+						}
+						if (cause instanceof Error) {
+							throw (Error) cause;
+						}
+						throw e;
+					}
+					collections.put(shared.get(i).getKey(), data.getFirst());
+					if (data.getSecond().isCanceled()) {
+						canceled = true;
+					}
+				}
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+
+		if (!canceled) {
+			for (final Map.Entry<Module, FindBugsProject> entry : overriding) {
+				final FindBugsProject findBugsProject = entry.getValue();
+				progress.moduleStarted();
+				final Pair<SortedBugCollection, Reporter> data = executeImpl(indicator, entry.getKey(), findBugsProject, 0, progress);
+				collections.put(entry.getKey(), data.getFirst());
+				if (data.getSecond().isCanceled()) {
+					canceled = true;
+					break;
+				}
+			}
+		}
+
+		for (final Map.Entry<Module, FindBugsProject> entry : projects.getProjects().entrySet()) {
+			final SortedBugCollection bugCollection = collections.get(entry.getKey());
+			if (bugCollection != null) {
+				result.put(entry.getValue(), bugCollection);
+			}
+		}
+		return canceled;
+	}
+
 	private Pair<SortedBugCollection, Reporter> executeImpl(
 			@NotNull final ProgressIndicator indicator,
 			@NotNull final Module module,
 			@NotNull final FindBugsProject findBugsProject,
-			final int analyzedClassCountOffset
+			final int analyzedClassCountOffset,
+			@Nullable final AnalysisProgress progress
 	) throws IOException, InterruptedException {
 
+		final AbstractSettings settings = loadSettings(module);
+		return executeEngine(indicator, module, findBugsProject, settings, analyzedClassCountOffset, progress);
+	}
+
+	/**
+	 * Imports the runtime settings (if configured) and loads the plugins for {@code module}.
+	 * Note that this changes global FindBugs state (plugins and detector factories).
+	 */
+	@NotNull
+	private AbstractSettings loadSettings(@NotNull final Module module) {
+
 		final ModuleSettings moduleSettings = ModuleSettings.getInstance(module);
 		AbstractSettings settings = projectSettings;
 		String importFilePathKey = WorkspaceSettings.PROJECT_IMPORT_FILE_PATH_KEY;
@@ -294,32 +459,30 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 		if (!PluginLoader.load(project, moduleSettings.overrideProjectSettings ? module : null, settings, true)) {
 			throw new ProcessCanceledException();
 		}
+		return settings;
+	}
 
-		final DetectorFactoryCollection detectorFactoryCollection = DetectorFactoryCollection.instance();
+	private Pair<SortedBugCollection, Reporter> executeEngine(
+			@NotNull final ProgressIndicator indicator,
+			@NotNull final Module module,
+			@NotNull final FindBugsProject findBugsProject,
+			@NotNull final AbstractSettings settings,
+			final int analyzedClassCountOffset,
+			@Nullable final AnalysisProgress progress
+	) throws IOException, InterruptedException {
 
-		final ProjectFilterSettings projectFilterSettings;
-		final UserPreferences userPrefs = UserPreferences.createDefaultUserPreferences();
-		{
-			userPrefs.setEffort(settings.analysisEffort);
-			projectFilterSettings = userPrefs.getFilterSettings();
-			projectFilterSettings.setMinRank(settings.minRank);
-			projectFilterSettings.setMinPriority(settings.minPriority);
-
-			for (final String category : DetectorFactoryCollection.instance().getBugCategories()) {
-				projectFilterSettings.removeCategory(category);
-				projectFilterSettings.addCategory(category);
-			}
-			for (final String category : settings.hiddenBugCategory) {
-				projectFilterSettings.removeCategory(category);
-			}
+		final DetectorFactoryCollection detectorFactoryCollection = DetectorFactoryCollection.instance();
 
-			userPrefs.setIncludeFilterFiles(new HashMap<String, Boolean>(settings.includeFilterFiles));
-			userPrefs.setExcludeBugsFiles(new HashMap<String, Boolean>(settings.excludeBugsFiles));
-			userPrefs.setExcludeFilterFiles(new HashMap<String, Boolean>(settings.excludeFilterFiles));
+		final EngineSession.Configuration configuration = EngineSession.getInstance(project).getConfiguration(settings);
+		final UserPreferences userPrefs = configuration.getUserPreferences();
+		final ProjectFilterSettings projectFilterSettings = userPrefs.getFilterSettings();
 
-			configureDetectors(settings.detectors, detectorFactoryCollection, userPrefs);
-			for (final PluginSettings pluginSettings : settings.plugins) {
-				configureDetectors(pluginSettings.detectors, detectorFactoryCollection, userPrefs);
+		ClassResultCache resultCache = null;
+		if (workspaceSettings.analysisResultCache) {
+			resultCache = new ClassResultCache(ClassResultCache.createFingerprint(settings, userPrefs, detectorFactoryCollection));
+			resultCache.prepare(findBugsProject);
+			if (resultCache.getHitCount() > 0) {
+				LOGGER.info(String.format("Reuse cached bugs of %d class files of '%s'", resultCache.getHitCount(), findBugsProject.getProjectName()));
 			}
 		}
 
@@ -333,28 +496,42 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 				projectFilterSettings,
 				indicator,
 				_cancellingByUser,
-				analyzedClassCountOffset
+				analyzedClassCountOffset,
+				progress,
+				!workspaceSettings.analysisOutOfProcess
 		);
 
 		reporter.setPriorityThreshold(userPrefs.getUserDetectorThreshold());
 		reporter.setRankThreshold(projectFilterSettings.getMinRank());
+		if (resultCache != null) {
+			for (final BugInstance bug : resultCache.getCachedBugs()) {
+				reporter.replayBug(bug);
+			}
+		}
+
+		if (workspaceSettings.analysisOutOfProcess) {
+			executeWorker(findBugsProject, configuration, reporter);
+		} else {
+			final FindBugs2 engine = new FindBugs2();
+			{
+				engine.setNoClassOk(true);
+				engine.setMergeSimilarWarnings(false);
+				engine.setBugReporter(configuration.createFilteredReporter(reporter));
+				engine.setProject(findBugsProject);
+				engine.setProgressCallback(reporter);
+				engine.setDetectorFactoryCollection(detectorFactoryCollection);
+				engine.setUserPreferences(configuration.getEngineUserPreferences());
+			}
 
-		final FindBugs2 engine = new FindBugs2();
-		{
-			engine.setNoClassOk(true);
-			engine.setMergeSimilarWarnings(false);
-			engine.setBugReporter(reporter);
-			engine.setProject(findBugsProject);
-			engine.setProgressCallback(reporter);
-			configureFilter(engine, userPrefs);
-			engine.setDetectorFactoryCollection(detectorFactoryCollection);
-			engine.setUserPreferences(userPrefs);
+			try {
+				engine.execute();
+			} finally {
+				engine.dispose();
+			}
 		}
 
-		try {
-			engine.execute();
-		} finally {
-			engine.dispose();
+		if (resultCache != null && !reporter.isCanceled()) {
+			resultCache.store(bugCollection);
 		}
 
 		bugCollection.setDoNotUseCloud(false);
@@ -364,6 +541,76 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 		return Pair.create(bugCollection, reporter);
 	}
 
+	/**
+	 * Executes the analysis in the analysis worker process (see {@link EngineSession#getWorkerClient(int)}).
+	 * The worker applies the filter files itself and streams the bugs and progress back to {@code reporter}.
+	 */
+	private void executeWorker(
+			@NotNull final FindBugsProject findBugsProject,
+			@NotNull final EngineSession.Configuration configuration,
+			@NotNull final Reporter reporter
+	) throws IOException {
+
+		final WorkerClient workerClient = EngineSession.getInstance(project).getWorkerClient(workspaceSettings.analysisWorkerMaxHeap);
+		final boolean canceled = workerClient.analyze(configuration.createWorkerRequest(findBugsProject), new WorkerClient.Listener() {
+			@Override
+			public void reportBug(@NotNull final BugInstance bug) {
+				reporter.reportBug(bug);
+			}
+
+			@Override
+			public void classAnalyzed(@NotNull final String className, @Nullable final String sourceFile, final int size) {
+				reporter.getProjectStats().addClass(className, sourceFile, false, size);
+			}
+
+			@Override
+			public boolean isCanceled() {
+				return reporter.checkCanceled();
+			}
+
+			@Override
+			public void reportNumberOfArchives(final int numArchives) {
+				reporter.reportNumberOfArchives(numArchives);
+			}
+
+			@Override
+			public void startArchive(final String name) {
+				reporter.startArchive(name);
+			}
+
+			@Override
+			public void finishArchive() {
+				reporter.finishArchive();
+			}
+
+			@Override
+			public void predictPassCount(final int[] classesPerPass) {
+				reporter.predictPassCount(classesPerPass);
+			}
+
+			@Override
+			public void startAnalysis(final int numClasses) {
+				reporter.startAnalysis(numClasses);
+			}
+
+			@Override
+			public void finishClass() {
+				reporter.finishClass();
+			}
+
+			@Override
+			public void finishPerClassAnalysis() {
+				reporter.finishPerClassAnalysis();
+			}
+		});
+		if (canceled) {
+			reporter.markCanceled();
+		}
+		if (!reporter.isCanceled()) {
+			reporter.finish();
+		}
+	}
+
 	protected abstract void createCompileScope(@NotNull final CompilerManager compilerManager, @NotNull final Consumer<CompileScope> consumer);
 
 	@NotNull
@@ -432,63 +679,29 @@ public abstract class FindBugsStarter implements AnalysisAbortingListener {
 			final boolean justCompiled
 	);
 
+	/**
+	 * Invoked after the class files of the files added by {@link #configure} were added to the projects.
+	 * Note that this is not invoked in a read action (implementations must acquire one if required).
+	 *
+	 * @return false to abort the analysis
+	 */
+	protected boolean configureResolved(@NotNull final ProgressIndicator indicator, @NotNull final FindBugsProjects projects) {
+		return true;
+	}
+
 	@Override
 	public final void analysisAborting() {
 		_cancellingByUser.set(true);
 	}
 
-	private static void configureDetectors(
-			@NotNull final Map<String, Boolean> detectors,
-			@NotNull final DetectorFactoryCollection detectorFactoryCollection,
-			@NotNull final UserPreferences userPreferences
-	) {
-		for (final Map.Entry<String, Boolean> enabled : detectors.entrySet()) {
-			final DetectorFactory detectorFactory = detectorFactoryCollection.getFactory(enabled.getKey());
-			if (detectorFactory != null) {
-				userPreferences.enableDetector(detectorFactory, enabled.getValue());
-			}
-		}
-	}
-
-	private static void configureFilter(
-			@NotNull final FindBugs2 engine,
-			@NotNull final UserPreferences userPrefs
-	) {
+	private static class AnalysisThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
 
-		final Map<String, Boolean> excludeFilterFiles = userPrefs.getExcludeFilterFiles();
-		for (final Map.Entry<String, Boolean> excludeFileName : excludeFilterFiles.entrySet()) {
-			if (excludeFileName.getValue()) {
-				final String filePath = excludeFileName.getKey();
-				try {
-					engine.addFilter(filePath, false);
-				} catch (final IOException e) {
-					LOGGER.error("ExcludeFilter configuration failed.", e);
-				}
-			}
-		}
-		final Map<String, Boolean> includeFilterFiles = userPrefs.getIncludeFilterFiles();
-		for (final Map.Entry<String, Boolean> includeFileName : includeFilterFiles.entrySet()) {
-			if (includeFileName.getValue()) {
-				final String filePath = includeFileName.getKey();
-				try {
-					engine.addFilter(filePath, true);
-				} catch (final IOException e) {
-					LOGGER.error("IncludeFilter configuration failed.", e);
-				}
-			}
-		}
-		final Map<String, Boolean> excludeBugFiles = userPrefs.getExcludeBugsFiles();
-		for (final Map.Entry<String, Boolean> excludeBugFile : excludeBugFiles.entrySet()) {
-			if (excludeBugFile.getValue()) {
-				final String filePath = excludeBugFile.getKey();
-				try {
-					engine.excludeBaselineBugs(filePath);
-				} catch (final IOException e) {
-					LOGGER.error("ExcludeBaseLineBug files configuration failed.", e);
-				} catch (final DocumentException e) {
-					LOGGER.error("ExcludeBaseLineBug files configuration failed.", e);
-				}
-			}
+		@Override
+		public Thread newThread(@NotNull final Runnable runnable) {
+			final Thread ret = new Thread(runnable, "FindBugs-IDEA Analysis #" + threadNumber.getAndIncrement());
+			ret.setDaemon(true);
+			return ret;
 		}
 	}
 
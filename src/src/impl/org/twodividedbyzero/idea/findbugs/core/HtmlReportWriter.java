@@ -0,0 +1,440 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.core;
+
+import com.intellij.openapi.util.text.StringUtil;
+import edu.umd.cs.findbugs.BugAnnotation;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugPattern;
+import edu.umd.cs.findbugs.ClassAnnotation;
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.I18N;
+import edu.umd.cs.findbugs.Priorities;
+import edu.umd.cs.findbugs.ProjectStats;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.Version;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.twodividedbyzero.idea.findbugs.common.util.FileUtilFb;
+import org.twodividedbyzero.idea.findbugs.common.util.IoUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Writes the HTML report (same content as FindBugs' plain.xsl) straight from the bug collection, without
+ * building a DOM. The collection is iterated twice: first to count the warnings per package and category,
+ * then to write the warnings. Only these counters are kept in memory, never the bugs or the document.
+ * <p>
+ * With {@code splitPerPackage} the report file is an index page and the warnings of each package are written
+ * to a separate page in the directory {@code <report name>-files}. Otherwise all warnings are written to the
+ * report file, one section per package.
+ * <p>
+ * {@link #writeIndex(File, String, Map)} writes a page which links the reports of several modules.
+ */
+public final class HtmlReportWriter {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final String PACKAGE_DIR_SUFFIX = "-files";
+	private static final String DEFAULT_PACKAGE = "(default package)";
+
+	@NotNull
+	private final SortedBugCollection bugCollection;
+
+	private final boolean splitPerPackage;
+
+	/**
+	 * Package name -> {number of warnings, number of warnings written}.
+	 */
+	@NotNull
+	private final Map<String, int[]> packages;
+
+	@NotNull
+	private final Map<String, int[]> categories;
+
+	@NotNull
+	private final Set<String> types;
+
+	@NotNull
+	private final int[] priorities;
+
+	public HtmlReportWriter(@NotNull final SortedBugCollection bugCollection, final boolean splitPerPackage) {
+		this.bugCollection = bugCollection;
+		this.splitPerPackage = splitPerPackage;
+		packages = new TreeMap<String, int[]>();
+		categories = new TreeMap<String, int[]>();
+		types = new TreeSet<String>();
+		priorities = new int[4];
+	}
+
+	public void write(@NotNull final File file) throws IOException {
+		collectStatistics();
+
+		final Writer writer = openWriter(file, false);
+		try {
+			writeHeader(writer, "FindBugs Report");
+			writeMetrics(writer);
+			writeCategorySummary(writer);
+			writePackageSummary(writer, file);
+			if (!splitPerPackage) {
+				writeWarnings(writer);
+			}
+			writePatterns(writer);
+			writeFooter(writer);
+		} finally {
+			IoUtil.safeClose(writer);
+		}
+		if (splitPerPackage) {
+			writePackagePages(file);
+		}
+	}
+
+	/**
+	 * @param reports report file (in the directory of {@code file}) -> bug collection
+	 */
+	public static void writeIndex(@NotNull final File file, @NotNull final String projectName, @NotNull final Map<File, SortedBugCollection> reports) throws IOException {
+		final Writer writer = openWriter(file, false);
+		try {
+			writeHeader(writer, "FindBugs Report", Version.RELEASE, projectName);
+			writer.write("<h2>Modules</h2>\n");
+			writer.write("<table width=\"700\" cellpadding=\"5\" cellspacing=\"2\">\n");
+			writer.write("<tr class=\"tableheader\"><th align=\"left\">Module</th><th align=\"right\">High</th><th align=\"right\">Medium</th><th align=\"right\">Low</th><th align=\"right\">Total</th></tr>\n");
+			final int[] total = new int[4];
+			int row = 0;
+			for (final Map.Entry<File, SortedBugCollection> report : reports.entrySet()) {
+				final int[] counts = new int[4]; // high, medium, low, total
+				for (final BugInstance bug : report.getValue()) {
+					if (isReported(bug)) {
+						counts[bug.getPriority() - 1]++;
+						counts[3]++;
+					}
+				}
+				String name = report.getValue().getProject().getProjectName();
+				if (StringUtil.isEmptyOrSpaces(name)) {
+					name = report.getKey().getName();
+				}
+				writer.write("<tr class=\"tablerow" + (row++ % 2) + "\"><td><a href=\"" + escape(report.getKey().getName()) + "\">" + escape(name) + "</a></td>");
+				for (int i = 0; i < counts.length; i++) {
+					total[i] += counts[i];
+					writer.write("<td align=\"right\">" + counts[i] + "</td>");
+				}
+				writer.write("</tr>\n");
+			}
+			writer.write("<tr class=\"tablerow" + (row % 2) + "\"><td><b>Total</b></td>");
+			for (final int count : total) {
+				writer.write("<td align=\"right\"><b>" + count + "</b></td>");
+			}
+			writer.write("</tr>\n</table>\n");
+			writeFooter(writer);
+		} finally {
+			IoUtil.safeClose(writer);
+		}
+	}
+
+	private void collectStatistics() {
+		for (final BugInstance bug : bugCollection) {
+			if (!isReported(bug)) {
+				continue;
+			}
+			increment(packages, getPackageName(bug));
+			increment(categories, bug.getBugPattern().getCategory());
+			types.add(bug.getType());
+			priorities[bug.getPriority()]++;
+		}
+	}
+
+	private void writeMetrics(@NotNull final Writer writer) throws IOException {
+		final ProjectStats stats = bugCollection.getProjectStats();
+		final double kloc = stats.getCodeSize() / 1000.0;
+		writer.write("<h2>Metrics</h2>\n");
+		writer.write("<p>" + stats.getCodeSize() + " lines of code analyzed, in " + stats.getNumClasses() + " classes, in " + packages.size() + " packages with warnings.</p>\n");
+		writer.write("<table width=\"500\" cellpadding=\"5\" cellspacing=\"2\">\n");
+		writer.write("<tr class=\"tableheader\"><th align=\"left\">Metric</th><th align=\"right\">Total</th><th align=\"right\">Density*</th></tr>\n");
+		final String[] names = {null, "High Priority Warnings", "Medium Priority Warnings", "Low Priority Warnings"};
+		int total = 0;
+		for (int priority = 1; priority <= 3; priority++) {
+			total += priorities[priority];
+			writeMetricRow(writer, priority % 2 == 1 ? 0 : 1, names[priority], priorities[priority], kloc, false);
+		}
+		writeMetricRow(writer, 0, "Total Warnings", total, kloc, true);
+		writer.write("</table>\n");
+		writer.write("<p><i>(* Defects per Thousand lines of non-commenting source statements)</i></p>\n");
+	}
+
+	private static void writeMetricRow(@NotNull final Writer writer, final int row, @NotNull final String name, final int count, final double kloc, final boolean bold) throws IOException {
+		final String density = String.format(Locale.ENGLISH, "%.2f", kloc > 0 ? count / kloc : 0.0);
+		final String b = bold ? "<b>" : "";
+		final String bEnd = bold ? "</b>" : "";
+		writer.write("<tr class=\"tablerow" + row + "\"><td>" + b + name + bEnd + "</td><td align=\"right\">" + b + count + bEnd + "</td><td align=\"right\">" + b + density + bEnd + "</td></tr>\n");
+	}
+
+	private void writeCategorySummary(@NotNull final Writer writer) throws IOException {
+		writer.write("<h2>Summary</h2>\n");
+		writer.write("<table width=\"500\" cellpadding=\"5\" cellspacing=\"2\">\n");
+		writer.write("<tr class=\"tableheader\"><th align=\"left\">Warning Type</th><th align=\"right\">Number</th></tr>\n");
+		int row = 0;
+		int total = 0;
+		for (final Map.Entry<String, int[]> category : categories.entrySet()) {
+			total += category.getValue()[0];
+			writer.write("<tr class=\"tablerow" + (row++ % 2) + "\"><td>" + escape(I18N.instance().getBugCategoryDescription(category.getKey())) + " Warnings</td><td align=\"right\">" + category.getValue()[0] + "</td></tr>\n");
+		}
+		writer.write("<tr class=\"tablerow" + (row % 2) + "\"><td><b>Total</b></td><td align=\"right\"><b>" + total + "</b></td></tr>\n");
+		writer.write("</table>\n");
+	}
+
+	private void writePackageSummary(@NotNull final Writer writer, @NotNull final File file) throws IOException {
+		writer.write("<h2>Packages</h2>\n");
+		writer.write("<table width=\"500\" cellpadding=\"5\" cellspacing=\"2\">\n");
+		writer.write("<tr class=\"tableheader\"><th align=\"left\">Package</th><th align=\"right\">Number</th></tr>\n");
+		int row = 0;
+		for (final Map.Entry<String, int[]> pkg : packages.entrySet()) {
+			final String href;
+			if (splitPerPackage) {
+				href = getPackageDir(file).getName() + "/" + getPackageFileName(pkg.getKey());
+			} else {
+				href = "#" + getPackageAnchor(pkg.getKey());
+			}
+			writer.write("<tr class=\"tablerow" + (row++ % 2) + "\"><td><a href=\"" + escape(href) + "\">" + escape(getPackageTitle(pkg.getKey())) + "</a></td><td align=\"right\">" + pkg.getValue()[0] + "</td></tr>\n");
+		}
+		writer.write("</table>\n");
+	}
+
+	/**
+	 * Single file report: a section per package. The collection is sorted by class name, so the warnings of
+	 * a package are (almost always) contiguous; if a package shows up again, a further section is started.
+	 */
+	private void writeWarnings(@NotNull final Writer writer) throws IOException {
+		writer.write("<h1>Warnings</h1>\n");
+		writer.write("<p>Click on each warning link to see a full description of the issue, and details of how to resolve it.</p>\n");
+		String currentPackage = null;
+		for (final BugInstance bug : bugCollection) {
+			if (!isReported(bug)) {
+				continue;
+			}
+			final String pkg = getPackageName(bug);
+			final int[] counts = packages.get(pkg);
+			if (!pkg.equals(currentPackage)) {
+				if (currentPackage != null) {
+					writeWarningTableEnd(writer);
+				}
+				currentPackage = pkg;
+				final String anchor = counts[1] == 0 ? " name=\"" + getPackageAnchor(pkg) + "\"" : "";
+				writer.write("<h2><a" + anchor + ">" + escape(getPackageTitle(pkg)) + "</a></h2>\n");
+				writeWarningTableStart(writer);
+			}
+			writeWarningRow(writer, bug, counts[1]++, "");
+		}
+		if (currentPackage != null) {
+			writeWarningTableEnd(writer);
+		}
+	}
+
+	/**
+	 * Only the page of the current package is open. If a package shows up again (see {@link #writeWarnings(Writer)}),
+	 * its page is reopened for appending. The page ends are written after all warnings.
+	 */
+	private void writePackagePages(@NotNull final File file) throws IOException {
+		final File packageDir = getPackageDir(file);
+		FileUtilFb.mkdirs(packageDir);
+		final String indexHref = "../" + file.getName();
+		String currentPackage = null;
+		Writer writer = null;
+		try {
+			for (final BugInstance bug : bugCollection) {
+				if (!isReported(bug)) {
+					continue;
+				}
+				final String pkg = getPackageName(bug);
+				final int[] counts = packages.get(pkg);
+				if (!pkg.equals(currentPackage)) {
+					IoUtil.safeClose(writer);
+					currentPackage = pkg;
+					final boolean first = counts[1] == 0;
+					writer = openWriter(new File(packageDir, getPackageFileName(pkg)), !first);
+					if (first) {
+						writeHeader(writer, getPackageTitle(pkg));
+						writer.write("<p><a href=\"" + escape(indexHref) + "\">Back to the report</a></p>\n");
+						writer.write("<p>" + counts[0] + " warnings.</p>\n");
+						writeWarningTableStart(writer);
+					}
+				}
+				writeWarningRow(writer, bug, counts[1]++, indexHref);
+			}
+		} finally {
+			IoUtil.safeClose(writer);
+		}
+		for (final String pkg : packages.keySet()) {
+			writer = openWriter(new File(packageDir, getPackageFileName(pkg)), true);
+			try {
+				writeWarningTableEnd(writer);
+				writeFooter(writer);
+			} finally {
+				IoUtil.safeClose(writer);
+			}
+		}
+	}
+
+	private static void writeWarningTableStart(@NotNull final Writer writer) throws IOException {
+		writer.write("<table class=\"warningtable\" width=\"100%\" cellspacing=\"2\" cellpadding=\"5\">\n");
+		writer.write("<tr class=\"tableheader\"><th align=\"left\">Warning</th><th align=\"left\">Priority</th><th align=\"left\">Details</th></tr>\n");
+	}
+
+	private static void writeWarningTableEnd(@NotNull final Writer writer) throws IOException {
+		writer.write("</table>\n<p><br/><br/></p>\n");
+	}
+
+	private static void writeWarningRow(@NotNull final Writer writer, @NotNull final BugInstance bug, final int row, @NotNull final String indexHref) throws IOException {
+		final BugPattern pattern = bug.getBugPattern();
+		writer.write("<tr class=\"tablerow" + (row % 2) + "\">\n");
+		writer.write("<td width=\"20%\" valign=\"top\"><a href=\"" + escape(indexHref + "#" + bug.getType()) + "\">" + escape(pattern.getShortDescription()) + "</a></td>\n");
+		writer.write("<td width=\"10%\" valign=\"top\">" + getPriorityName(bug.getPriority()) + "</td>\n");
+		writer.write("<td width=\"70%\"><p>" + escape(bug.getMessageWithoutPrefix()) + "<br/><br/>");
+		final SourceLineAnnotation sourceLine = bug.getPrimarySourceLineAnnotation();
+		if (sourceLine != null && !sourceLine.isUnknown()) {
+			writer.write("<br/>In file " + escape(sourceLine.getSourceFile()) + ", ");
+			if (sourceLine.getStartLine() == sourceLine.getEndLine()) {
+				writer.write("line " + sourceLine.getStartLine());
+			} else {
+				writer.write("lines " + sourceLine.getStartLine() + " to " + sourceLine.getEndLine());
+			}
+		}
+		for (final BugAnnotation annotation : bug.getAnnotations()) {
+			writer.write("<br/>" + escape(annotation.toString()));
+		}
+		writer.write("</p></td>\n</tr>\n");
+	}
+
+	private void writePatterns(@NotNull final Writer writer) throws IOException {
+		writer.write("<h1><a name=\"Details\">Warning Types</a></h1>\n");
+		for (final String type : types) {
+			final BugPattern pattern = DetectorFactoryCollection.instance().lookupBugPattern(type);
+			if (pattern == null) {
+				continue;
+			}
+			writer.write("<h2><a name=\"" + escape(type) + "\">" + escape(pattern.getShortDescription()) + "</a></h2>\n");
+			writer.write(pattern.getDetailText()); // already HTML
+			writer.write("\n<p><br/><br/></p>\n");
+		}
+	}
+
+	private void writeHeader(@NotNull final Writer writer, @NotNull final String title) throws IOException {
+		writeHeader(writer, title, bugCollection.getAnalysisVersion(), bugCollection.getProject().getProjectName());
+	}
+
+	private static void writeHeader(@NotNull final Writer writer, @NotNull final String title, @Nullable final String version, @Nullable final String projectName) throws IOException {
+		writer.write("<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Transitional//EN\" \"http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd\">\n");
+		writer.write("<html xmlns=\"http://www.w3.org/1999/xhtml\">\n<head>\n");
+		writer.write("<meta http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\"/>\n");
+		writer.write("<title>" + escape(title) + "</title>\n");
+		writer.write("<style type=\"text/css\">\n");
+		writer.write(".tablerow0 { background: #EEEEEE; }\n");
+		writer.write(".tablerow1 { background: white; }\n");
+		writer.write(".tableheader { background: #b9b9fe; font-size: larger; }\n");
+		writer.write("</style>\n</head>\n<body>\n");
+		writer.write("<h1>" + escape(title) + "</h1>\n");
+		writer.write("<p>Produced using <a href=\"http://findbugs.sourceforge.net\">FindBugs</a> " + escape(version) + ".</p>\n");
+		if (!StringUtil.isEmptyOrSpaces(projectName)) {
+			writer.write("<p>Project: " + escape(projectName) + "</p>\n");
+		}
+	}
+
+	private static void writeFooter(@NotNull final Writer writer) throws IOException {
+		writer.write("</body>\n</html>\n");
+	}
+
+	@NotNull
+	private static Writer openWriter(@NotNull final File file, final boolean append) throws IOException {
+		return new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(file, append)), UTF_8.newEncoder());
+	}
+
+	private static void increment(@NotNull final Map<String, int[]> counts, @NotNull final String key) {
+		int[] count = counts.get(key);
+		if (count == null) {
+			count = new int[2];
+			counts.put(key, count);
+		}
+		count[0]++;
+	}
+
+	@NotNull
+	private static String getPackageName(@NotNull final BugInstance bug) {
+		final ClassAnnotation primaryClass = bug.getPrimaryClass();
+		return primaryClass != null ? primaryClass.getPackageName() : "";
+	}
+
+	@NotNull
+	private static String getPackageTitle(@NotNull final String packageName) {
+		return packageName.isEmpty() ? DEFAULT_PACKAGE : packageName;
+	}
+
+	@NotNull
+	private static String getPackageAnchor(@NotNull final String packageName) {
+		return "Package_" + (packageName.isEmpty() ? "default" : packageName);
+	}
+
+	@NotNull
+	private static String getPackageFileName(@NotNull final String packageName) {
+		return (packageName.isEmpty() ? "default" : packageName) + ".html";
+	}
+
+	@NotNull
+	private static File getPackageDir(@NotNull final File file) {
+		final String name = file.getName();
+		final int dot = name.lastIndexOf('.');
+		return new File(file.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + PACKAGE_DIR_SUFFIX);
+	}
+
+	/**
+	 * Experimental and ignored warnings (priority greater than low) are not part of the report, so all counts
+	 * and the listed warnings agree.
+	 */
+	private static boolean isReported(@NotNull final BugInstance bug) {
+		return !bug.isDead() && bug.getPriority() >= Priorities.HIGH_PRIORITY && bug.getPriority() <= Priorities.LOW_PRIORITY;
+	}
+
+	@NotNull
+	private static String getPriorityName(final int priority) {
+		switch (priority) {
+			case 1:
+				return "High";
+			case 2:
+				return "Medium";
+			case 3:
+				return "Low";
+			default:
+				return "Unknown";
+		}
+	}
+
+	@NotNull
+	private static String escape(@Nullable final String text) {
+		return text == null ? "" : StringUtil.escapeXml(text);
+	}
+}
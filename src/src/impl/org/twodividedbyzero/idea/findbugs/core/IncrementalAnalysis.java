@@ -0,0 +1,308 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.core;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.compiler.CompileScope;
+import com.intellij.openapi.compiler.CompilerManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.CompilerModuleExtension;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.Consumer;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.ClassAnnotation;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.twodividedbyzero.idea.findbugs.common.EventDispatchThreadHelper;
+import org.twodividedbyzero.idea.findbugs.common.util.New;
+import org.twodividedbyzero.idea.findbugs.gui.toolwindow.view.ToolWindowPanel;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Analysis after auto-make which re-analyzes the changed classes and the classes which reference them directly
+ * (see {@link ClassDependencyGraph}) and merges the bugs into the current result of the tool window.
+ * The bugs of all other classes are kept. Without a current result, only the changed files are analyzed.
+ */
+final class IncrementalAnalysis {
+
+	/**
+	 * EDT thread confinement.
+	 */
+	private static final Map<Project, ClassDependencyGraph> GRAPH_BY_PROJECT = New.weakHashMap();
+
+	private IncrementalAnalysis() {
+	}
+
+	static void start(@NotNull final Project project, @NotNull final Collection<VirtualFile> changed) {
+		EventDispatchThreadHelper.checkEDT();
+
+		ClassDependencyGraph graph = GRAPH_BY_PROJECT.get(project);
+		if (graph == null) {
+			graph = new ClassDependencyGraph();
+			GRAPH_BY_PROJECT.put(project, graph);
+		}
+		final ClassDependencyGraph dependencyGraph = graph;
+
+		new FindBugsStarter(
+				project,
+				"Running FindBugs analysis for affected files...",
+				ProgressStartType.RunInBackground
+		) {
+			/**
+			 * Classes of the changed files and their dependents ; only accessed by the analysis thread.
+			 */
+			private final Set<String> analyzedClassNames = New.set();
+
+			/**
+			 * Compiler output directories (absolute) of all modules ; only accessed by the analysis thread.
+			 */
+			private final Map<File, Module> moduleByOutputDir = New.map();
+
+			private final Set<File> testOutputDirs = New.set();
+
+			private boolean incremental;
+
+			@Override
+			protected boolean isCompileBeforeAnalyze() {
+				return false;
+			}
+
+			@Override
+			protected void createCompileScope(@NotNull final CompilerManager compilerManager, @NotNull final Consumer<CompileScope> consumer) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Nullable
+			@Override
+			protected FindBugsResult getBaseResult() {
+				final ToolWindowPanel toolWindowPanel = ToolWindowPanel.getInstance(project);
+				final FindBugsResult ret = toolWindowPanel != null ? toolWindowPanel.getResult() : null;
+				incremental = ret != null;
+				return ret;
+			}
+
+			@Override
+			protected boolean configure(@NotNull final ProgressIndicator indicator, @NotNull final FindBugsProjects projects, final boolean justCompiled) {
+				projects.addFiles(changed, false, hasTests(changed));
+				if (incremental) {
+					collectOutputDirs(project, moduleByOutputDir, testOutputDirs);
+				}
+				return true;
+			}
+
+			@Override
+			protected boolean configureResolved(@NotNull final ProgressIndicator indicator, @NotNull final FindBugsProjects projects) {
+				if (incremental) {
+					indicator.setText("Collect dependent classes...");
+					addDependents(dependencyGraph, projects, moduleByOutputDir, testOutputDirs, analyzedClassNames);
+				}
+				return true;
+			}
+
+			@NotNull
+			@Override
+			protected FindBugsResult mergeResult(@NotNull final FindBugsResult baseResult, @NotNull final FindBugsResult result) {
+				return merge(baseResult, result, analyzedClassNames, dependencyGraph);
+			}
+		}.start();
+	}
+
+	/**
+	 * Must be invoked in a read action.
+	 */
+	private static void collectOutputDirs(
+			@NotNull final Project project,
+			@NotNull final Map<File, Module> moduleByOutputDir,
+			@NotNull final Set<File> testOutputDirs
+	) {
+		for (final Module module : ModuleManager.getInstance(project).getModules()) {
+			final CompilerModuleExtension extension = CompilerModuleExtension.getInstance(module);
+			if (extension != null) {
+				final VirtualFile path = extension.getCompilerOutputPath();
+				if (path != null) {
+					moduleByOutputDir.put(new File(path.getPath()), module);
+				}
+				final VirtualFile testPath = extension.getCompilerOutputPathForTests();
+				if (testPath != null) {
+					final File testOutputDir = new File(testPath.getPath());
+					moduleByOutputDir.put(testOutputDir, module);
+					testOutputDirs.add(testOutputDir);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Must not be invoked in a read action because the output directories are scanned ;
+	 * only the package directories of the changed class files are scanned again (see {@link ClassDependencyGraph}).
+	 */
+	private static void addDependents(
+			@NotNull final ClassDependencyGraph graph,
+			@NotNull final FindBugsProjects projects,
+			@NotNull final Map<File, Module> moduleByOutputDir,
+			@NotNull final Set<File> testOutputDirs,
+			@NotNull final Set<String> analyzedClassNames
+	) {
+		final Set<File> changedDirs = New.set();
+		for (final FindBugsProject findBugsProject : projects.getProjects().values()) {
+			for (final String classFile : findBugsProject.getFileList()) {
+				changedDirs.add(new File(classFile).getAbsoluteFile().getParentFile());
+			}
+		}
+		graph.update(moduleByOutputDir.keySet(), changedDirs);
+
+		for (final FindBugsProject findBugsProject : projects.getProjects().values()) {
+			for (final String classFile : findBugsProject.getFileList()) {
+				final String className = graph.getClassName(classFile);
+				if (className != null) {
+					analyzedClassNames.add(className);
+				}
+			}
+		}
+
+		final Map<File, File> outputDirByClassFile = New.map();
+		for (final String dependent : graph.getDependents(analyzedClassNames)) {
+			final File outputDir = graph.getOutputDir(dependent);
+			final File classFile = graph.getClassFile(dependent);
+			// the directory of a dependent is not scanned again, so its class file could be deleted meanwhile
+			if (outputDir != null && classFile != null && moduleByOutputDir.containsKey(outputDir) && classFile.isFile()) {
+				outputDirByClassFile.put(classFile, outputDir);
+				analyzedClassNames.add(dependent);
+			}
+		}
+		if (outputDirByClassFile.isEmpty()) {
+			return;
+		}
+
+		ApplicationManager.getApplication().runReadAction(new Runnable() {
+			@Override
+			public void run() {
+				for (final Map.Entry<File, File> entry : outputDirByClassFile.entrySet()) {
+					final File outputDir = entry.getValue();
+					final Module module = moduleByOutputDir.get(outputDir);
+					if (!module.isDisposed()) {
+						projects.get(module, testOutputDirs.contains(outputDir)).addFile(entry.getKey().getPath());
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * The bugs of the analyzed classes (and of the classes with new bugs) are replaced by the new ones,
+	 * all other bugs of {@code baseResult} are kept (same instances). The projects are matched by name,
+	 * so an imported result of this project is merged too. The bugs of classes which no longer exist
+	 * in the output directories are removed from the projects of this project.
+	 */
+	@NotNull
+	private static FindBugsResult merge(
+			@NotNull final FindBugsResult baseResult,
+			@NotNull final FindBugsResult result,
+			@NotNull final Set<String> analyzedClassNames,
+			@NotNull final ClassDependencyGraph graph
+	) {
+		final Set<String> replaced = New.set();
+		replaced.addAll(analyzedClassNames);
+		final Map<String, Map.Entry<edu.umd.cs.findbugs.Project, SortedBugCollection>> fresh = new LinkedHashMap<String, Map.Entry<edu.umd.cs.findbugs.Project, SortedBugCollection>>();
+		for (final Map.Entry<edu.umd.cs.findbugs.Project, SortedBugCollection> entry : result.getResults().entrySet()) {
+			for (final BugInstance bug : entry.getValue().getCollection()) {
+				final String className = getClassName(bug);
+				if (className != null) {
+					replaced.add(className);
+				}
+			}
+			fresh.put(entry.getKey().getProjectName(), entry);
+		}
+
+		final FindBugsResult ret = new FindBugsResult();
+		for (final Map.Entry<edu.umd.cs.findbugs.Project, SortedBugCollection> entry : baseResult.getResults().entrySet()) {
+			final String projectName = entry.getKey().getProjectName();
+			final Map.Entry<edu.umd.cs.findbugs.Project, SortedBugCollection> freshEntry = projectName != null ? fresh.remove(projectName) : null;
+			if (freshEntry == null) { // module not analyzed (or foreign project)
+				ret.put(entry.getKey(), retain(entry.getValue(), replaced, entry.getKey() instanceof FindBugsProject ? graph : null));
+				continue;
+			}
+			final SortedBugCollection bugCollection = freshEntry.getValue();
+			for (final BugInstance bug : entry.getValue().getCollection()) {
+				if (isRetained(bug, replaced, graph)) {
+					bugCollection.add(bug, false);
+				}
+			}
+			ret.put(freshEntry.getKey(), bugCollection);
+		}
+		for (final Map.Entry<edu.umd.cs.findbugs.Project, SortedBugCollection> freshEntry : fresh.values()) {
+			ret.put(freshEntry.getKey(), freshEntry.getValue());
+		}
+		return ret;
+	}
+
+	@Nullable
+	private static String getClassName(@NotNull final BugInstance bug) {
+		final ClassAnnotation primaryClass = bug.getPrimaryClass();
+		return primaryClass != null ? primaryClass.getClassName() : null;
+	}
+
+	/**
+	 * @return {@code bugCollection} itself if all bugs are retained, otherwise a copy with the retained bugs
+	 */
+	@NotNull
+	private static SortedBugCollection retain(
+			@NotNull final SortedBugCollection bugCollection,
+			@NotNull final Set<String> replaced,
+			@Nullable final ClassDependencyGraph graph
+	) {
+		boolean all = true;
+		for (final BugInstance bug : bugCollection.getCollection()) {
+			if (!isRetained(bug, replaced, graph)) {
+				all = false;
+				break;
+			}
+		}
+		if (all) {
+			return bugCollection;
+		}
+		final SortedBugCollection ret = bugCollection.createEmptyCollectionWithMetadata();
+		for (final BugInstance bug : bugCollection.getCollection()) {
+			if (isRetained(bug, replaced, graph)) {
+				ret.add(bug, false);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @param graph {@code null} to keep the bugs of classes which do not exist in the output directories
+	 */
+	private static boolean isRetained(@NotNull final BugInstance bug, @NotNull final Set<String> replaced, @Nullable final ClassDependencyGraph graph) {
+		final String className = getClassName(bug);
+		if (className == null) {
+			return true;
+		}
+		return !replaced.contains(className) && (graph == null || graph.contains(className));
+	}
+}
@@ -18,28 +18,145 @@
  */
 package org.twodividedbyzero.idea.findbugs.core;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.AbstractProjectComponent;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiFile;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.twodividedbyzero.idea.findbugs.common.EventDispatchThreadHelper;
 import org.twodividedbyzero.idea.findbugs.common.ExtendedProblemDescriptor;
 import org.twodividedbyzero.idea.findbugs.common.util.New;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class ProblemCache extends AbstractProjectComponent {
 
 	private final ConcurrentMap<PsiFile, List<ExtendedProblemDescriptor>> problems;
 
+	/**
+	 * The editor annotators look up the problems of each PSI element, so they use an index per file which is
+	 * built on first use and dropped when the problems are changed.
+	 */
+	private final ConcurrentMap<PsiFile, ProblemIndex> indexes;
+	private final AtomicInteger modificationCount;
+
 	public ProblemCache(@NotNull final Project project) {
 		super(project);
 		problems = New.concurrentMap();
+		indexes = New.concurrentMap();
+		modificationCount = new AtomicInteger();
 	}
 
+	/**
+	 * Note that {@link #problemsChanged()} must be called after modifying the map.
+	 * The lists are read by other threads (see {@link #getIndex} and {@link #resolvePsiElements}), so they must
+	 * not be modified ; put a modified copy instead (see {@link #copyAndAdd} and {@link #copyAndRemove}).
+	 */
 	@NotNull
 	public Map<PsiFile, List<ExtendedProblemDescriptor>> getProblems() {
 		return problems;
 	}
+
+	public void problemsChanged() {
+		modificationCount.incrementAndGet();
+		indexes.clear();
+	}
+
+	public void removeProblem(@NotNull final PsiFile psiFile, @NotNull final ExtendedProblemDescriptor problem) {
+		final List<ExtendedProblemDescriptor> list = problems.get(psiFile);
+		if (list != null && list.contains(problem)) {
+			problems.put(psiFile, copyAndRemove(list, problem));
+			problemsChanged();
+		}
+	}
+
+	/**
+	 * @return an unmodifiable copy of {@code list} (may be {@code null}) with {@code problem} added
+	 */
+	@NotNull
+	public static List<ExtendedProblemDescriptor> copyAndAdd(@Nullable final List<ExtendedProblemDescriptor> list, @NotNull final ExtendedProblemDescriptor problem) {
+		final List<ExtendedProblemDescriptor> ret;
+		if (list != null) {
+			ret = new ArrayList<ExtendedProblemDescriptor>(list.size() + 1);
+			ret.addAll(list);
+		} else {
+			ret = new ArrayList<ExtendedProblemDescriptor>(1);
+		}
+		ret.add(problem);
+		return Collections.unmodifiableList(ret);
+	}
+
+	/**
+	 * @return an unmodifiable copy of {@code list} without {@code problem}
+	 */
+	@NotNull
+	public static List<ExtendedProblemDescriptor> copyAndRemove(@NotNull final List<ExtendedProblemDescriptor> list, @NotNull final ExtendedProblemDescriptor problem) {
+		final List<ExtendedProblemDescriptor> ret = new ArrayList<ExtendedProblemDescriptor>(list);
+		ret.remove(problem);
+		return Collections.unmodifiableList(ret);
+	}
+
+	/**
+	 * Must be called inside a read action because the problem elements are resolved to build the index.
+	 *
+	 * @return {@code null} if there are no problems for {@code psiFile}
+	 */
+	@Nullable
+	public ProblemIndex getIndex(@Nullable final PsiFile psiFile) {
+		if (psiFile == null) {
+			return null;
+		}
+		final int expectedModificationCount = modificationCount.get();
+		final long fileModificationStamp = psiFile.getModificationStamp();
+		final ProblemIndex index = indexes.get(psiFile);
+		if (index != null && index.getModificationCount() == expectedModificationCount && index.getFileModificationStamp() == fileModificationStamp) {
+			return index;
+		}
+		final List<ExtendedProblemDescriptor> list = problems.get(psiFile);
+		if (list == null || list.isEmpty()) {
+			return null;
+		}
+		final ProblemIndex ret = new ProblemIndex(list, expectedModificationCount, fileModificationStamp);
+		if (modificationCount.get() == expectedModificationCount) {
+			indexes.put(psiFile, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * Resolves the problem elements of all files on a pooled thread, one read action per file, so neither the
+	 * EDT nor the highlighting needs to resolve them.
+	 *
+	 * @param onResolved invoked on the EDT afterwards
+	 */
+	public void resolvePsiElements(@NotNull final Runnable onResolved) {
+		final List<List<ExtendedProblemDescriptor>> files = new ArrayList<List<ExtendedProblemDescriptor>>(problems.values());
+		ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+			@Override
+			public void run() {
+				for (final List<ExtendedProblemDescriptor> file : files) {
+					if (myProject.isDisposed()) {
+						return;
+					}
+					ApplicationManager.getApplication().runReadAction(new Runnable() {
+						@Override
+						public void run() {
+							for (final ExtendedProblemDescriptor problem : file) {
+								if (problem.getPsiFile().isValid()) {
+									problem.resolvePsiElement();
+								}
+							}
+						}
+					});
+				}
+				EventDispatchThreadHelper.invokeLater(onResolved);
+			}
+		});
+	}
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.core;
+
+import com.intellij.psi.PsiAnonymousClass;
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NotNull;
+import org.twodividedbyzero.idea.findbugs.common.ExtendedProblemDescriptor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The problems of one file by their problem element (the element at the line reported by FindBugs or the
+ * anonymous class), so the annotators do not need to resolve and compare all problems of the file per element.
+ * Immutable ; see {@link ProblemCache#getIndex(com.intellij.psi.PsiFile)}.
+ */
+public final class ProblemIndex {
+
+	private final int modificationCount;
+	private final long fileModificationStamp;
+	private final Map<PsiElement, List<ExtendedProblemDescriptor>> problemsByElement;
+	private final boolean anonymousClasses;
+
+	ProblemIndex(@NotNull final List<ExtendedProblemDescriptor> problems, final int modificationCount, final long fileModificationStamp) {
+		this.modificationCount = modificationCount;
+		this.fileModificationStamp = fileModificationStamp;
+		problemsByElement = new LinkedHashMap<PsiElement, List<ExtendedProblemDescriptor>>();
+		boolean anonymousClasses = false;
+		for (final ExtendedProblemDescriptor problem : problems) {
+			final PsiElement element = problem.getPsiElement();
+			if (element == null) {
+				continue;
+			}
+			List<ExtendedProblemDescriptor> list = problemsByElement.get(element);
+			if (list == null) {
+				list = new ArrayList<ExtendedProblemDescriptor>(1);
+				problemsByElement.put(element, list);
+			}
+			list.add(problem);
+			anonymousClasses |= element instanceof PsiAnonymousClass;
+		}
+		this.anonymousClasses = anonymousClasses;
+	}
+
+	int getModificationCount() {
+		return modificationCount;
+	}
+
+	/**
+	 * The problem elements follow the edits of the file but a reparse may replace them.
+	 */
+	long getFileModificationStamp() {
+		return fileModificationStamp;
+	}
+
+	/**
+	 * @return the problem elements in the order of their first problem
+	 */
+	@NotNull
+	public Collection<PsiElement> getElements() {
+		return Collections.unmodifiableSet(problemsByElement.keySet());
+	}
+
+	@NotNull
+	public List<ExtendedProblemDescriptor> getProblems(@NotNull final PsiElement element) {
+		final List<ExtendedProblemDescriptor> ret = problemsByElement.get(element);
+		if (ret == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(ret);
+	}
+
+	/**
+	 * @return {@code true} if a problem element is an anonymous class
+	 */
+	public boolean hasAnonymousClasses() {
+		return anonymousClasses;
+	}
+}
@@ -23,8 +23,6 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Condition;
-import com.intellij.util.Processor;
-import com.intellij.util.containers.TransferToEDTQueue;
 import edu.umd.cs.findbugs.AbstractBugReporter;
 import edu.umd.cs.findbugs.AnalysisError;
 import edu.umd.cs.findbugs.BugInstance;
@@ -35,9 +33,8 @@ import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.config.ProjectFilterSettings;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.twodividedbyzero.idea.findbugs.common.EventDispatchThreadHelper;
-import org.twodividedbyzero.idea.findbugs.common.util.New;
-import org.twodividedbyzero.idea.findbugs.messages.MessageBusManager;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -47,16 +44,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 
 final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 
 	private static final Logger LOGGER = Logger.getInstance(Reporter.class.getName());
 	private static final String ANALYZING_CLASSES_i18N = "Analyzing classes: ";
 
-	@NotNull
-	private final Project _project;
-
 	@NotNull
 	private final Module module;
 
@@ -68,7 +61,15 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 
 	private final ProgressIndicator _indicator;
 	private final AtomicBoolean _cancellingByUser;
-	private final TransferToEDTQueue<Runnable> _transferToEDTQueue;
+	private final BugBatchQueue _newBugs;
+
+	/**
+	 * False if the analysis does not run in the current thread (analysis worker), so a cancel must not interrupt it.
+	 */
+	private final boolean interruptOnCancel;
+
+	@Nullable
+	private final AnalysisProgress progress;
 
 	private int pass = -1;
 	private int bugCount;
@@ -78,6 +79,7 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 	private String _currentStageName;
 	private boolean _canceled;
 	private int analyzedClassCountOffset;
+	private int reportedClassCount;
 
 
 	Reporter(
@@ -87,21 +89,24 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 			@NotNull final ProjectFilterSettings projectFilterSettings,
 			@NotNull final ProgressIndicator indicator,
 			@NotNull final AtomicBoolean cancellingByUser,
-			final int analyzedClassCountOffset
+			final int analyzedClassCountOffset,
+			@Nullable final AnalysisProgress progress,
+			final boolean interruptOnCancel
 	) {
-		_project = project;
 		this.module = module;
 		_bugCollection = bugCollection;
 		this.projectFilterSettings = projectFilterSettings;
 		_indicator = indicator;
 		_cancellingByUser = cancellingByUser;
 		this.analyzedClassCountOffset = analyzedClassCountOffset;
-		_transferToEDTQueue = new TransferToEDTQueue<Runnable>("Add New Bug Instance", new RunnableProcessor(), new Condition<Object>() {
+		this.progress = progress;
+		this.interruptOnCancel = interruptOnCancel;
+		_newBugs = new BugBatchQueue(project, new Condition<Object>() {
 			@Override
 			public boolean value(final Object o) {
-				return project.isDisposed() || _cancellingByUser.get() || _indicator.isCanceled();
+				return _cancellingByUser.get() || _indicator.isCanceled();
 			}
-		}, 500);
+		});
 	}
 
 
@@ -131,20 +136,47 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 		bugCount++;
 		observeClass(bug.getPrimaryClass().getClassDescriptor());
 
-		// Guarantee thread visibility *one* time.
-		final AtomicReference<SortedBugCollection> bugCollectionRef = New.atomicRef(_bugCollection);
-		final AtomicReference<BugInstance> bugRef = New.atomicRef(bug);
-		final int analyzedClassCount = analyzedClassCountOffset + getProjectStats().getNumClasses();
-		_transferToEDTQueue.offer(new Runnable() {
-			/**
-			 * Invoked by EDT.
-			 */
-			@Override
-			public void run() {
-				final Bug bug = new Bug(module, bugCollectionRef.get(), bugRef.get());
-				MessageBusManager.publishNewBug(_project, bug, analyzedClassCount);
-			}
-		});
+		if (progress != null) {
+			progress.bugFound();
+		}
+		_newBugs.offer(new Bug(module, _bugCollection, bug), getAnalyzedClassCount());
+	}
+
+
+	/**
+	 * @return number of classes analyzed so far, including the classes of the modules analyzed before
+	 * (or concurrently, see {@link AnalysisProgress})
+	 */
+	private int getAnalyzedClassCount() {
+		final int numClasses = getProjectStats().getNumClasses();
+		if (progress == null) {
+			return analyzedClassCountOffset + numClasses;
+		}
+		final int delta = numClasses - reportedClassCount;
+		reportedClassCount = numClasses;
+		return progress.addAnalyzedClasses(delta);
+	}
+
+
+	private void setText(@NotNull final String text) {
+		if (progress == null) {
+			_indicator.setText(text);
+		}
+	}
+
+
+	private void setText2(@NotNull final String text) {
+		if (progress == null) {
+			_indicator.setText2(text);
+		}
+	}
+
+
+	/**
+	 * Reports a bug which was not found by the current analysis but restored from {@link ClassResultCache}.
+	 */
+	void replayBug(@NotNull final BugInstance bug) {
+		doReportBug(bug);
 	}
 
 
@@ -200,9 +232,14 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 		EventDispatchThreadHelper.invokeAndWait(new EventDispatchThreadHelper.OperationAdapter() {
 			@Override
 			public void run() {
-				_transferToEDTQueue.drain();
+				_newBugs.drain();
 			}
 		});
+		if (progress != null) {
+			getAnalyzedClassCount();
+			progress.moduleFinished();
+			return;
+		}
 		_indicator.setText("Finished: Found " + bugCount + " bugs.");
 		_indicator.finishNonCancelableSection();
 	}
@@ -213,6 +250,23 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 	}
 
 
+	/**
+	 * Like {@link #isCanceled()} but checks for a cancel request of the user first.
+	 * Used when the analysis does not run in the current thread.
+	 */
+	boolean checkCanceled() {
+		return checkCancel();
+	}
+
+
+	/**
+	 * Invoked when the analysis was canceled by the analysis worker.
+	 */
+	void markCanceled() {
+		_canceled = true;
+	}
+
+
 	@Override
 	public SortedBugCollection getBugCollection() {
 		return _bugCollection;
@@ -225,6 +279,9 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 			return;
 		}
 
+		if (progress != null) {
+			return;
+		}
 		final String className = classDescriptor.getDottedClassName();
 		_indicator.setText("Observing class: " + className);
 		if (pass <= 0) {
@@ -235,7 +292,9 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 	}
 
 	private void cancelFindBugs() {
-		Thread.currentThread().interrupt(); // causes break in FindBugs main loop
+		if (interruptOnCancel) {
+			Thread.currentThread().interrupt(); // causes break in FindBugs main loop
+		}
 		_canceled = true;
 	}
 
@@ -265,7 +324,7 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 
 	@Override
 	public void finishPerClassAnalysis() {
-		_indicator.setText("Finishing analysis...");
+		setText("Finishing analysis...");
 	}
 
 
@@ -290,7 +349,7 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 			expectedWork += 2 * count;
 		}
 		expectedWork -= classesPerPass[0];
-		_indicator.setText("Performing bug checking... " + expectedWork);
+		setText("Performing bug checking... " + expectedWork);
 	}
 
 
@@ -298,23 +357,18 @@ final class Reporter extends AbstractBugReporter implements FindBugsProgress {
 		stepCount = 0;
 		this.goal = goal;
 		_currentStageName = stageName;
-		_indicator.setText2(stageName + " 0/" + this.goal);
+		setText2(stageName + " 0/" + this.goal);
 	}
 
 
 	private void step() {
 		stepCount++;
 		final int work = pass == 0 ? 1 : 2;
-		_indicator.setText2(_currentStageName + ' ' + stepCount + '/' + goal + (ANALYZING_CLASSES_i18N.equals(_currentStageName) ? " (pass #" + work + "/2)" : ""));
-	}
-
-
-	private static class RunnableProcessor implements Processor<Runnable> {
-		@Override
-		public boolean process(Runnable runnable) {
-			runnable.run();
-			return true;
+		if (progress != null) {
+			getAnalyzedClassCount();
+			return;
 		}
+		_indicator.setText2(_currentStageName + ' ' + stepCount + '/' + goal + (ANALYZING_CLASSES_i18N.equals(_currentStageName) ? " (pass #" + work + "/2)" : ""));
 	}
 
 
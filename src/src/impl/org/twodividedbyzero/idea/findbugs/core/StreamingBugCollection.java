@@ -0,0 +1,127 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.core;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link SortedBugCollection} which hands over each {@link BugInstance} to a {@link BugBatchQueue} as soon as
+ * the SAX parser has read it, so the bugs show up in the tree while the file is still being imported.
+ * <p>
+ * The parser is throttled if the EDT does not keep up, so the number of bugs waiting for the EDT is bounded
+ * by {@link #MAX_PENDING} regardless of the file size. {@link #readXML(java.io.File)} reports the progress
+ * (bytes read) to the {@link ProgressIndicator} and throws {@link com.intellij.openapi.progress.ProcessCanceledException}
+ * if the indicator is canceled.
+ */
+public final class StreamingBugCollection extends SortedBugCollection {
+
+	private static final int MAX_PENDING = 10000;
+
+	@NotNull
+	private final ProgressIndicator indicator;
+
+	@NotNull
+	private final BugBatchQueue queue;
+
+	private int bugCount;
+
+	public StreamingBugCollection(@NotNull final ProgressIndicator indicator, @NotNull final BugBatchQueue queue) {
+		this.indicator = indicator;
+		this.queue = queue;
+	}
+
+	@Override
+	public boolean add(@NotNull final BugInstance bugInstance, final boolean updateActiveTime) {
+		indicator.checkCanceled();
+		final boolean added = super.add(bugInstance, updateActiveTime);
+		if (added) {
+			bugCount++;
+			indicator.setText2("Importing bug '" + bugCount + "' - " + bugInstance.getMessageWithoutPrefix());
+			queue.offer(new Bug(null, this, bugInstance), getProjectStats().getNumClasses());
+			queue.awaitPendingAtMost(MAX_PENDING, indicator);
+		}
+		return added;
+	}
+
+	/**
+	 * Replaces the Swing {@link javax.swing.ProgressMonitorInputStream} of the GUI callback.
+	 */
+	@Override
+	public InputStream progressMonitoredInputStream(@NotNull final InputStream in, final int length, final String msg) {
+		return new ProgressInputStream(in, length, indicator);
+	}
+
+	public int getBugCount() {
+		return bugCount;
+	}
+
+	private static final class ProgressInputStream extends FilterInputStream {
+
+		private final int length;
+
+		@NotNull
+		private final ProgressIndicator indicator;
+
+		private long read;
+
+		private ProgressInputStream(@NotNull final InputStream in, final int length, @NotNull final ProgressIndicator indicator) {
+			super(in);
+			this.length = length;
+			this.indicator = indicator;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int b = super.read();
+			if (b != -1) {
+				progress(1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(@NotNull final byte[] b, final int off, final int len) throws IOException {
+			final int n = super.read(b, off, len);
+			progress(n);
+			return n;
+		}
+
+		@Override
+		public long skip(final long n) throws IOException {
+			final long skipped = super.skip(n);
+			progress(skipped);
+			return skipped;
+		}
+
+		private void progress(final long n) {
+			indicator.checkCanceled();
+			if (n > 0 && length > 0) {
+				read += n;
+				indicator.setFraction(Math.min(1.0, (double) read / length));
+			}
+		}
+	}
+}
@@ -52,6 +52,32 @@ public final class WorkspaceSettings implements PersistentStateComponent<Workspa
 	@Tag
 	public boolean runInBackground = false;
 
+	/**
+	 * Number of modules which are analyzed concurrently.
+	 * A value less than 2 analyzes the modules one after another.
+	 */
+	@Tag
+	public int analysisParallelism = 1;
+
+	/**
+	 * Reuse the bugs of unchanged class files from previous runs, see {@link ClassResultCache}.
+	 */
+	@Tag
+	public boolean analysisResultCache = false;
+
+	/**
+	 * Run the analysis in a separate JVM (see {@link org.twodividedbyzero.idea.findbugs.worker.AnalysisWorker})
+	 * instead of the IDE process. The modules are analyzed one after another in this case.
+	 */
+	@Tag
+	public boolean analysisOutOfProcess = false;
+
+	/**
+	 * Maximum heap size of the analysis worker JVM in megabytes.
+	 */
+	@Tag
+	public int analysisWorkerMaxHeap = 1024;
+
 	/**
 	 * Last used export directory for "Export Bug Collection".
 	 */
@@ -70,6 +96,24 @@ public final class WorkspaceSettings implements PersistentStateComponent<Workspa
 	@Tag
 	public boolean exportBugCollectionAsHtml = true;
 
+	/**
+	 * Last used setting for "Export Bug Collection".
+	 */
+	@Tag
+	public boolean exportBugCollectionAsSnapshot = false;
+
+	/**
+	 * Last used setting for "Export Bug Collection".
+	 */
+	@Tag
+	public boolean exportHtmlBugCollectionPerPackage = false;
+
+	/**
+	 * Number of modules which are exported concurrently by "Export Bug Collection".
+	 */
+	@Tag
+	public int exportParallelism = 4;
+
 	/**
 	 * Last used setting for "Export Bug Collection".
 	 */
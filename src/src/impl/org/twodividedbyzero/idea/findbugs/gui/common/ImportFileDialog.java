@@ -27,6 +27,7 @@ import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.DocumentAdapter;
+import org.twodividedbyzero.idea.findbugs.core.FindBugsResultSnapshot;
 
 import javax.swing.AbstractButton;
 import javax.swing.JButton;
@@ -133,7 +134,7 @@ public class ImportFileDialog extends JPanel {
 			return _selectedFile != null &&
 					_selectedFile.isFile() &&
 					_selectedFile.canRead() &&
-					"xml".equalsIgnoreCase(FileUtilRt.getExtension(_selectedFile.getAbsolutePath())) &&
+					isImportable(_selectedFile) &&
 					!doc.getText(0, doc.getLength()).trim().isEmpty();
 		} catch (final BadLocationException ignore) {
 			return false;
@@ -141,6 +142,11 @@ public class ImportFileDialog extends JPanel {
 	}
 
 
+	private static boolean isImportable(final File file) {
+		return "xml".equalsIgnoreCase(FileUtilRt.getExtension(file.getAbsolutePath())) || FindBugsResultSnapshot.isSnapshot(file);
+	}
+
+
 	private class MyDocumentAdapter extends DocumentAdapter {
 
 
@@ -160,12 +166,12 @@ public class ImportFileDialog extends JPanel {
           new FileFilter() {
             @Override
             public boolean accept(final File f) {
-              return f.isDirectory() || "xml".equalsIgnoreCase(FileUtilRt.getExtension(f.getAbsolutePath()));
+              return f.isDirectory() || isImportable(f);
             }
 
             @Override
             public String getDescription() {
-              return "*.xml";
+              return "*.xml, *." + FindBugsResultSnapshot.EXTENSION;
             }
           });
 
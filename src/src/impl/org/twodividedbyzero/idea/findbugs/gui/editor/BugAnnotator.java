@@ -20,7 +20,8 @@ package org.twodividedbyzero.idea.findbugs.gui.editor;
 
 import com.intellij.lang.annotation.Annotation;
 import com.intellij.lang.annotation.AnnotationHolder;
-import com.intellij.lang.annotation.Annotator;
+import com.intellij.lang.annotation.ExternalAnnotator;
+import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.markup.EffectType;
 import com.intellij.openapi.editor.markup.TextAttributes;
 import com.intellij.openapi.project.Project;
@@ -28,16 +29,17 @@ import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiAnonymousClass;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
-import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.ui.JBColor;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.Detector;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.twodividedbyzero.idea.findbugs.common.ExtendedProblemDescriptor;
 import org.twodividedbyzero.idea.findbugs.common.util.BugInstanceUtil;
 import org.twodividedbyzero.idea.findbugs.common.util.StringUtilFb;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsState;
 import org.twodividedbyzero.idea.findbugs.core.ProblemCache;
+import org.twodividedbyzero.idea.findbugs.core.ProblemIndex;
 import org.twodividedbyzero.idea.findbugs.core.WorkspaceSettings;
 import org.twodividedbyzero.idea.findbugs.intentions.ClearAndSuppressBugIntentionAction;
 import org.twodividedbyzero.idea.findbugs.intentions.ClearBugIntentionAction;
@@ -48,47 +50,68 @@ import org.twodividedbyzero.idea.findbugs.resources.ResourcesLoader;
 import java.awt.Font;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
-public final class BugAnnotator implements Annotator {
+/**
+ * Highlights the problems of a file and adds their gutter icons in one pass per file. The problems only change
+ * when an analysis is finished, so the pass just applies the {@link ProblemIndex} of the file instead of checking
+ * every element of the file (as an annotator / line marker provider does).
+ */
+public final class BugAnnotator extends ExternalAnnotator<ProblemIndex, ProblemIndex> {
 
 	public BugAnnotator() {
 	}
 
+	@Nullable
+	@Override
+	public ProblemIndex collectInformation(@NotNull final PsiFile file, @NotNull final Editor editor, final boolean hasErrors) {
+		return collectInformation(file); // the problems are shown even if the file has errors
+	}
+
+	@Nullable
 	@Override
-	public void annotate(@NotNull final PsiElement psiElement, @NotNull final AnnotationHolder annotationHolder) {
-		final Project project = psiElement.getProject();
+	public ProblemIndex collectInformation(@NotNull final PsiFile file) {
+		final Project project = file.getProject();
 		final WorkspaceSettings workspaceSettings = WorkspaceSettings.getInstance(project);
-		if (!workspaceSettings.annotationTextRangeMarkup) {
-			return;
+		if (!workspaceSettings.annotationTextRangeMarkup && !workspaceSettings.annotationGutterIcon) {
+			return null;
 		}
 		if (!FindBugsState.get(project).isIdle()) {
-			return;
+			return null;
 		}
-		final ProblemCache cache = psiElement.getProject().getComponent(ProblemCache.class);
+		final ProblemCache cache = project.getComponent(ProblemCache.class);
 		if (cache == null) {
-			return;
+			return null;
 		}
-		final Map<PsiFile, List<ExtendedProblemDescriptor>> problems = cache.getProblems();
+		return cache.getIndex(file);
+	}
 
-		final PsiFile psiFile = psiElement.getContainingFile();
-		if (problems.containsKey(psiFile)) {
-			addAnnotation(psiElement, new ArrayList<ExtendedProblemDescriptor>(problems.get(psiFile)), annotationHolder);
-		}
+	@Nullable
+	@Override
+	public ProblemIndex doAnnotate(final ProblemIndex index) {
+		return index;
 	}
 
-	private static void addAnnotation(@NotNull final PsiElement psiElement, final Iterable<ExtendedProblemDescriptor> problemDescriptors, @NotNull final AnnotationHolder annotationHolder) {
-		final List<ExtendedProblemDescriptor> matchingDescriptors = new ArrayList<ExtendedProblemDescriptor>();
-		for (final ExtendedProblemDescriptor descriptor : problemDescriptors) {
-			final PsiElement problemPsiElement = descriptor.getPsiElement();
-
-			final PsiAnonymousClass psiAnonymousClass = PsiTreeUtil.getParentOfType(psiElement, PsiAnonymousClass.class);
-			if (psiElement.equals(problemPsiElement)) {
-				matchingDescriptors.add(descriptor);
-				addAnnotation(descriptor, matchingDescriptors, psiElement, annotationHolder);
-			} else if (psiAnonymousClass != null && psiAnonymousClass.equals(problemPsiElement)) {
-				matchingDescriptors.add(descriptor);
-				addAnnotation(descriptor, matchingDescriptors, psiAnonymousClass, annotationHolder);
+	@Override
+	public void apply(@NotNull final PsiFile file, final ProblemIndex index, @NotNull final AnnotationHolder annotationHolder) {
+		if (index == null) {
+			return;
+		}
+		final WorkspaceSettings workspaceSettings = WorkspaceSettings.getInstance(file.getProject());
+		for (final PsiElement psiElement : index.getElements()) {
+			if (!psiElement.isValid()) {
+				continue;
+			}
+			final List<ExtendedProblemDescriptor> problemDescriptors = index.getProblems(psiElement);
+			if (workspaceSettings.annotationTextRangeMarkup) {
+				final List<ExtendedProblemDescriptor> matchingDescriptors = new ArrayList<ExtendedProblemDescriptor>();
+				for (final ExtendedProblemDescriptor descriptor : problemDescriptors) {
+					matchingDescriptors.add(descriptor);
+					addAnnotation(descriptor, matchingDescriptors, psiElement, annotationHolder);
+				}
+			}
+			if (workspaceSettings.annotationGutterIcon) {
+				final Annotation annotation = annotationHolder.createInfoAnnotation(psiElement, null);
+				annotation.setGutterIconRenderer(new BugGutterIconRenderer(psiElement, problemDescriptors));
 			}
 		}
 	}
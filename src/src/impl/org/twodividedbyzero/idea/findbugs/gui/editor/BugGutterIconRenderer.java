@@ -0,0 +1,188 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.gui.editor;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.editor.markup.GutterIconRenderer;
+import com.intellij.openapi.ui.popup.JBPopup;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.psi.PsiElement;
+import com.intellij.ui.awt.RelativePoint;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.twodividedbyzero.idea.findbugs.common.ExtendedProblemDescriptor;
+import org.twodividedbyzero.idea.findbugs.common.util.BugInstanceUtil;
+import org.twodividedbyzero.idea.findbugs.common.util.GuiUtil;
+import org.twodividedbyzero.idea.findbugs.gui.intentions.GroupBugIntentionListPopupStep;
+import org.twodividedbyzero.idea.findbugs.gui.intentions.RootGroupBugIntentionListPopupStep;
+import org.twodividedbyzero.idea.findbugs.gui.toolwindow.view.ToolWindowPanel;
+import org.twodividedbyzero.idea.findbugs.intentions.ClearAndSuppressBugIntentionAction;
+import org.twodividedbyzero.idea.findbugs.intentions.ClearBugIntentionAction;
+import org.twodividedbyzero.idea.findbugs.intentions.SuppressReportBugForClassIntentionAction;
+import org.twodividedbyzero.idea.findbugs.intentions.SuppressReportBugIntentionAction;
+
+import javax.swing.Icon;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Gutter icon of the problems of one element, see {@link BugAnnotator}.
+ */
+final class BugGutterIconRenderer extends GutterIconRenderer {
+
+	@SuppressWarnings("HardcodedLineSeparator")
+	private static final Pattern PATTERN = Pattern.compile("\n");
+
+	@NotNull
+	private final PsiElement _psiElement;
+
+	@NotNull
+	private final List<ExtendedProblemDescriptor> _descriptors;
+
+
+	BugGutterIconRenderer(@NotNull final PsiElement psiElement, @NotNull final List<ExtendedProblemDescriptor> descriptors) {
+		_psiElement = psiElement;
+		_descriptors = descriptors;
+	}
+
+
+	@NotNull
+	@Override
+	public Icon getIcon() {
+		return GuiUtil.getTinyIcon(_descriptors.get(0));
+	}
+
+
+	@NotNull
+	@Override
+	public Alignment getAlignment() {
+		return Alignment.LEFT;
+	}
+
+
+	@Override
+	public boolean isNavigateAction() {
+		return true;
+	}
+
+
+	@Nullable
+	@Override
+	public AnAction getClickAction() {
+		return new AnAction() {
+			@Override
+			public void actionPerformed(final AnActionEvent e) {
+				navigate(e);
+			}
+		};
+	}
+
+
+	private void navigate(@NotNull final AnActionEvent e) {
+		final ToolWindowPanel toolWindowPanel = ToolWindowPanel.getInstance(_psiElement.getProject());
+		for (final ExtendedProblemDescriptor descriptor : _descriptors) {
+			if (descriptor.getPsiElement() == _psiElement) {
+				toolWindowPanel.getBugTreePanel().getBugTree().gotoNode(descriptor.getBug());
+				break;
+			}
+		}
+		final JBPopup popup = buildPopupMenu();
+		final InputEvent inputEvent = e.getInputEvent();
+		if (inputEvent instanceof MouseEvent) {
+			popup.show(new RelativePoint((MouseEvent) inputEvent));
+		} else {
+			popup.showInBestPositionFor(e.getDataContext());
+		}
+	}
+
+
+	private JBPopup buildPopupMenu() {
+		final List<GroupBugIntentionListPopupStep> intentionGroups = new ArrayList<GroupBugIntentionListPopupStep>();
+
+		for (final ExtendedProblemDescriptor problemDescriptor : _descriptors) {
+			final List<SuppressReportBugIntentionAction> intentionActions = new ArrayList<SuppressReportBugIntentionAction>(_descriptors.size());
+
+			intentionActions.add(new SuppressReportBugIntentionAction(problemDescriptor));
+			intentionActions.add(new SuppressReportBugForClassIntentionAction(problemDescriptor));
+			intentionActions.add(new ClearBugIntentionAction(problemDescriptor));
+			intentionActions.add(new ClearAndSuppressBugIntentionAction(problemDescriptor));
+
+			final GroupBugIntentionListPopupStep intentionActionGroup = new GroupBugIntentionListPopupStep(_psiElement, intentionActions);
+			intentionGroups.add(intentionActionGroup);
+		}
+
+		final JBPopupFactory factory = JBPopupFactory.getInstance();
+		return factory.createListPopup(new RootGroupBugIntentionListPopupStep(intentionGroups));
+	}
+
+
+	@SuppressWarnings({"HardcodedFileSeparator"})
+	@Override
+	public String getTooltipText() {
+		final StringBuilder buffer = new StringBuilder();
+		buffer.append("<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\">");
+		buffer.append("<HTML><HEAD><TITLE>");
+
+		final int problemDescriptorsSize = _descriptors.size();
+		for (int i = 0; i < problemDescriptorsSize; i++) {
+			final ExtendedProblemDescriptor problemDescriptor = _descriptors.get(i);
+			buffer.append("");
+			buffer.append("</TITLE></HEAD><BODY><H3>");
+			buffer.append(BugInstanceUtil.getBugPatternShortDescription(problemDescriptor.getBug().getInstance()));
+			buffer.append("</H3>");
+			buffer.append(PATTERN.matcher(BugInstanceUtil.getDetailText(problemDescriptor.getBug().getInstance())).replaceAll(""));
+			if (i < _descriptors.size() - 1) {
+				buffer.append("<HR>");
+			}
+
+		}
+
+		buffer.append("</BODY></HTML>");
+		return buffer.toString();
+	}
+
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		final BugGutterIconRenderer that = (BugGutterIconRenderer) o;
+		return _psiElement.equals(that._psiElement) && _descriptors.equals(that._descriptors);
+	}
+
+
+	@Override
+	public int hashCode() {
+		return _psiElement.hashCode();
+	}
+
+
+	@Override
+	public String toString() {
+		return "BugGutterIconRenderer" + "{_problemDescriptors=" + _descriptors + '}';
+	}
+}
@@ -52,7 +52,9 @@ public final class ExportBugCollectionDialog extends DialogWrapper {
 
 	private TextFieldWithBrowseButton targetDirectoryField;
 	private JBCheckBox htmlCheckbox;
+	private JBCheckBox htmlPerPackageCheckbox;
 	private JBCheckBox xmlCheckbox;
+	private JBCheckBox snapshotCheckbox;
 	private JBCheckBox createSubDirectoryCheckbox;
 	private JBCheckBox openInBrowserCheckbox;
 
@@ -92,9 +94,15 @@ public final class ExportBugCollectionDialog extends DialogWrapper {
 		htmlCheckbox = new JBCheckBox(ResourcesLoader.getString("export.options.html"));
 		htmlCheckbox.addActionListener(updateControlsAction);
 
+		htmlPerPackageCheckbox = new JBCheckBox(ResourcesLoader.getString("export.options.htmlPerPackage"));
+		htmlPerPackageCheckbox.addActionListener(updateControlsAction);
+
 		xmlCheckbox = new JBCheckBox(ResourcesLoader.getString("export.options.xml"));
 		xmlCheckbox.addActionListener(updateControlsAction);
 
+		snapshotCheckbox = new JBCheckBox(ResourcesLoader.getString("export.options.snapshot"));
+		snapshotCheckbox.addActionListener(updateControlsAction);
+
 		createSubDirectoryCheckbox = new JBCheckBox(ResourcesLoader.getString("export.options.createSubDir"));
 		createSubDirectoryCheckbox.addActionListener(updateControlsAction);
 
@@ -103,7 +111,9 @@ public final class ExportBugCollectionDialog extends DialogWrapper {
 
 		final OptionGroup optionGroup = new OptionGroup(ResourcesLoader.getString("export.options.title"));
 		optionGroup.add(htmlCheckbox);
+		optionGroup.add(htmlPerPackageCheckbox, true);
 		optionGroup.add(xmlCheckbox);
+		optionGroup.add(snapshotCheckbox);
 		optionGroup.add(createSubDirectoryCheckbox);
 		optionGroup.add(openInBrowserCheckbox);
 
@@ -124,7 +134,9 @@ public final class ExportBugCollectionDialog extends DialogWrapper {
 		targetDirectoryField.setText(initialDirectory);
 
 		htmlCheckbox.setSelected(workspaceSettings.exportBugCollectionAsHtml);
+		htmlPerPackageCheckbox.setSelected(workspaceSettings.exportHtmlBugCollectionPerPackage);
 		xmlCheckbox.setSelected(workspaceSettings.exportBugCollectionAsXml);
+		snapshotCheckbox.setSelected(workspaceSettings.exportBugCollectionAsSnapshot);
 		createSubDirectoryCheckbox.setSelected(workspaceSettings.exportBugCollectionCreateSubDirectory);
 		openInBrowserCheckbox.setSelected(workspaceSettings.openExportedHtmlBugCollectionInBrowser);
 		updateControls();
@@ -135,13 +147,16 @@ public final class ExportBugCollectionDialog extends DialogWrapper {
 
 		workspaceSettings.exportBugCollectionDirectory = targetDirectoryField.getText();
 		workspaceSettings.exportBugCollectionAsHtml = htmlCheckbox.isSelected();
+		workspaceSettings.exportHtmlBugCollectionPerPackage = htmlPerPackageCheckbox.isSelected();
 		workspaceSettings.exportBugCollectionAsXml = xmlCheckbox.isSelected();
+		workspaceSettings.exportBugCollectionAsSnapshot = snapshotCheckbox.isSelected();
 		workspaceSettings.exportBugCollectionCreateSubDirectory = createSubDirectoryCheckbox.isSelected();
 		workspaceSettings.openExportedHtmlBugCollectionInBrowser = openInBrowserCheckbox.isSelected();
 	}
 
 	private void updateControls() {
-		setOKActionEnabled(htmlCheckbox.isSelected() || xmlCheckbox.isSelected());
+		setOKActionEnabled(htmlCheckbox.isSelected() || xmlCheckbox.isSelected() || snapshotCheckbox.isSelected());
+		htmlPerPackageCheckbox.setEnabled(htmlCheckbox.isSelected());
 		openInBrowserCheckbox.setEnabled(htmlCheckbox.isSelected());
 	}
 }
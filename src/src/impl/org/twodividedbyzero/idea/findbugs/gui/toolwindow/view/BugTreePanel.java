@@ -32,6 +32,8 @@ import com.intellij.openapi.editor.markup.HighlighterTargetArea;
 import com.intellij.openapi.editor.markup.RangeHighlighter;
 import com.intellij.openapi.editor.markup.TextAttributes;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiElement;
@@ -45,15 +47,19 @@ import org.jetbrains.annotations.Nullable;
 import org.twodividedbyzero.idea.findbugs.common.EventDispatchThreadHelper;
 import org.twodividedbyzero.idea.findbugs.common.ExtendedProblemDescriptor;
 import org.twodividedbyzero.idea.findbugs.common.util.IdeaUtilImpl;
+import org.twodividedbyzero.idea.findbugs.common.util.New;
 import org.twodividedbyzero.idea.findbugs.core.Bug;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsProject;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsResult;
 import org.twodividedbyzero.idea.findbugs.gui.common.ScrollPaneFacade;
+import org.twodividedbyzero.idea.findbugs.gui.tree.BugTreeHelper;
 import org.twodividedbyzero.idea.findbugs.gui.tree.GroupBy;
+import org.twodividedbyzero.idea.findbugs.gui.tree.model.BugInstanceGroupNode;
 import org.twodividedbyzero.idea.findbugs.gui.tree.model.BugInstanceNode;
 import org.twodividedbyzero.idea.findbugs.gui.tree.model.GroupTreeModel;
 import org.twodividedbyzero.idea.findbugs.gui.tree.model.RootNode;
 import org.twodividedbyzero.idea.findbugs.gui.tree.view.BugTree;
+import org.twodividedbyzero.idea.findbugs.resources.ResourcesLoader;
 
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
@@ -64,8 +70,13 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @SuppressFBWarnings("SE_BAD_FIELD")
 @SuppressWarnings({"AnonymousInnerClass"})
@@ -88,6 +99,9 @@ public class BugTreePanel extends JPanel {
 	private final double _splitPaneHorizontalWeight = 0.4;
 	private boolean _bugPreviewEnabled;
 
+	@Nullable
+	private RegroupTask _regroupTask;
+
 	BugTreePanel(@NotNull final ToolWindowPanel parent, @NotNull final Project project) {
 		setLayout(new BorderLayout());
 
@@ -111,11 +125,26 @@ public class BugTreePanel extends JPanel {
 			return;
 		}*/
 
-		if (_treeModel.getGroupBy() != _groupBy) {
-			_treeModel.setGroupBy(_groupBy);
+		addNodes(Collections.singletonList(bug));
+	}
+
+	/**
+	 * The model keeps its grouping until a running regroup is swapped in, see {@link #regroupTree()}.
+	 */
+	void addNodes(@NotNull final List<Bug> bugs) {
+		if (_regroupTask != null) {
+			_regroupTask._added.addAll(bugs);
 		}
+		_treeModel.addNodes(bugs);
+	}
 
-		_treeModel.addNode(bug);
+	private void removeNodes(@NotNull final List<Bug> bugs) {
+		if (_regroupTask != null) {
+			for (final Bug bug : bugs) {
+				_regroupTask.removed(bug);
+			}
+		}
+		_treeModel.removeNodes(bugs);
 	}
 
 	void updateRootNode(@Nullable final Integer classCount) {
@@ -130,7 +159,61 @@ public class BugTreePanel extends JPanel {
 
 	void clear() {
 		result = null;
+		cancelRegroup();
 		_treeModel.clear();
+		_treeModel.setGroupBy(_groupBy);
+	}
+
+	/**
+	 * Applies the result of an incremental analysis: the bugs of {@code previous} which are not part of
+	 * {@code merged} anymore are removed, the new bugs of {@code merged} are added. Bug instances are compared
+	 * by identity because the merged result takes over the instances of all retained bugs.
+	 *
+	 * @param previous the result the tree was built from ({@code null} if the tree was cleared meanwhile)
+	 * @param merged   the merged result
+	 */
+	void mergeResult(@Nullable final FindBugsResult previous, @NotNull final FindBugsResult merged) {
+		EventDispatchThreadHelper.checkEDT();
+		final Set<BugInstance> previousInstances = Collections.newSetFromMap(new IdentityHashMap<BugInstance, Boolean>());
+		final Set<BugInstance> mergedInstances = Collections.newSetFromMap(new IdentityHashMap<BugInstance, Boolean>());
+		if (previous != null) {
+			for (final SortedBugCollection bugCollection : previous.getResults().values()) {
+				previousInstances.addAll(bugCollection.getCollection());
+			}
+		}
+		for (final SortedBugCollection bugCollection : merged.getResults().values()) {
+			mergedInstances.addAll(bugCollection.getCollection());
+		}
+		if (previous != null) {
+			final List<Bug> removed = New.arrayList();
+			for (final Map.Entry<edu.umd.cs.findbugs.Project, SortedBugCollection> entry : previous.getResults().entrySet()) {
+				final Module module = getModule(entry.getKey());
+				for (final BugInstance bugInstance : entry.getValue().getCollection()) {
+					if (!mergedInstances.contains(bugInstance)) {
+						removed.add(new Bug(module, entry.getValue(), bugInstance));
+					}
+				}
+			}
+			removeNodes(removed);
+		}
+		final List<Bug> added = New.arrayList();
+		for (final Map.Entry<edu.umd.cs.findbugs.Project, SortedBugCollection> entry : merged.getResults().entrySet()) {
+			final Module module = getModule(entry.getKey());
+			for (final BugInstance bugInstance : entry.getValue().getCollection()) {
+				if (!previousInstances.contains(bugInstance)) {
+					added.add(new Bug(module, entry.getValue(), bugInstance));
+				}
+			}
+		}
+		addNodes(added);
+	}
+
+	@Nullable
+	private static Module getModule(@NotNull final edu.umd.cs.findbugs.Project project) {
+		if (project instanceof FindBugsProject) {
+			return ((FindBugsProject) project).getModule();
+		}
+		return null;
 	}
 
 	private GroupTreeModel getTreeModel() {
@@ -303,24 +386,22 @@ public class BugTreePanel extends JPanel {
 		return _groupBy.clone();
 	}
 
+	/**
+	 * Groups the bugs on a background thread and swaps the new tree into the model in one step, so the EDT is not
+	 * blocked by large results. The current tree is kept (and updated) until then.
+	 */
 	private void regroupTree() {
 		EventDispatchThreadHelper.checkEDT();
+		cancelRegroup();
+		final List<Bug> bugs = New.arrayList();
 		if (result != null) {
-			boolean cleared = false;
 			for (final Map.Entry<edu.umd.cs.findbugs.Project, SortedBugCollection> entry : result.getResults().entrySet()) {
-				Module module = null;
-				if (entry.getKey() instanceof FindBugsProject) {
-					module = ((FindBugsProject) entry.getKey()).getModule();
-				}
+				final Module module = getModule(entry.getKey());
 				final Collection<BugInstance> instanceCollection = entry.getValue().getCollection();
-				if (instanceCollection != null && !instanceCollection.isEmpty()) {
-					if (!cleared) {
-						cleared = true;
-						_treeModel.clear();
-					}
+				if (instanceCollection != null) {
 					for (final BugInstance bugInstance : instanceCollection) {
 						if (bugInstance != null) {
-							addNode(new Bug(
+							bugs.add(new Bug(
 									module,
 									entry.getValue(),
 									bugInstance
@@ -331,14 +412,76 @@ public class BugTreePanel extends JPanel {
 			}
 		} else {
 			// may be a analysis is running, we need to regroup existing nodes
-			final Collection<Bug> existing = _treeModel.getBugs();
+			bugs.addAll(_treeModel.getBugs());
+		}
+		if (bugs.isEmpty()) {
 			_treeModel.clear();
-			for (final Bug bug : existing) {
-				addNode(bug);
+			_treeModel.setGroupBy(_groupBy);
+			return;
+		}
+		_regroupTask = new RegroupTask(bugs, _groupBy);
+		_regroupTask.queue();
+	}
+
+	private void cancelRegroup() {
+		if (_regroupTask != null) {
+			_regroupTask.cancel();
+			_regroupTask = null;
+		}
+	}
+
+	private void swapRegrouped(@NotNull final GroupTreeModel regrouped) {
+		final List<List<String>> expanded = New.arrayList();
+		final Enumeration<TreePath> expandedPaths = _bugTree.getExpandedDescendants(new TreePath(_visibleRootNode));
+		if (expandedPaths != null) {
+			while (expandedPaths.hasMoreElements()) {
+				final List<String> groupPath = getGroupPath(expandedPaths.nextElement());
+				if (!groupPath.isEmpty()) {
+					expanded.add(groupPath);
+				}
+			}
+		}
+		final TreePath selectionPath = _bugTree.getSelectionPath();
+
+		_treeModel.swap(regrouped);
+
+		for (final List<String> groupPath : expanded) {
+			final BugInstanceGroupNode group = _treeModel.findGroupNode(groupPath);
+			if (group != null) {
+				_bugTree.expandPath(BugTreeHelper.getPath(group));
+			}
+		}
+		if (selectionPath != null) {
+			final TreeNode selected = getTreeNodeFromPath(selectionPath);
+			final TreeNode node;
+			if (selected instanceof BugInstanceNode) {
+				node = _treeModel.findNodeByBugInstance(((BugInstanceNode) selected).getBug());
+			} else {
+				node = _treeModel.findGroupNode(getGroupPath(selectionPath));
+			}
+			if (node != null) {
+				final TreePath path = BugTreeHelper.getPath(node);
+				_bugTree.setSelectionPath(path);
+				_bugTree.scrollPathToVisible(path);
 			}
 		}
 	}
 
+	/**
+	 * A group is identified by its group names, so an expanded (or selected) group is found again in the
+	 * regrouped tree as long as the leading group by's did not change.
+	 */
+	@NotNull
+	private static List<String> getGroupPath(@NotNull final TreePath treePath) {
+		final List<String> ret = New.arrayList();
+		for (final Object node : treePath.getPath()) {
+			if (node instanceof BugInstanceGroupNode) {
+				ret.add(((BugInstanceGroupNode) node).getGroupName());
+			}
+		}
+		return ret;
+	}
+
 	void adaptSize(final int width, final int height) {
 		//final int newWidth = (int) (width * _splitPaneHorizontalWeight);
 		setPreferredSize(new Dimension(width, height));
@@ -362,4 +505,78 @@ public class BugTreePanel extends JPanel {
 	public GroupTreeModel getGroupModel() {
 		return (GroupTreeModel) _bugTree.getModel();
 	}
+
+	/**
+	 * Builds the regrouped tree, see {@link GroupTreeModel#createRegrouped}. Bugs which are added or removed
+	 * meanwhile (running analysis) are recorded and applied to the regrouped tree before the swap.
+	 * If the user cancels the task, the old grouping is kept.
+	 */
+	private final class RegroupTask extends Task.Backgroundable {
+
+		@NotNull
+		private final List<Bug> _bugs;
+
+		@NotNull
+		private final GroupBy[] _taskGroupBy;
+
+		private final List<Bug> _added;
+		private final List<Bug> _removed;
+		private volatile ProgressIndicator _indicator;
+		private volatile boolean _canceled;
+		private GroupTreeModel _regrouped;
+
+		RegroupTask(@NotNull final List<Bug> bugs, @NotNull final GroupBy[] groupBy) {
+			super(_project, ResourcesLoader.getString("regroup.progress.title"), true);
+			_bugs = bugs;
+			_taskGroupBy = groupBy.clone();
+			_added = New.arrayList();
+			_removed = New.arrayList();
+		}
+
+		@Override
+		public void run(@NotNull final ProgressIndicator indicator) {
+			_indicator = indicator;
+			if (_canceled) {
+				indicator.cancel();
+			}
+			_regrouped = _treeModel.createRegrouped(_bugs, _taskGroupBy, indicator);
+		}
+
+		@Override
+		public void onSuccess() {
+			if (_regroupTask != this) {
+				return; // superseded
+			}
+			_regroupTask = null;
+			_regrouped.removeNodes(_removed);
+			_regrouped.addNodes(_added);
+			swapRegrouped(_regrouped);
+		}
+
+		@Override
+		public void onCancel() {
+			if (_regroupTask == this) {
+				_regroupTask = null;
+				_groupBy = _treeModel.getGroupBy();
+			}
+		}
+
+		void removed(@NotNull final Bug bug) {
+			for (final Iterator<Bug> it = _added.iterator(); it.hasNext(); ) {
+				if (it.next().getInstance() == bug.getInstance()) {
+					it.remove();
+					return;
+				}
+			}
+			_removed.add(bug);
+		}
+
+		void cancel() {
+			_canceled = true;
+			final ProgressIndicator indicator = _indicator;
+			if (indicator != null) {
+				indicator.cancel();
+			}
+		}
+	}
 }
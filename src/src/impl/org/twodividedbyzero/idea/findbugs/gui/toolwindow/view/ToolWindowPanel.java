@@ -54,6 +54,7 @@ import org.twodividedbyzero.idea.findbugs.common.VersionManager;
 import org.twodividedbyzero.idea.findbugs.common.util.FindBugsUtil;
 import org.twodividedbyzero.idea.findbugs.core.Bug;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsResult;
+import org.twodividedbyzero.idea.findbugs.core.ProblemCache;
 import org.twodividedbyzero.idea.findbugs.gui.common.ActionToolbarContainer;
 import org.twodividedbyzero.idea.findbugs.gui.common.AnalysisRunDetailsDialog;
 import org.twodividedbyzero.idea.findbugs.gui.common.BalloonTipFactory;
@@ -64,7 +65,7 @@ import org.twodividedbyzero.idea.findbugs.gui.common.NotificationUtil;
 import org.twodividedbyzero.idea.findbugs.messages.AnalysisStateListener;
 import org.twodividedbyzero.idea.findbugs.messages.ClearListener;
 import org.twodividedbyzero.idea.findbugs.messages.MessageBusManager;
-import org.twodividedbyzero.idea.findbugs.messages.NewBugListener;
+import org.twodividedbyzero.idea.findbugs.messages.NewBugsBatchListener;
 
 import javax.swing.JComponent;
 import javax.swing.JPanel;
@@ -112,6 +113,7 @@ public final class ToolWindowPanel extends JPanel implements AnalysisStateListen
 	private transient PreviewPanel _previewPanel;
 	private final transient ToolWindow _parent;
 	private FindBugsResult result;
+	private boolean incremental;
 
 	public ToolWindowPanel(@NotNull final Project project, final ToolWindow parent) {
 		_project = project;
@@ -126,11 +128,13 @@ public final class ToolWindowPanel extends JPanel implements AnalysisStateListen
 				DaemonCodeAnalyzer.getInstance(_project).restart();
 			}
 		});
-		MessageBusManager.subscribe(project, this, NewBugListener.TOPIC, new NewBugListener() {
+		MessageBusManager.subscribe(project, this, NewBugsBatchListener.TOPIC, new NewBugsBatchListener() {
 			@Override
-			public void newBug(@NotNull final Bug bug, final int analyzedClassCount) {
-				_bugTreePanel.addNode(bug);
-				_bugTreePanel.updateRootNode(analyzedClassCount);
+			public void newBugs(@NotNull final List<Bug> bugs, final int analyzedClassCount) {
+				if (!incremental) { // bugs of an incremental analysis are merged when the analysis is finished
+					_bugTreePanel.addNodes(bugs);
+					_bugTreePanel.updateRootNode(analyzedClassCount);
+				}
 			}
 		});
 	}
@@ -261,11 +265,14 @@ public final class ToolWindowPanel extends JPanel implements AnalysisStateListen
 	}
 
 	@Override
-	public void analysisStarted() {
+	public void analysisStarted(final boolean incremental) {
+		this.incremental = incremental;
 		EditorFactory.getInstance().refreshAllEditors();
 		DaemonCodeAnalyzer.getInstance(_project).restart();
 		updateLayout(false);
-		clear();
+		if (!incremental) {
+			clear();
+		}
 	}
 
 	@Override
@@ -274,11 +281,16 @@ public final class ToolWindowPanel extends JPanel implements AnalysisStateListen
 
 	@Override
 	public void analysisAborted() {
-		_bugTreePanel.setResult(null);
+		if (!incremental) {
+			_bugTreePanel.setResult(null);
+		}
 	}
 
 	@Override
 	public void analysisFinished(@NotNull final FindBugsResult result, @Nullable final Throwable error) {
+		if (incremental) {
+			_bugTreePanel.mergeResult(this.result, result);
+		}
 		_bugTreePanel.setResult(result);
 		final Integer analyzedClassCount = result.getAnalyzedClassCount();
 		_bugTreePanel.updateRootNode(analyzedClassCount);
@@ -336,8 +348,15 @@ public final class ToolWindowPanel extends JPanel implements AnalysisStateListen
 			).setImportant(false).notify(_project);
 		}
 
-		EditorFactory.getInstance().refreshAllEditors();
-		DaemonCodeAnalyzer.getInstance(_project).restart();
+		_project.getComponent(ProblemCache.class).resolvePsiElements(new Runnable() {
+			@Override
+			public void run() {
+				if (!_project.isDisposed()) {
+					EditorFactory.getInstance().refreshAllEditors();
+					DaemonCodeAnalyzer.getInstance(_project).restart();
+				}
+			}
+		});
 	}
 
 	private ComponentListener createComponentListener() {
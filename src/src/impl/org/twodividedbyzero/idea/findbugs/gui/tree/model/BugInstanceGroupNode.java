@@ -23,14 +23,11 @@ import com.intellij.ui.JBColor;
 import edu.umd.cs.findbugs.BugRankCategory;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.twodividedbyzero.idea.findbugs.common.util.New;
 import org.twodividedbyzero.idea.findbugs.core.Bug;
 import org.twodividedbyzero.idea.findbugs.gui.tree.BugInstanceComparator;
 import org.twodividedbyzero.idea.findbugs.gui.tree.GroupBy;
 import org.twodividedbyzero.idea.findbugs.gui.tree.NodeVisitor;
-import org.twodividedbyzero.idea.findbugs.gui.tree.RecurseNodeVisitor;
-import org.twodividedbyzero.idea.findbugs.gui.tree.RecurseNodeVisitor.RecurseVisitCriteria;
 import org.twodividedbyzero.idea.findbugs.gui.tree.view.MaskIcon;
 import org.twodividedbyzero.idea.findbugs.resources.GuiResources;
 
@@ -42,12 +39,14 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 public final class BugInstanceGroupNode extends AbstractTreeNode<VisitableTreeNode> implements VisitableTreeNode {
 
+	private static final Comparator<TreeNode> CHILD_COMPARATOR = new ChildComparator();
+
 	private final List<VisitableTreeNode> _childs;
 	private final Bug bug;
-	private final RecurseNodeVisitor<BugInstanceGroupNode> _recurseNodeVisitor = new RecurseNodeVisitor<BugInstanceGroupNode>(this);
 	private final Project _project;
 
 	/**
@@ -81,27 +80,72 @@ public final class BugInstanceGroupNode extends AbstractTreeNode<VisitableTreeNo
 		return _project;
 	}
 
+	/**
+	 * Bug nodes are inserted sorted (after all equal nodes), group nodes are appended.
+	 */
 	@Override
 	public void addChild(final VisitableTreeNode node) {
-		_childs.add(node);
+		addChildAndGetIndex(node);
+	}
+
+	@Override
+	int addChildAndGetIndex(final VisitableTreeNode node) {
 		if (node instanceof BugInstanceNode && node.isLeaf()) {
-			Collections.sort(_childs, new ChildComparator());
+			final int index = getInsertionIndex(node);
+			_childs.add(index, node);
 			incrementMemberCount();
 			TreeNode treeNode = getParent();
 			while (treeNode != null && treeNode instanceof BugInstanceGroupNode) {
 				((BugInstanceGroupNode) treeNode).incrementMemberCount();
 				treeNode = treeNode.getParent();
 			}
+			return index;
 		}
+		_childs.add(node);
+		return _childs.size() - 1;
 	}
 
-	@Nullable
-	public BugInstanceGroupNode findChildNode(final Bug bug, final int depth, final String groupName) {
-		if (Bug.equalsBugType(this.bug, bug) && depth == _depthFromRoot && groupName.equals(_groupName)) {
-			return this;
+	/**
+	 * @return the index after the last child which is not greater than {@code node}
+	 */
+	private int getInsertionIndex(@NotNull final VisitableTreeNode node) {
+		int low = 0;
+		int high = _childs.size();
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (CHILD_COMPARATOR.compare(_childs.get(mid), node) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	public void removeChild(final VisitableTreeNode node) {
+		if (_childs.remove(node) && node instanceof BugInstanceNode) {
+			decrementMemberCount();
+			TreeNode treeNode = getParent();
+			while (treeNode != null && treeNode instanceof BugInstanceGroupNode) {
+				((BugInstanceGroupNode) treeNode).decrementMemberCount();
+				treeNode = treeNode.getParent();
+			}
+		}
+	}
+
+	@Override
+	void removeChildren(final Set<? extends VisitableTreeNode> children) {
+		int removedBugs = 0;
+		for (final VisitableTreeNode child : _childs) {
+			if (child instanceof BugInstanceNode && children.contains(child)) {
+				removedBugs++;
+			}
+		}
+		super.removeChildren(children);
+		for (TreeNode treeNode = this; treeNode instanceof BugInstanceGroupNode; treeNode = treeNode.getParent()) {
+			((BugInstanceGroupNode) treeNode)._memberCount -= removedBugs;
 		}
-		final RecurseVisitCriteria criteria = new RecurseVisitCriteria(bug, depth, groupName);
-		return _recurseNodeVisitor.findChildNode(criteria);
 	}
 
 	@Override
@@ -117,6 +161,8 @@ public final class BugInstanceGroupNode extends AbstractTreeNode<VisitableTreeNo
 				final BugInstanceGroupNode node = (BugInstanceGroupNode) child;
 				final List<Bug> bugs = node.getAllChildBugs();
 				ret.addAll(ret.size(), bugs);
+			} else if (child instanceof BugInstanceNode) {
+				ret.add(((BugInstanceNode) child).getBug());
 			}
 		}
 		return ret;
@@ -184,6 +230,10 @@ public final class BugInstanceGroupNode extends AbstractTreeNode<VisitableTreeNo
 		++_memberCount;
 	}
 
+	private void decrementMemberCount() {
+		--_memberCount;
+	}
+
 	public Bug getBug() {
 		return bug;
 	}
@@ -18,85 +18,81 @@
  */
 package org.twodividedbyzero.idea.findbugs.gui.tree.model;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiFile;
 import org.jetbrains.annotations.NotNull;
 import org.twodividedbyzero.idea.findbugs.common.EventDispatchThreadHelper;
 import org.twodividedbyzero.idea.findbugs.common.ExtendedProblemDescriptor;
 import org.twodividedbyzero.idea.findbugs.common.util.BugInstanceUtil;
-import org.twodividedbyzero.idea.findbugs.common.util.New;
 import org.twodividedbyzero.idea.findbugs.core.Bug;
 import org.twodividedbyzero.idea.findbugs.core.ProblemCache;
-import org.twodividedbyzero.idea.findbugs.gui.tree.BugInstanceComparator;
 import org.twodividedbyzero.idea.findbugs.gui.tree.GroupBy;
-import org.twodividedbyzero.idea.findbugs.gui.tree.model.Grouper.GrouperCallback;
 
 import javax.annotation.Nullable;
+import javax.swing.tree.TreeNode;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 
-public class GroupTreeModel extends AbstractTreeModel<VisitableTreeNode, RootNode> implements GrouperCallback<Bug> {
+public class GroupTreeModel extends AbstractTreeModel<VisitableTreeNode, RootNode> {
 
 	private static final Logger LOGGER = Logger.getInstance(GroupTreeModel.class.getName());
 
+	/**
+	 * Number of bugs added per read action by {@link #createRegrouped}.
+	 */
+	private static final int REGROUP_CHUNK_SIZE = 500;
+
 	private GroupBy[] _groupBy;
-	private final transient Map<String, Map<Integer, List<BugInstanceGroupNode>>> _groups;
-	private transient Grouper<Bug> _grouper;
+
+	/**
+	 * Group path (group names from the top level down to the group) -> group node.
+	 */
+	private final transient Map<List<String>, BugInstanceGroupNode> _groups;
 	private int _bugCount;
 	private final transient Map<PsiFile, List<ExtendedProblemDescriptor>> _problems;
 
+	/**
+	 * {@code null} for a detached model, see {@link #createRegrouped}.
+	 */
+	@Nullable
+	private final transient ProblemCache _problemCache;
+
 	@NotNull
 	private final transient Project _project;
 
 
 	public GroupTreeModel(@NotNull final RootNode root, final GroupBy[] groupBy, @NotNull final Project project) {
+		this(root, groupBy, project, project.getComponent(ProblemCache.class));
+	}
+
+	private GroupTreeModel(
+			@NotNull final RootNode root,
+			final GroupBy[] groupBy,
+			@NotNull final Project project,
+			@Nullable final ProblemCache problemCache
+	) {
 		_root = root;
 		_project = project;
 		_groupBy = groupBy.clone();
-		_groups = new HashMap<String, Map<Integer, List<BugInstanceGroupNode>>>();
-		_problems = project.getComponent(ProblemCache.class).getProblems();
+		_groups = new HashMap<List<String>, BugInstanceGroupNode>();
+		_problemCache = problemCache;
+		_problems = problemCache != null ? problemCache.getProblems() : new HashMap<PsiFile, List<ExtendedProblemDescriptor>>();
 	}
 
 	Project getProject() {
 		return _project;
 	}
 
-	private void addGroupIfAbsent(final String groupNameKey, final int depth, final BugInstanceGroupNode groupNode) {
-		if (!_groups.containsKey(groupNameKey)) {
-			final Map<Integer, List<BugInstanceGroupNode>> map = new HashMap<Integer, List<BugInstanceGroupNode>>();
-			_groups.put(groupNameKey, map);
-			final List<BugInstanceGroupNode> groupNodes = addGroupIfAbsentImpl(groupNameKey, depth, groupNode);
-			map.put(depth, groupNodes);
-		} else {
-			addGroupIfAbsentImpl(groupNameKey, depth, groupNode);
-		}
-	}
-
-	@NotNull
-	private List<BugInstanceGroupNode> addGroupIfAbsentImpl(final String groupNameKey, final int depth, final BugInstanceGroupNode groupNode) {
-		final Map<Integer, List<BugInstanceGroupNode>> map = _groups.get(groupNameKey);
-
-		if (map.containsKey(depth)) {
-			final List<BugInstanceGroupNode> list = map.get(depth);
-			list.add(groupNode);
-
-			return list;
-		} else {
-			final List<BugInstanceGroupNode> list = new ArrayList<BugInstanceGroupNode>();
-			list.add(groupNode);
-			map.put(depth, list);
-
-			return list;
-		}
-	}
-
 	@SuppressWarnings({"ReturnOfCollectionOrArrayField"})
 	public Map<PsiFile, List<ExtendedProblemDescriptor>> getProblems() {
 		return _problems;
@@ -111,133 +107,274 @@ public class GroupTreeModel extends AbstractTreeModel<VisitableTreeNode, RootNod
 	private void _addProblem(@Nullable final PsiFile value, final BugInstanceNode leaf) {
 		if (value != null) {
 			final ExtendedProblemDescriptor element = new ExtendedProblemDescriptor(value, leaf.getBug());
-			if (_problems.containsKey(value)) {
-				_problems.get(value).add(element);
-			} else {
-				final List<ExtendedProblemDescriptor> list = new ArrayList<ExtendedProblemDescriptor>();
-				list.add(element);
-				_problems.put(value, list);
+			_problems.put(value, ProblemCache.copyAndAdd(_problems.get(value), element)); // see ProblemCache#getProblems
+			problemsChanged();
+		}
+	}
+
+	private void removeProblem(final BugInstanceNode leaf) {
+		final PsiFile psiFile = leaf.getPsiFile();
+		if (psiFile != null) {
+			final List<ExtendedProblemDescriptor> list = _problems.get(psiFile);
+			if (list != null) {
+				final List<ExtendedProblemDescriptor> retained = new ArrayList<ExtendedProblemDescriptor>(list.size());
+				for (final ExtendedProblemDescriptor problem : list) {
+					if (problem.getBug() != leaf.getBug()) {
+						retained.add(problem);
+					}
+				}
+				if (retained.isEmpty()) {
+					_problems.remove(psiFile);
+				} else {
+					_problems.put(psiFile, Collections.unmodifiableList(retained)); // see ProblemCache#getProblems
+				}
+				problemsChanged();
 			}
 		}
 	}
 
+	private void problemsChanged() {
+		if (_problemCache != null) {
+			_problemCache.problemsChanged();
+		}
+	}
+
 	public int getBugCount() {
 		EventDispatchThreadHelper.checkEDT();
 		return _bugCount;
 	}
 
-	@SuppressWarnings({"LockAcquiredButNotSafelyReleased"})
 	public void addNode(@NotNull final Bug bug) {
-		/*if(isHiddenBugGroup(bugInstance)) {
-			return;
-		}*/
-		_bugCount++;
-		group(bug);
+		addNodes(Collections.singletonList(bug));
 	}
 
-	private void group(@NotNull final Bug bug) {
-		if (_grouper == null) {
-			_grouper = new Grouper<Bug>(this);
+	/**
+	 * Adds all {@code bugs} and fires one insert event per affected group (instead of one structure change per bug
+	 * and group level), so the expansion state of the tree is kept.
+	 */
+	public void addNodes(@NotNull final List<Bug> bugs) {
+		EventDispatchThreadHelper.checkEDT();
+		final Map<VisitableTreeNode, InsertedChildren> inserted = new IdentityHashMap<VisitableTreeNode, InsertedChildren>();
+		for (final Bug bug : bugs) {
+			addNodeImpl(bug, inserted);
 		}
-		final List<Comparator<Bug>> groupComparators = BugInstanceComparator.getGroupComparators(_groupBy);
-		_grouper.group(bug, groupComparators);
+		fireNodesInserted(inserted);
 	}
 
-	@Override
-	public void startGroup(final Bug member, final int depth) {
-		EventDispatchThreadHelper.assertInEDTorADT();
-
-		final GroupBy groupBy = _groupBy[depth];
-		final String groupName = GroupBy.getGroupName(groupBy, member);
-		final BugInstanceGroupNode groupNode = new BugInstanceGroupNode(groupBy, groupName, _root, member, depth, _project);
-
-		addGroupIfAbsent(Arrays.toString(BugInstanceUtil.getGroupPath(member, depth, _groupBy)), depth, groupNode);
+	/**
+	 * Adds {@code bug} to its group and creates the missing groups of its group path.
+	 * The groups are looked up by their path, so an insert costs one hash lookup per group level.
+	 *
+	 * @param inserted parent -> inserted children ; the events are fired by the caller ({@code null} if no events are needed)
+	 */
+	private void addNodeImpl(@NotNull final Bug bug, @Nullable final Map<VisitableTreeNode, InsertedChildren> inserted) {
+		_bugCount++;
 
-		_root.addChild(groupNode);
-		nodeStructureChanged(_root);
+		final List<String> groupPath = Arrays.asList(BugInstanceUtil.getFullGroupPath(bug, _groupBy));
+		VisitableTreeNode parent = _root;
+		BugInstanceGroupNode group = null;
+		for (int depth = 0; depth < groupPath.size(); depth++) {
+			final List<String> key = groupPath.subList(0, depth + 1);
+			group = _groups.get(key);
+			if (group == null) {
+				group = new BugInstanceGroupNode(_groupBy[depth], groupPath.get(depth), parent, bug, depth, _project);
+				_groups.put(new ArrayList<String>(key), group);
+				addInserted(inserted, parent, group, parent.getTreeNode().addChildAndGetIndex(group));
+			}
+			parent = group;
+		}
+		if (group == null) {
+			LOGGER.error("No group for " + bug.getInstance());
+			return;
+		}
 
-		startSubGroup(depth + 1, member, member);
+		final BugInstanceNode childNode = new BugInstanceNode(bug, group, _project);
+		final int index = group.addChildAndGetIndex(childNode);
+		addProblem(childNode);
+		addInserted(inserted, group, childNode, index);
 	}
 
-	@Override
-	public void startSubGroup(final int depth, final Bug member, final Bug parent) {
-		EventDispatchThreadHelper.assertInEDTorADT();
-
-		String groupName = GroupBy.getGroupName(_groupBy[depth - 1], member);
-		final BugInstanceGroupNode parentGroup = _root.findChildNode(parent, depth - 1, groupName);
-
-		//final BugInstanceGroupNode parentGroup = ((RootNode) _root).getChildByBugInstance(parent, depth - 1);
-		//final BugInstanceGroupNode parentGroup = ((RootNode) _root).getChildByGroupName(GroupBy.getGroupName(_groupBy[depth - 1], parent), depth - 1);
-		//final BugInstanceGroupNode parentGroup = _groups.get(depth-1 + Arrays.toString(getGroupPath(member)));
-
-		if (parentGroup != null) {
-			final GroupBy groupBy = _groupBy[depth];
-			groupName = GroupBy.getGroupName(groupBy, member);
-			final BugInstanceGroupNode childGroup = new BugInstanceGroupNode(groupBy, groupName, parentGroup, member, depth, _project);
-
-			addGroupIfAbsent(Arrays.toString(BugInstanceUtil.getGroupPath(parent, depth, _groupBy)), depth, childGroup);
-			//addGroupIfAbsent(GroupBy.getGroupName(_groupBy[0], parent), depth, childGroup);
-
-			parentGroup.addChild(childGroup);
-			nodeStructureChanged(parentGroup);
+	private static void addInserted(
+			@Nullable final Map<VisitableTreeNode, InsertedChildren> inserted,
+			@NotNull final VisitableTreeNode parent,
+			@NotNull final VisitableTreeNode child,
+			final int index
+	) {
+		if (inserted == null) {
+			return;
+		}
+		InsertedChildren children = inserted.get(parent);
+		if (children == null) {
+			children = new InsertedChildren();
+			inserted.put(parent, children);
+		}
+		children.add(child, index);
+	}
 
-			if (depth < _groupBy.length - 1) {
-				startSubGroup(depth + 1, member, member);
-			} else {
-				addToGroup(depth, member, member);
+	/**
+	 * Fires one insert event per parent with the final indices of its new children. Parents which are new
+	 * themselves are covered by their own insert event. The existing groups above the inserted nodes are
+	 * reported as changed because their member count changed.
+	 */
+	private void fireNodesInserted(@NotNull final Map<VisitableTreeNode, InsertedChildren> inserted) {
+		final Set<VisitableTreeNode> newNodes = Collections.newSetFromMap(new IdentityHashMap<VisitableTreeNode, Boolean>());
+		for (final InsertedChildren children : inserted.values()) {
+			newNodes.addAll(children.children);
+		}
+		final Set<VisitableTreeNode> changed = Collections.newSetFromMap(new IdentityHashMap<VisitableTreeNode, Boolean>());
+		for (final Map.Entry<VisitableTreeNode, InsertedChildren> entry : inserted.entrySet()) {
+			final VisitableTreeNode parent = entry.getKey();
+			if (newNodes.contains(parent)) {
+				continue;
+			}
+			final int[] childIndices = entry.getValue().getSortedIndices();
+			nodesWereInserted(parent, childIndices);
+			for (TreeNode node = parent; node instanceof BugInstanceGroupNode; node = node.getParent()) {
+				changed.add((VisitableTreeNode) node);
 			}
-		} else {
-			//noinspection ThrowableInstanceNeverThrown
-			LOGGER.error(new NullPointerException("parentGroup can not be null."));
 		}
+		for (final VisitableTreeNode node : changed) {
+			nodeChanged(node);
+		}
+	}
 
-
+	public void removeNode(@NotNull final Bug bug) {
+		removeNodes(Collections.singletonList(bug));
 	}
 
-	@Override
-	public void addToGroup(final int depth, final Bug member, final Bug parent) {
+	/**
+	 * Removes the nodes of {@code bugs} and all groups which become empty, and fires one remove event per
+	 * remaining parent (instead of one structure change per bug), so the expansion state of the tree is kept.
+	 * The bug instances are compared by identity (and not the bug collection), see incremental analysis.
+	 */
+	public void removeNodes(@NotNull final List<Bug> bugs) {
 		EventDispatchThreadHelper.checkEDT();
 
-		final String groupName = GroupBy.getGroupName(_groupBy[depth], member);
-		final BugInstanceGroupNode parentGroup = _root.findChildNode(parent, depth, groupName);
-
-		if (parentGroup != null) {
-			final BugInstanceNode childNode = new BugInstanceNode(member, parentGroup, _project);
-			parentGroup.addChild(childNode);
-			addProblem(childNode);
-			nodeStructureChanged(parentGroup);
-		} else {
-			//noinspection ThrowableInstanceNeverThrown
-			LOGGER.error("parentSubGroup can not be null. ", new NullPointerException());
+		// parent -> children to remove ; a group whose children are all removed is removed from its parent too
+		final Map<VisitableTreeNode, Set<VisitableTreeNode>> removed = new IdentityHashMap<VisitableTreeNode, Set<VisitableTreeNode>>();
+		for (final Bug bug : bugs) {
+			final BugInstanceNode node = findNode(bug, true);
+			if (node != null) {
+				addRemoved(removed, node);
+			}
+		}
+		if (removed.isEmpty()) {
+			return;
 		}
-	}
 
-	@Override
-	public Comparator<Bug> currentGroupComparatorChain(final int depth) {
-		return BugInstanceComparator.getComparatorChain(depth, getGroupBy());
+		final Set<VisitableTreeNode> changed = Collections.newSetFromMap(new IdentityHashMap<VisitableTreeNode, Boolean>());
+		for (final Map.Entry<VisitableTreeNode, Set<VisitableTreeNode>> entry : removed.entrySet()) {
+			final VisitableTreeNode parent = entry.getKey();
+			final VisitableTreeNode grandParent = (VisitableTreeNode) parent.getParent();
+			if (grandParent != null && removed.containsKey(grandParent) && removed.get(grandParent).contains(parent)) {
+				// covered by the remove event of the (grand) parent, but the member counts must be updated
+				removeChildren(parent, entry.getValue());
+				continue;
+			}
+			// one pass over the children instead of one index lookup per removed child
+			final Set<VisitableTreeNode> children = entry.getValue();
+			final int[] childIndices = new int[children.size()];
+			final Object[] removedChildren = new Object[children.size()];
+			int count = 0;
+			for (int i = 0; i < parent.getChildCount() && count < childIndices.length; i++) {
+				final TreeNode child = parent.getChildAt(i);
+				if (children.contains(child)) {
+					childIndices[count] = i;
+					removedChildren[count] = child;
+					count++;
+				}
+			}
+			removeChildren(parent, children);
+			nodesWereRemoved(parent, childIndices, removedChildren);
+			for (TreeNode node = parent; node instanceof BugInstanceGroupNode; node = node.getParent()) {
+				changed.add((VisitableTreeNode) node);
+			}
+		}
+		for (final VisitableTreeNode node : changed) {
+			nodeChanged(node);
+		}
 	}
 
-	@Override
-	public List<Bug> availableGroups(final int depth, @NotNull final Bug bug) {
-		final List<Bug> result = New.arrayList();
-
-		//final GroupBy groupBy = _groupBy[0];
-		//final String groupName = GroupBy.getGroupName(groupBy, bug);
-		final String groupName = Arrays.toString(BugInstanceUtil.getGroupPath(bug, depth, _groupBy));
+	/**
+	 * Registers {@code child} for removal and its parent group too if all its children are removed.
+	 */
+	private static void addRemoved(@NotNull final Map<VisitableTreeNode, Set<VisitableTreeNode>> removed, @NotNull final VisitableTreeNode child) {
+		final VisitableTreeNode parent = (VisitableTreeNode) child.getParent();
+		Set<VisitableTreeNode> children = removed.get(parent);
+		if (children == null) {
+			children = Collections.newSetFromMap(new IdentityHashMap<VisitableTreeNode, Boolean>());
+			removed.put(parent, children);
+		}
+		if (children.add(child) && children.size() == parent.getChildCount() && parent instanceof BugInstanceGroupNode) {
+			addRemoved(removed, parent);
+		}
+	}
 
-		if (_groups.containsKey(groupName)) {
-			final Map<Integer, List<BugInstanceGroupNode>> map = _groups.get(groupName);
+	/**
+	 * Removes {@code children} from {@code parent} and updates the bug count, the problems and the group index.
+	 * The bug nodes of removed groups are handled by their own parent entry.
+	 */
+	private void removeChildren(@NotNull final VisitableTreeNode parent, @NotNull final Set<VisitableTreeNode> children) {
+		for (final VisitableTreeNode child : children) {
+			if (child instanceof BugInstanceNode) {
+				_bugCount--;
+				removeProblem((BugInstanceNode) child);
+			} else if (child instanceof BugInstanceGroupNode) {
+				removeGroup((BugInstanceGroupNode) child);
+			}
+		}
+		parent.getTreeNode().removeChildren(children);
+	}
 
-			if (map.containsKey(depth)) {
-				final List<BugInstanceGroupNode> groupNodes = map.get(depth);
+	private void removeGroup(@NotNull final BugInstanceGroupNode groupNode) {
+		_groups.remove(Arrays.asList(BugInstanceUtil.getGroupPath(groupNode.getBug(), groupNode.getDepth() + 1, _groupBy)));
+	}
 
-				for (final BugInstanceGroupNode node : groupNodes) {
-					result.add(node.getBug());
+	/**
+	 * Builds a detached model of {@code bugs} grouped by {@code groupBy} which can be applied by {@link #swap(GroupTreeModel)}.
+	 * This model is not touched, so this may be called on a background thread. The bugs are added in chunks, each
+	 * one inside a read action because the problem descriptors need the PSI file of the bug.
+	 */
+	@NotNull
+	public GroupTreeModel createRegrouped(@NotNull final List<Bug> bugs, @NotNull final GroupBy[] groupBy, @NotNull final ProgressIndicator indicator) {
+		final GroupTreeModel ret = new GroupTreeModel(new RootNode(_root.getSimpleName()), groupBy, _project, null);
+		for (int start = 0; start < bugs.size(); start += REGROUP_CHUNK_SIZE) {
+			indicator.checkCanceled();
+			indicator.setFraction((double) start / bugs.size());
+			final List<Bug> chunk = bugs.subList(start, Math.min(start + REGROUP_CHUNK_SIZE, bugs.size()));
+			ApplicationManager.getApplication().runReadAction(new Runnable() {
+				@Override
+				public void run() {
+					for (final Bug bug : chunk) {
+						ret.addNodeImpl(bug, null);
+					}
 				}
-			}
+			});
 		}
+		return ret;
+	}
+
+	/**
+	 * Replaces the groups and bugs of this model by the ones of {@code regrouped} (see {@link #createRegrouped})
+	 * and fires one structure change. {@code regrouped} must not be used afterwards.
+	 */
+	public void swap(@NotNull final GroupTreeModel regrouped) {
+		EventDispatchThreadHelper.checkEDT();
 
-		return result;
+		_groupBy = regrouped._groupBy;
+		_bugCount = regrouped._bugCount;
+		_groups.clear();
+		_groups.putAll(regrouped._groups);
+		_problems.clear();
+		_problems.putAll(regrouped._problems);
+		problemsChanged();
+		_root.removeAllChilds();
+		for (final VisitableTreeNode child : regrouped._root.getChildsList()) {
+			((BugInstanceGroupNode) child).setParent(_root);
+			_root.addChild(child);
+		}
+		regrouped._root.removeAllChilds();
+		nodeStructureChanged(_root);
 	}
 
 	public void setGroupBy(final GroupBy[] groupBy) {
@@ -255,31 +392,34 @@ public class GroupTreeModel extends AbstractTreeModel<VisitableTreeNode, RootNod
 		_bugCount = 0;
 		_groups.clear();
 		_problems.clear();
+		problemsChanged();
 		_root.removeAllChilds();
 		nodeStructureChanged(_root);
 		reload();
 
 	}
 
+	/**
+	 * @param groupPath group names from the top level down to the group
+	 */
+	@Nullable
+	public BugInstanceGroupNode findGroupNode(@NotNull final List<String> groupPath) {
+		return _groups.get(groupPath);
+	}
+
 	@Nullable
 	public BugInstanceNode findNodeByBugInstance(final Bug bug) {
-		final String[] fullGroupPath = BugInstanceUtil.getFullGroupPath(bug, _groupBy);
-		final String[] groupNameKey = BugInstanceUtil.getGroupPath(bug, fullGroupPath.length - 1, _groupBy);
-
-		final Map<Integer, List<BugInstanceGroupNode>> map = _groups.get(Arrays.toString(groupNameKey));
-		if (map != null) {
-			for (final Entry<Integer, List<BugInstanceGroupNode>> entry : map.entrySet()) {
-
-				final List<BugInstanceGroupNode> groupNodes = entry.getValue();
-				for (final BugInstanceGroupNode groupNode : groupNodes) {
-
-					final List<VisitableTreeNode> bugInstanceNodes = groupNode.getChildsList();
-					for (final VisitableTreeNode node : bugInstanceNodes) {
-						final Bug otherBug = ((BugInstanceNode) node).getBug();
-						if (otherBug.equals(bug)) {
-							return (BugInstanceNode) node;
-						}
-					}
+		return findNode(bug, false);
+	}
+
+	@Nullable
+	private BugInstanceNode findNode(final Bug bug, final boolean sameInstance) {
+		final BugInstanceGroupNode groupNode = _groups.get(Arrays.asList(BugInstanceUtil.getFullGroupPath(bug, _groupBy)));
+		if (groupNode != null) {
+			for (final VisitableTreeNode node : groupNode.getChildsList()) {
+				final Bug otherBug = ((BugInstanceNode) node).getBug();
+				if (sameInstance ? otherBug.getInstance() == bug.getInstance() : otherBug.equals(bug)) {
+					return (BugInstanceNode) node;
 				}
 			}
 		}
@@ -355,4 +495,34 @@ public class GroupTreeModel extends AbstractTreeModel<VisitableTreeNode, RootNod
 	protected Class<VisitableTreeNode> getNodeClass() {
 		return VisitableTreeNode.class;
 	}
+
+	/**
+	 * The children inserted into one parent by {@link #addNodes} and their current indices, so no index lookup
+	 * is needed to fire the insert event.
+	 */
+	private static final class InsertedChildren {
+		private final List<VisitableTreeNode> children = new ArrayList<VisitableTreeNode>();
+		private int[] indices = new int[4];
+
+		void add(@NotNull final VisitableTreeNode child, final int index) {
+			final int count = children.size();
+			for (int i = 0; i < count; i++) {
+				if (indices[i] >= index) { // shifted by the insert
+					indices[i]++;
+				}
+			}
+			if (count == indices.length) {
+				indices = Arrays.copyOf(indices, count * 2);
+			}
+			indices[count] = index;
+			children.add(child);
+		}
+
+		@NotNull
+		int[] getSortedIndices() {
+			final int[] ret = Arrays.copyOf(indices, children.size());
+			Arrays.sort(ret);
+			return ret;
+		}
+	}
 }
@@ -20,12 +20,9 @@ package org.twodividedbyzero.idea.findbugs.gui.tree.model;
 
 import com.intellij.ui.JBColor;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.twodividedbyzero.idea.findbugs.common.util.New;
 import org.twodividedbyzero.idea.findbugs.core.Bug;
 import org.twodividedbyzero.idea.findbugs.gui.tree.NodeVisitor;
-import org.twodividedbyzero.idea.findbugs.gui.tree.RecurseNodeVisitor;
-import org.twodividedbyzero.idea.findbugs.gui.tree.RecurseNodeVisitor.RecurseVisitCriteria;
 import org.twodividedbyzero.idea.findbugs.gui.tree.view.MaskIcon;
 import org.twodividedbyzero.idea.findbugs.resources.ResourcesLoader;
 
@@ -42,7 +39,6 @@ public class RootNode extends AbstractTreeNode<VisitableTreeNode> implements Vis
 	private int _bugCount;
 	private int _classesCount;
 	private final List<VisitableTreeNode> _childs;
-	private final RecurseNodeVisitor<RootNode> _recurseNodeVisitor = new RecurseNodeVisitor<RootNode>(this);
 
 
 	public RootNode(final String simpleName) {
@@ -75,12 +71,6 @@ public class RootNode extends AbstractTreeNode<VisitableTreeNode> implements Vis
 		return "";
 	}
 
-	@Nullable
-	BugInstanceGroupNode findChildNode(final Bug bug, final int depth, final String groupName) {
-		final RecurseVisitCriteria criteria = new RecurseVisitCriteria(bug, depth, groupName);
-		return _recurseNodeVisitor.findChildNode(criteria);
-	}
-
 	@NotNull
 	List<Bug> getAllChildBugs() {
 		final List<Bug> ret = New.arrayList();
@@ -104,7 +94,6 @@ public class RootNode extends AbstractTreeNode<VisitableTreeNode> implements Vis
 				"{_bugCount=" + _bugCount +
 				", _classesCount=" + _classesCount +
 				", _childs=" + _childs +
-				", _recurseNodeVisitor=" + _recurseNodeVisitor +
 				'}';
 	}
 
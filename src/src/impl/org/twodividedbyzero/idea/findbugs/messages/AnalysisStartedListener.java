@@ -32,7 +32,10 @@ public interface AnalysisStartedListener {
 
 	/**
 	 * Invoked by EDT.
+	 *
+	 * @param incremental true if the bugs of the analysis are merged into the current result when finished
+	 *                    (the current result must not be cleared)
 	 */
-	void analysisStarted();
+	void analysisStarted(boolean incremental);
 
 }
\ No newline at end of file
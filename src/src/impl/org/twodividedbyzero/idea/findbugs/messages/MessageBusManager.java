@@ -28,6 +28,7 @@ import org.twodividedbyzero.idea.findbugs.core.Bug;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsResult;
 import org.twodividedbyzero.idea.findbugs.core.FindBugsState;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -76,15 +77,15 @@ public final class MessageBusManager {
 		publish(project, ClearListener.TOPIC).clear();
 	}
 
-	public static void publishNewBug(@NotNull final Project project, @NotNull final Bug bug, final int analyzedClassCount) {
+	public static void publishNewBugs(@NotNull final Project project, @NotNull final List<Bug> bugs, final int analyzedClassCount) {
 		EventDispatchThreadHelper.checkEDT();
-		publish(project, NewBugListener.TOPIC).newBug(bug, analyzedClassCount);
+		publish(project, NewBugsBatchListener.TOPIC).newBugs(bugs, analyzedClassCount);
 	}
 
-	public static void publishAnalysisStarted(@NotNull final Project project) {
+	public static void publishAnalysisStarted(@NotNull final Project project, final boolean incremental) {
 		EventDispatchThreadHelper.checkEDT();
 		FindBugsState.set(project, FindBugsState.Started);
-		publish(project, AnalysisStartedListener.TOPIC).analysisStarted();
+		publish(project, AnalysisStartedListener.TOPIC).analysisStarted(incremental);
 	}
 
 	public static void publishAnalysisStartedToEDT(@NotNull final Project project) {
@@ -93,7 +94,7 @@ public final class MessageBusManager {
 			@Override
 			public void run() {
 				FindBugsState.set(project, FindBugsState.Started);
-				publish(project, AnalysisStartedListener.TOPIC).analysisStarted();
+				publish(project, AnalysisStartedListener.TOPIC).analysisStarted(false);
 			}
 		});
 	}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Andre Pfeiler
+ * Copyright 2008-2016 Andre Pfeiler
  *
  * This file is part of FindBugs-IDEA.
  *
@@ -22,11 +22,16 @@ import com.intellij.util.messages.Topic;
 import org.jetbrains.annotations.NotNull;
 import org.twodividedbyzero.idea.findbugs.core.Bug;
 
-public interface NewBugListener {
-	Topic<NewBugListener> TOPIC = Topic.create("FindBugs New Bug", NewBugListener.class);
+import java.util.List;
+
+public interface NewBugsBatchListener {
+	Topic<NewBugsBatchListener> TOPIC = Topic.create("FindBugs New Bugs Batch", NewBugsBatchListener.class);
 
 	/**
 	 * Invoked by EDT.
+	 *
+	 * @param bugs               new bugs in reporting order ; do not modify
+	 * @param analyzedClassCount number of classes analyzed so far
 	 */
-	void newBug(@NotNull Bug bug, int analyzedClassCount);
+	void newBugs(@NotNull List<Bug> bugs, int analyzedClassCount);
 }
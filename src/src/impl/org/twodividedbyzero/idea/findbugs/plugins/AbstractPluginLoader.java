@@ -43,12 +43,15 @@ import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public abstract class AbstractPluginLoader {
 
 	private static final Logger LOGGER = Logger.getInstance(AbstractPluginLoader.class);
 
+	private static boolean bundledPluginsDeployed; // @GuardedBy AbstractPluginLoader.class
+
 	private final boolean addEditSettingsLinkToErrorMessage;
 	private final List<String> errorMessages;
 
@@ -57,23 +60,29 @@ public abstract class AbstractPluginLoader {
 		errorMessages = new ArrayList<String>();
 	}
 
+	/**
+	 * Plugins which are already loaded and still enabled are kept ; only plugins whose enabled state has changed
+	 * are loaded or unloaded. The metadata of the plugin jars is read from {@link PluginMetadataCache}.
+	 */
 	public void load(@NotNull final Set<PluginSettings> settings) {
 
 		PluginLoader.invalidate();
 
-		// 1. unload plugins
+		// 1. currently loaded plugins
+		final Map<String, Plugin> loadedByUrl = New.map();
 		for (final Plugin plugin : Plugin.getAllPlugins()) {
 			if (plugin.isCorePlugin()) {
 				seenCorePlugin(plugin);
 			} else {
-				FindBugsCustomPluginUtil.unload(plugin);
+				loadedByUrl.put(FindBugsCustomPluginUtil.getAsString(plugin), plugin);
 			}
 		}
+		final Set<String> keepLoadedUrls = New.set();
 
 
-		// 2. load bundled plugins and unload
+		// 2. bundled plugins
 		final IdeaPluginDescriptor ideaPluginDescriptor = FindBugsPluginUtil.getIdeaPluginDescriptor();
-		Plugins.deploy(ideaPluginDescriptor);
+		deployBundledPlugins(ideaPluginDescriptor);
 		final File[] bundledPlugins = Plugins.getDirectory(ideaPluginDescriptor).listFiles();
 		final Set<String> enabledBundledPluginUrls = New.set();
 		if (bundledPlugins != null) {
@@ -88,21 +97,23 @@ public abstract class AbstractPluginLoader {
 					continue;
 				}
 				try {
-					Plugin plugin = FindBugsCustomPluginUtil.loadTemporary(pluginFile);
-					PluginSettings pluginSettings = PluginSettings.findBundledById(settings, plugin.getPluginId());
+					final PluginMetadataCache.Metadata metadata = getMetadata(pluginFile, loadedByUrl);
+					PluginSettings pluginSettings = PluginSettings.findBundledById(settings, metadata.id);
 					if (pluginSettings == null) {
 						pluginSettings = new PluginSettings();
-						pluginSettings.id = plugin.getPluginId();
+						pluginSettings.id = metadata.id;
 						pluginSettings.bundled = true;
 						pluginSettings.enabled = false;
-						seenBundledPlugin(PluginInfo.create(pluginSettings, plugin));
+						seenBundledPlugin(PluginInfo.create(pluginSettings, metadata));
 					} else {
-						seenConfiguredPlugin(PluginInfo.create(pluginSettings, plugin));
+						seenConfiguredPlugin(PluginInfo.create(pluginSettings, metadata));
 					}
 					if (pluginSettings.enabled) {
-						enabledBundledPluginUrls.add(FindBugsCustomPluginUtil.getAsString(plugin));
+						keepLoadedUrls.add(metadata.url);
+						if (!loadedByUrl.containsKey(metadata.url)) {
+							enabledBundledPluginUrls.add(metadata.url);
+						}
 					}
-					FindBugsCustomPluginUtil.unload(plugin);
 				} catch (final Exception e) {
 					LOGGER.warn("Could not load plugin: " + pluginFile, e);
 				}
@@ -110,7 +121,7 @@ public abstract class AbstractPluginLoader {
 		}
 
 
-		// 3. load user plugins and unload
+		// 3. user plugins
 		final Set<String> enabledUserPluginUrls = new HashSet<String>();
 		for (final PluginSettings pluginSettings : settings) {
 			if (pluginSettings.bundled) {
@@ -137,12 +148,14 @@ public abstract class AbstractPluginLoader {
 					handleError(error);
 					continue;
 				}
-				final Plugin plugin = FindBugsCustomPluginUtil.loadTemporary(pluginUrl);
-				seenConfiguredPlugin(PluginInfo.create(pluginSettings, plugin));
+				final PluginMetadataCache.Metadata metadata = getMetadata(pluginFile, loadedByUrl);
+				seenConfiguredPlugin(PluginInfo.create(pluginSettings, metadata));
 				if (pluginSettings.enabled) {
-					enabledUserPluginUrls.add(pluginUrl);
+					keepLoadedUrls.add(metadata.url);
+					if (!loadedByUrl.containsKey(metadata.url)) {
+						enabledUserPluginUrls.add(pluginUrl);
+					}
 				}
-				FindBugsCustomPluginUtil.unload(plugin);
 			} catch (final Exception e) {
 				final String error = ResourcesLoader.getString("plugins.load.error.text.path", pluginUrl);
 				seenConfiguredPlugin(PluginInfo.create(pluginSettings, error));
@@ -151,11 +164,41 @@ public abstract class AbstractPluginLoader {
 		}
 
 
-		// 4. load enabled plugins
+		// 4. unload disabled plugins and load newly enabled plugins
+		for (final Map.Entry<String, Plugin> loaded : loadedByUrl.entrySet()) {
+			if (!keepLoadedUrls.contains(loaded.getKey())) {
+				FindBugsCustomPluginUtil.unload(loaded.getValue());
+			}
+		}
 		loadPluginsPermanently(enabledBundledPluginUrls, false);
 		loadPluginsPermanently(enabledUserPluginUrls, true);
 	}
 
+	private static synchronized void deployBundledPlugins(@NotNull final IdeaPluginDescriptor ideaPluginDescriptor) {
+		if (!bundledPluginsDeployed) {
+			Plugins.deploy(ideaPluginDescriptor);
+			bundledPluginsDeployed = true;
+		}
+	}
+
+	@NotNull
+	private static PluginMetadataCache.Metadata getMetadata(
+			@NotNull final File pluginFile,
+			@NotNull final Map<String, Plugin> loadedByUrl
+	) throws MalformedURLException, PluginException {
+
+		final PluginMetadataCache.Metadata ret = PluginMetadataCache.get(pluginFile);
+		if (ret != null) {
+			return ret;
+		}
+		// New or changed jar: a loaded plugin of it must be unloaded before, see PluginMetadataCache#load
+		final Plugin loaded = loadedByUrl.remove(FindBugsCustomPluginUtil.getAsString(pluginFile));
+		if (loaded != null) {
+			FindBugsCustomPluginUtil.unload(loaded);
+		}
+		return PluginMetadataCache.load(pluginFile);
+	}
+
 	private void loadPluginsPermanently(@NotNull final Set<String> pluginUrls, final boolean userPlugins) {
 		for (final String pluginUrl : pluginUrls) {
 			try {
@@ -182,6 +225,9 @@ public abstract class AbstractPluginLoader {
 	protected void seenConfiguredPlugin(@NotNull final PluginInfo plugin) {
 	}
 
+	/**
+	 * Invoked for newly loaded plugins only (not for plugins which were loaded already).
+	 */
 	protected void pluginPermanentlyLoaded(@NotNull final Plugin plugin, final boolean userPlugin) {
 	}
 
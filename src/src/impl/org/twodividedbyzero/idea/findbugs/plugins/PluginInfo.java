@@ -18,7 +18,6 @@
  */
 package org.twodividedbyzero.idea.findbugs.plugins;
 
-import edu.umd.cs.findbugs.Plugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.twodividedbyzero.idea.findbugs.core.PluginSettings;
@@ -56,12 +55,12 @@ public final class PluginInfo {
 	}
 
 	@NotNull
-	static PluginInfo create(@NotNull final PluginSettings settings, @NotNull final Plugin plugin) {
+	static PluginInfo create(@NotNull final PluginSettings settings, @NotNull final PluginMetadataCache.Metadata metadata) {
 		return new PluginInfo(
 				settings,
-				plugin.getShortDescription(),
-				plugin.getDetailedDescription(),
-				plugin.getWebsite(),
+				metadata.shortDescription,
+				metadata.detailedDescription,
+				metadata.website,
 				null
 		);
 	}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.plugins;
+
+import edu.umd.cs.findbugs.Plugin;
+import edu.umd.cs.findbugs.PluginException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.twodividedbyzero.idea.findbugs.common.util.FindBugsCustomPluginUtil;
+import org.twodividedbyzero.idea.findbugs.common.util.New;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.util.Map;
+
+/**
+ * Caches the metadata of plugin jars, so a jar is only loaded temporarily (to read its id and descriptions)
+ * when it is seen the first time or has changed (size or modification time).
+ * <p>
+ * Thread safe.
+ */
+final class PluginMetadataCache {
+
+	/**
+	 * Absolute jar path -> metadata
+	 */
+	private static final Map<String, Metadata> METADATA_BY_PATH = New.map();
+
+	private PluginMetadataCache() {
+	}
+
+	/**
+	 * @return the cached metadata or {@code null} if {@code file} was not seen yet or has changed
+	 */
+	@Nullable
+	static synchronized Metadata get(@NotNull final File file) {
+		final Metadata ret = METADATA_BY_PATH.get(file.getAbsolutePath());
+		if (ret != null && ret.length == file.length() && ret.lastModified == file.lastModified()) {
+			return ret;
+		}
+		return null;
+	}
+
+	/**
+	 * Loads {@code file} temporarily to read its metadata. Note that a plugin of {@code file} must not be loaded,
+	 * otherwise it is returned (and unloaded) by {@link FindBugsCustomPluginUtil#loadTemporary(File)}.
+	 */
+	@NotNull
+	static Metadata load(@NotNull final File file) throws MalformedURLException, PluginException {
+		final long length = file.length();
+		final long lastModified = file.lastModified();
+		final Plugin plugin = FindBugsCustomPluginUtil.loadTemporary(file);
+		try {
+			final Metadata ret = new Metadata(
+					length,
+					lastModified,
+					FindBugsCustomPluginUtil.getAsString(plugin),
+					plugin.getPluginId(),
+					plugin.getShortDescription(),
+					plugin.getDetailedDescription(),
+					plugin.getWebsite()
+			);
+			synchronized (PluginMetadataCache.class) {
+				METADATA_BY_PATH.put(file.getAbsolutePath(), ret);
+			}
+			return ret;
+		} finally {
+			FindBugsCustomPluginUtil.unload(plugin);
+		}
+	}
+
+	static final class Metadata {
+		private final long length;
+
+		private final long lastModified;
+
+		@NotNull
+		final String url;
+
+		@NotNull
+		final String id;
+
+		@Nullable
+		final String shortDescription;
+
+		@Nullable
+		final String detailedDescription;
+
+		@Nullable
+		final String website;
+
+		private Metadata(
+				final long length,
+				final long lastModified,
+				@NotNull final String url,
+				@NotNull final String id,
+				@Nullable final String shortDescription,
+				@Nullable final String detailedDescription,
+				@Nullable final String website
+		) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.url = url;
+			this.id = id;
+			this.shortDescription = shortDescription;
+			this.detailedDescription = detailedDescription;
+			this.website = website;
+		}
+	}
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.worker;
+
+import edu.umd.cs.findbugs.AbstractBugReporter;
+import edu.umd.cs.findbugs.AnalysisError;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.FindBugsProgress;
+import edu.umd.cs.findbugs.PackageStats;
+import edu.umd.cs.findbugs.Plugin;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.ProjectStats;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.config.ProjectFilterSettings;
+import edu.umd.cs.findbugs.config.UserPreferences;
+import edu.umd.cs.findbugs.filter.Filter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Entry point of the analysis worker process (see {@link WorkerClient}).
+ * <p>
+ * Reads {@link WorkerMessage}s from {@code System.in} and writes the answers to {@code System.out}.
+ * Everything FindBugs prints to {@code System.out} is redirected to {@code System.err}.
+ * The worker executes one analysis at a time and can be reused for any number of analyses.
+ * Note that this class must not depend on IntelliJ classes, the worker classpath contains only
+ * the plugin and the FindBugs libraries.
+ */
+public final class AnalysisWorker {
+
+	@NotNull
+	private final ObjectInputStream in;
+
+	@NotNull
+	private final ObjectOutputStream out;
+
+	/**
+	 * URI -> loaded custom plugin
+	 */
+	@NotNull
+	private final Map<URI, Plugin> plugins;
+
+	@Nullable
+	private volatile Thread analysisThread;
+
+	private volatile boolean canceled;
+
+	private AnalysisWorker(@NotNull final ObjectInputStream in, @NotNull final ObjectOutputStream out) {
+		this.in = in;
+		this.out = out;
+		plugins = new HashMap<URI, Plugin>();
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final PrintStream protocolOut = System.out;
+		System.setOut(System.err);
+		final ObjectOutputStream out = new WorkerStreams.Output(new BufferedOutputStream(protocolOut));
+		out.flush(); // stream header, the client blocks until it is available
+		final ObjectInputStream in = new WorkerStreams.Input(new BufferedInputStream(System.in));
+		new AnalysisWorker(in, out).run();
+		System.exit(0);
+	}
+
+	private void run() throws IOException, ClassNotFoundException, InterruptedException {
+		while (true) {
+			final WorkerMessage message;
+			try {
+				message = (WorkerMessage) in.readObject();
+			} catch (final EOFException ignored) { // client is gone
+				cancel();
+				return;
+			}
+			switch (message.kind) {
+				case Analyze:
+					final Thread running = analysisThread;
+					if (running != null) {
+						running.join(); // protocol violation ; the client waits for Finished before it sends the next request
+					}
+					startAnalysis((WorkerRequest) message.payload);
+					break;
+				case Cancel:
+					cancel();
+					break;
+				case Shutdown:
+					cancel();
+					return;
+				default:
+					throw new IllegalStateException("Unexpected message " + message.kind);
+			}
+		}
+	}
+
+	private void cancel() {
+		final Thread running = analysisThread;
+		if (running != null) {
+			canceled = true;
+			running.interrupt(); // causes break in FindBugs main loop
+		}
+	}
+
+	private void startAnalysis(@NotNull final WorkerRequest request) {
+		canceled = false;
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					analyze(request);
+					send(new WorkerMessage(WorkerMessage.Kind.Finished, new int[]{canceled ? 1 : 0}));
+				} catch (final Throwable e) {
+					final StringWriter stackTrace = new StringWriter();
+					e.printStackTrace(new PrintWriter(stackTrace));
+					try {
+						send(new WorkerMessage(WorkerMessage.Kind.Failed, stackTrace.toString()));
+					} catch (final IOException ignored) { // client is gone
+					}
+				} finally {
+					analysisThread = null;
+				}
+			}
+		}, "FindBugs-IDEA Worker Analysis");
+		analysisThread = thread;
+		thread.start();
+	}
+
+	private void analyze(@NotNull final WorkerRequest request) throws Exception {
+		loadPlugins(request);
+		final DetectorFactoryCollection detectorFactoryCollection = DetectorFactoryCollection.instance();
+
+		final Project project = new Project();
+		project.setProjectName(request.projectName);
+		for (final String file : request.files) {
+			project.addFile(file);
+		}
+		for (final String auxClasspathEntry : request.auxClasspath) {
+			project.addAuxClasspathEntry(auxClasspathEntry);
+		}
+		for (final String sourceDir : request.sourceDirs) {
+			project.addSourceDir(sourceDir);
+		}
+		for (final Map.Entry<String, Boolean> pluginStatus : request.pluginStatus.entrySet()) {
+			project.setPluginStatusTrinary(pluginStatus.getKey(), pluginStatus.getValue());
+		}
+
+		final UserPreferences userPrefs = UserPreferences.createDefaultUserPreferences();
+		userPrefs.setEffort(request.effort);
+		final ProjectFilterSettings projectFilterSettings = userPrefs.getFilterSettings();
+		projectFilterSettings.setMinRank(request.minRank);
+		projectFilterSettings.setMinPriority(request.minPriority);
+		for (final String category : detectorFactoryCollection.getBugCategories()) {
+			projectFilterSettings.removeCategory(category);
+			projectFilterSettings.addCategory(category);
+		}
+		for (final String category : request.hiddenBugCategories) {
+			projectFilterSettings.removeCategory(category);
+		}
+		for (final Map.Entry<String, Boolean> enabled : request.detectors.entrySet()) {
+			final DetectorFactory detectorFactory = detectorFactoryCollection.getFactory(enabled.getKey());
+			if (detectorFactory != null) {
+				userPrefs.enableDetector(detectorFactory, enabled.getValue());
+			}
+		}
+
+		final SortedBugCollection bugCollection = new SortedBugCollection(project);
+		bugCollection.setDoNotUseCloud(true);
+		final Reporter reporter = new Reporter(bugCollection);
+		reporter.setPriorityThreshold(userPrefs.getUserDetectorThreshold());
+		reporter.setRankThreshold(projectFilterSettings.getMinRank());
+
+		final FindBugs2 engine = new FindBugs2();
+		try {
+			engine.setNoClassOk(true);
+			engine.setMergeSimilarWarnings(false);
+			engine.setBugReporter(createFilteredReporter(reporter, request));
+			engine.setProject(project);
+			engine.setProgressCallback(reporter);
+			engine.setDetectorFactoryCollection(detectorFactoryCollection);
+			engine.setUserPreferences(userPrefs);
+			engine.execute();
+		} catch (final InterruptedException ignored) { // canceled
+		} finally {
+			engine.dispose();
+		}
+
+		if (!canceled) {
+			for (final PackageStats packageStats : bugCollection.getProjectStats().getPackageStats()) {
+				for (final PackageStats.ClassStats classStats : packageStats.getClassStats()) {
+					send(new WorkerMessage(
+							WorkerMessage.Kind.ClassAnalyzed,
+							classStats.getName(),
+							new int[]{classStats.size()},
+							classStats.getSourceFile()
+					));
+				}
+			}
+		}
+	}
+
+	/**
+	 * The worker is reused, so the filter and baseline files are only parsed again if they have changed.
+	 */
+	@NotNull
+	private static BugReporter createFilteredReporter(@NotNull final Reporter reporter, @NotNull final WorkerRequest request) throws Exception {
+		final List<Filter> excludeFilters = new ArrayList<Filter>();
+		for (final String filterFile : request.excludeFilterFiles) {
+			excludeFilters.add(FilterCache.getFilter(filterFile));
+		}
+		final List<Filter> includeFilters = new ArrayList<Filter>();
+		for (final String filterFile : request.includeFilterFiles) {
+			includeFilters.add(FilterCache.getFilter(filterFile));
+		}
+		final List<Set<String>> baselines = new ArrayList<Set<String>>();
+		for (final String baselineFile : request.excludeBugsFiles) {
+			baselines.add(FilterCache.getBaselineHashes(baselineFile));
+		}
+		return FilterCache.createFilteredReporter(reporter, excludeFilters, includeFilters, baselines);
+	}
+
+	/**
+	 * Loads the requested custom plugins and unloads the ones which are not requested anymore.
+	 */
+	private void loadPlugins(@NotNull final WorkerRequest request) throws Exception {
+		for (final Iterator<Map.Entry<URI, Plugin>> it = plugins.entrySet().iterator(); it.hasNext(); ) {
+			final Map.Entry<URI, Plugin> entry = it.next();
+			if (!request.plugins.contains(entry.getKey())) {
+				Plugin.removeCustomPlugin(entry.getValue());
+				it.remove();
+			}
+		}
+		for (final URI uri : request.plugins) {
+			if (!plugins.containsKey(uri)) {
+				final Plugin plugin = Plugin.loadCustomPlugin(uri.toURL(), null);
+				if (plugin != null) {
+					plugin.setGloballyEnabled(true);
+					plugins.put(uri, plugin);
+				}
+			}
+		}
+	}
+
+	private void send(@NotNull final WorkerMessage message) throws IOException {
+		synchronized (out) {
+			out.writeObject(message);
+			out.reset(); // do not keep references to the sent objects
+			out.flush();
+		}
+	}
+
+	private final class Reporter extends AbstractBugReporter implements FindBugsProgress {
+
+		@NotNull
+		private final SortedBugCollection bugCollection;
+
+		private Reporter(@NotNull final SortedBugCollection bugCollection) {
+			this.bugCollection = bugCollection;
+		}
+
+		@Override
+		protected void doReportBug(@NotNull final BugInstance bug) {
+			bugCollection.add(bug);
+			sendProgress(new WorkerMessage(WorkerMessage.Kind.Bug, bug));
+		}
+
+		@Override
+		public void reportAnalysisError(final AnalysisError error) {
+		}
+
+		@Override
+		public void reportMissingClass(final String string) {
+		}
+
+		@Override
+		public void finish() {
+		}
+
+		@Override
+		public void reportQueuedErrors() {
+		}
+
+		@Override
+		public void observeClass(final ClassDescriptor classDescriptor) {
+			if (canceled) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public ProjectStats getProjectStats() {
+			return bugCollection.getProjectStats();
+		}
+
+		@Override
+		public SortedBugCollection getBugCollection() {
+			return bugCollection;
+		}
+
+		@Override
+		public void reportNumberOfArchives(final int numArchives) {
+			sendProgress(new WorkerMessage(WorkerMessage.Kind.NumberOfArchives, new int[]{numArchives}));
+		}
+
+		@Override
+		public void startArchive(final String name) {
+		}
+
+		@Override
+		public void finishArchive() {
+			sendProgress(new WorkerMessage(WorkerMessage.Kind.FinishArchive));
+		}
+
+		@Override
+		public void predictPassCount(final int[] classesPerPass) {
+			sendProgress(new WorkerMessage(WorkerMessage.Kind.PredictPassCount, classesPerPass));
+		}
+
+		@Override
+		public void startAnalysis(final int numClasses) {
+			sendProgress(new WorkerMessage(WorkerMessage.Kind.StartAnalysis, new int[]{numClasses}));
+		}
+
+		@Override
+		public void finishClass() {
+			sendProgress(new WorkerMessage(WorkerMessage.Kind.FinishClass));
+		}
+
+		@Override
+		public void finishPerClassAnalysis() {
+			sendProgress(new WorkerMessage(WorkerMessage.Kind.FinishPerClassAnalysis));
+		}
+
+		private void sendProgress(@NotNull final WorkerMessage message) {
+			try {
+				send(message);
+			} catch (final IOException e) { // client is gone
+				canceled = true;
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.worker;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.DelegatingBugReporter;
+import edu.umd.cs.findbugs.ExcludingHashesBugReporter;
+import edu.umd.cs.findbugs.FilterBugReporter;
+import edu.umd.cs.findbugs.filter.Filter;
+import org.dom4j.DocumentException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Caches parsed include/exclude filter files and the instance hashes of baseline (exclude bugs) files by path,
+ * so a file is parsed again only if its size or modification time has changed. Analyses with different
+ * settings and concurrent analyses of modules share the parsed files.
+ * <p>
+ * Used in process by {@link org.twodividedbyzero.idea.findbugs.core.EngineSession} and by the {@link AnalysisWorker},
+ * so this class must not depend on IntelliJ classes either.
+ * <p>
+ * Thread safe. Cached {@link Filter}s are only used for matching and must not be modified.
+ */
+public final class FilterCache {
+
+	/**
+	 * Absolute path -> parsed filter
+	 */
+	private static final Map<String, Entry<Filter>> FILTERS = new HashMap<String, Entry<Filter>>();
+
+	/**
+	 * Absolute path -> instance hashes of the baseline bugs
+	 */
+	private static final Map<String, Entry<Set<String>>> BASELINES = new HashMap<String, Entry<Set<String>>>();
+
+	private FilterCache() {
+	}
+
+	@NotNull
+	public static Filter getFilter(@NotNull final String path) throws IOException {
+		final File file = new File(path);
+		final Filter cached = get(FILTERS, file);
+		if (cached != null) {
+			return cached;
+		}
+		final long length = file.length();
+		final long lastModified = file.lastModified();
+		final Filter ret = new Filter(path);
+		put(FILTERS, file, new Entry<Filter>(length, lastModified, ret));
+		return ret;
+	}
+
+	/**
+	 * @return the instance hashes of the bugs in the baseline file {@code path} (unmodifiable)
+	 */
+	@NotNull
+	public static Set<String> getBaselineHashes(@NotNull final String path) throws IOException, DocumentException {
+		final File file = new File(path);
+		final Set<String> cached = get(BASELINES, file);
+		if (cached != null) {
+			return cached;
+		}
+		final long length = file.length();
+		final long lastModified = file.lastModified();
+		final Set<String> hashes = new HashSet<String>();
+		ExcludingHashesBugReporter.addToExcludedInstanceHashes(hashes, path);
+		final Set<String> ret = Collections.unmodifiableSet(hashes);
+		put(BASELINES, file, new Entry<Set<String>>(length, lastModified, ret));
+		return ret;
+	}
+
+	/**
+	 * Wraps {@code reporter} with the filters like {@link edu.umd.cs.findbugs.FindBugs2#addFilter(String, boolean)}
+	 * and {@link edu.umd.cs.findbugs.FindBugs2#excludeBaselineBugs(String)} would do, but without parsing the files again.
+	 */
+	@NotNull
+	public static BugReporter createFilteredReporter(
+			@NotNull final BugReporter reporter,
+			@NotNull final List<Filter> excludeFilters,
+			@NotNull final List<Filter> includeFilters,
+			@NotNull final List<Set<String>> baselines
+	) {
+		BugReporter ret = reporter;
+		for (final Filter filter : excludeFilters) {
+			ret = new FilterBugReporter(ret, filter, false);
+		}
+		for (final Filter filter : includeFilters) {
+			ret = new FilterBugReporter(ret, filter, true);
+		}
+		if (!baselines.isEmpty()) {
+			ret = new BaselineBugReporter(ret, baselines);
+		}
+		return ret;
+	}
+
+	@Nullable
+	private static synchronized <T> T get(@NotNull final Map<String, Entry<T>> cache, @NotNull final File file) {
+		final Entry<T> entry = cache.get(file.getAbsolutePath());
+		if (entry != null && entry.length == file.length() && entry.lastModified == file.lastModified()) {
+			return entry.value;
+		}
+		return null;
+	}
+
+	private static synchronized <T> void put(@NotNull final Map<String, Entry<T>> cache, @NotNull final File file, @NotNull final Entry<T> entry) {
+		cache.put(file.getAbsolutePath(), entry);
+	}
+
+	private static final class Entry<T> {
+		private final long length;
+
+		private final long lastModified;
+
+		@NotNull
+		private final T value;
+
+		private Entry(final long length, final long lastModified, @NotNull final T value) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Like {@link ExcludingHashesBugReporter} but with already parsed instance hashes.
+	 */
+	private static final class BaselineBugReporter extends DelegatingBugReporter {
+
+		@NotNull
+		private final Collection<Set<String>> baselines;
+
+		BaselineBugReporter(@NotNull final BugReporter delegate, @NotNull final Collection<Set<String>> baselines) {
+			super(delegate);
+			this.baselines = baselines;
+		}
+
+		@Override
+		public void reportBug(@NotNull final BugInstance bugInstance) {
+			final String instanceHash = bugInstance.getInstanceHash();
+			for (final Set<String> baseline : baselines) {
+				if (baseline.contains(instanceHash)) {
+					return;
+				}
+			}
+			getDelegate().reportBug(bugInstance);
+		}
+	}
+}
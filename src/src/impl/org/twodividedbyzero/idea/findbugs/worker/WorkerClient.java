@@ -0,0 +1,306 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.worker;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.FindBugsProgress;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Starts an {@link AnalysisWorker} process and executes analyses in it. The process is kept alive
+ * between analyses until {@link #dispose()} is invoked or it dies.
+ * <p>
+ * Does not depend on IntelliJ classes, so a worker can be driven headless (f. e. from a main method).
+ * Analyses are executed one at a time.
+ */
+public final class WorkerClient {
+
+	private static final int ERROR_TAIL_LINES = 50;
+
+	/**
+	 * Receives the progress and results of an analysis. Invoked by the thread which invoked
+	 * {@link #analyze(WorkerRequest, Listener)}.
+	 */
+	public interface Listener extends FindBugsProgress {
+
+		void reportBug(@NotNull BugInstance bug);
+
+		void classAnalyzed(@NotNull String className, @Nullable String sourceFile, int size);
+
+		/**
+		 * Polled after each message of the worker. The worker is asked to cancel the analysis once this returns true.
+		 */
+		boolean isCanceled();
+	}
+
+	@NotNull
+	private final Process process;
+
+	@NotNull
+	private final ObjectOutputStream out;
+
+	@NotNull
+	private final ObjectInputStream in;
+
+	/**
+	 * Last lines the worker printed to {@code System.err} ; guarded by itself.
+	 */
+	@NotNull
+	private final LinkedList<String> errorTail;
+
+	/**
+	 * Held while an analysis is executed ; guards the streams.
+	 */
+	@NotNull
+	private final Lock lock;
+
+	private final int maxHeapMb;
+
+	private volatile boolean broken;
+
+	private volatile boolean disposed;
+
+	private WorkerClient(@NotNull final Process process, final int maxHeapMb) throws IOException {
+		this.process = process;
+		this.maxHeapMb = maxHeapMb;
+		lock = new ReentrantLock();
+		errorTail = new LinkedList<String>();
+		startErrorReader(process.getErrorStream());
+		out = new WorkerStreams.Output(new BufferedOutputStream(process.getOutputStream()));
+		out.flush();
+		try {
+			in = new WorkerStreams.Input(new BufferedInputStream(process.getInputStream()));
+		} catch (final IOException e) {
+			throw new IOException("Analysis worker did not start" + getErrorTail(), e);
+		}
+	}
+
+	/**
+	 * @param javaExecutable the java executable used to start the worker JVM
+	 * @param classpath      must contain the plugin classes and the FindBugs libraries
+	 * @param maxHeapMb      maximum heap size of the worker JVM in megabytes
+	 */
+	@NotNull
+	public static WorkerClient start(@NotNull final File javaExecutable, @NotNull final Collection<File> classpath, final int maxHeapMb) throws IOException {
+		final StringBuilder classpathStr = new StringBuilder();
+		for (final File entry : classpath) {
+			if (classpathStr.length() > 0) {
+				classpathStr.append(File.pathSeparatorChar);
+			}
+			classpathStr.append(entry.getAbsolutePath());
+		}
+		final List<String> command = new ArrayList<String>();
+		command.add(javaExecutable.getAbsolutePath());
+		command.add("-Xmx" + maxHeapMb + "m");
+		command.add("-Djava.awt.headless=true");
+		command.add("-cp");
+		command.add(classpathStr.toString());
+		command.add(AnalysisWorker.class.getName());
+
+		final Process process = new ProcessBuilder(command).start();
+		try {
+			return new WorkerClient(process, maxHeapMb);
+		} catch (final IOException e) {
+			process.destroy();
+			throw e;
+		}
+	}
+
+	public int getMaxHeapMb() {
+		return maxHeapMb;
+	}
+
+	/**
+	 * @return false if the worker process died or the communication with it failed
+	 */
+	public boolean isAlive() {
+		if (broken || disposed) {
+			return false;
+		}
+		try {
+			process.exitValue();
+			return false;
+		} catch (final IllegalThreadStateException ignored) { // still running
+			return true;
+		}
+	}
+
+	/**
+	 * Executes the analysis described by {@code request} and blocks until it is finished.
+	 * An {@link IOException} is thrown if the analysis failed or the worker was disposed meanwhile ;
+	 * the worker is still usable if {@link #isAlive()}.
+	 *
+	 * @return true if the analysis was canceled
+	 */
+	public boolean analyze(@NotNull final WorkerRequest request, @NotNull final Listener listener) throws IOException {
+		lock.lock();
+		try {
+			return analyzeImpl(request, listener);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean analyzeImpl(@NotNull final WorkerRequest request, @NotNull final Listener listener) throws IOException {
+		if (disposed) {
+			throw new IOException("Analysis worker is disposed");
+		}
+		send(new WorkerMessage(WorkerMessage.Kind.Analyze, request));
+		boolean cancelSent = false;
+		while (true) {
+			final WorkerMessage message = read();
+			switch (message.kind) {
+				case NumberOfArchives:
+					listener.reportNumberOfArchives(message.getValue(0));
+					break;
+				case FinishArchive:
+					listener.finishArchive();
+					break;
+				case PredictPassCount:
+					listener.predictPassCount(message.values != null ? message.values : new int[]{0});
+					break;
+				case StartAnalysis:
+					listener.startAnalysis(message.getValue(0));
+					break;
+				case FinishClass:
+					listener.finishClass();
+					break;
+				case FinishPerClassAnalysis:
+					listener.finishPerClassAnalysis();
+					break;
+				case Bug:
+					listener.reportBug((BugInstance) message.payload);
+					break;
+				case ClassAnalyzed:
+					listener.classAnalyzed((String) message.payload, message.text, message.getValue(0));
+					break;
+				case Finished:
+					return message.getValue(0) != 0;
+				case Failed:
+					throw new IOException("Analysis worker failed: " + message.payload);
+				default:
+					broken = true;
+					throw new IOException("Unexpected message " + message.kind);
+			}
+			if (!cancelSent && listener.isCanceled()) {
+				send(new WorkerMessage(WorkerMessage.Kind.Cancel));
+				cancelSent = true;
+			}
+		}
+	}
+
+	/**
+	 * Asks the worker to exit (if no analysis is running) and destroys the process.
+	 * Does not block ; a running {@link #analyze(WorkerRequest, Listener)} fails with an {@link IOException}.
+	 */
+	public void dispose() {
+		final boolean alive = isAlive();
+		disposed = true;
+		if (alive && lock.tryLock()) {
+			try {
+				send(new WorkerMessage(WorkerMessage.Kind.Shutdown));
+			} catch (final IOException ignored) { // process is destroyed anyway
+			} finally {
+				lock.unlock();
+			}
+		}
+		process.destroy();
+	}
+
+	private void send(@NotNull final WorkerMessage message) throws IOException {
+		try {
+			out.writeObject(message);
+			out.reset();
+			out.flush();
+		} catch (final IOException e) {
+			broken = true;
+			throw new IOException("Could not send " + message.kind + " to analysis worker" + getErrorTail(), e);
+		}
+	}
+
+	@NotNull
+	private WorkerMessage read() throws IOException {
+		try {
+			return (WorkerMessage) in.readObject();
+		} catch (final ClassNotFoundException e) {
+			broken = true;
+			throw new IOException("Incompatible analysis worker", e);
+		} catch (final IOException e) {
+			broken = true;
+			if (disposed) {
+				throw new IOException("Analysis worker was disposed", e);
+			}
+			throw new IOException("Analysis worker terminated" + getErrorTail(), e);
+		}
+	}
+
+	private void startErrorReader(@NotNull final InputStream errorStream) {
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				final BufferedReader reader = new BufferedReader(new InputStreamReader(errorStream));
+				try {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						synchronized (errorTail) {
+							errorTail.add(line);
+							if (errorTail.size() > ERROR_TAIL_LINES) {
+								errorTail.removeFirst();
+							}
+						}
+					}
+				} catch (final IOException ignored) { // process is gone
+				}
+			}
+		}, "FindBugs-IDEA Worker Error Reader");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@NotNull
+	private String getErrorTail() {
+		synchronized (errorTail) {
+			if (errorTail.isEmpty()) {
+				return "";
+			}
+			final StringBuilder ret = new StringBuilder(":");
+			for (final String line : errorTail) {
+				ret.append('\n').append(line);
+			}
+			return ret.toString();
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.worker;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Serializable;
+
+/**
+ * Message of the protocol between {@link WorkerClient} and {@link AnalysisWorker}.
+ * The messages are exchanged as serialized objects over the standard streams of the worker process.
+ */
+public final class WorkerMessage implements Serializable {
+
+	private static final long serialVersionUID = 0L;
+
+	public enum Kind {
+		/**
+		 * Client to worker, payload is the {@link WorkerRequest}.
+		 */
+		Analyze,
+
+		/**
+		 * Client to worker, cancels the running analysis. The worker answers with {@link #Finished}.
+		 */
+		Cancel,
+
+		/**
+		 * Client to worker, the worker exits.
+		 */
+		Shutdown,
+
+		/**
+		 * Worker to client, progress callbacks (see {@link edu.umd.cs.findbugs.FindBugsProgress}).
+		 */
+		NumberOfArchives,
+		FinishArchive,
+		PredictPassCount,
+		StartAnalysis,
+		FinishClass,
+		FinishPerClassAnalysis,
+
+		/**
+		 * Worker to client, payload is the {@link edu.umd.cs.findbugs.BugInstance}.
+		 */
+		Bug,
+
+		/**
+		 * Worker to client, payload is the class name, values are {@code [size]}
+		 * and {@link #text} is the source file name.
+		 */
+		ClassAnalyzed,
+
+		/**
+		 * Worker to client, values are {@code [canceled ? 1 : 0]}.
+		 */
+		Finished,
+
+		/**
+		 * Worker to client, the analysis failed. Payload is the stack trace.
+		 */
+		Failed
+	}
+
+	@NotNull
+	public final Kind kind;
+
+	@Nullable
+	public final Serializable payload;
+
+	@Nullable
+	public final int[] values;
+
+	@Nullable
+	public final String text;
+
+	public WorkerMessage(@NotNull final Kind kind) {
+		this(kind, null, null, null);
+	}
+
+	public WorkerMessage(@NotNull final Kind kind, @Nullable final Serializable payload) {
+		this(kind, payload, null, null);
+	}
+
+	public WorkerMessage(@NotNull final Kind kind, @Nullable final int[] values) {
+		this(kind, null, values, null);
+	}
+
+	public WorkerMessage(@NotNull final Kind kind, @Nullable final Serializable payload, @Nullable final int[] values, @Nullable final String text) {
+		this.kind = kind;
+		this.payload = payload;
+		this.values = values;
+		this.text = text;
+	}
+
+	int getValue(final int index) {
+		return values != null && values.length > index ? values[index] : 0;
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.worker;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Describes one analysis executed by {@link AnalysisWorker}: the FindBugs project (class files, aux classpath,
+ * source directories), the custom plugins and the user preferences (effort, filter settings, detectors, filter files).
+ */
+public final class WorkerRequest implements Serializable {
+
+	private static final long serialVersionUID = 0L;
+
+	public String projectName = "";
+
+	public ArrayList<String> files = new ArrayList<String>();
+
+	public ArrayList<String> auxClasspath = new ArrayList<String>();
+
+	public ArrayList<String> sourceDirs = new ArrayList<String>();
+
+	/**
+	 * Custom (not core) plugins to load.
+	 */
+	public ArrayList<URI> plugins = new ArrayList<URI>();
+
+	/**
+	 * Plugin id -> enabled state of the project ({@code null} = plugin default).
+	 */
+	public HashMap<String, Boolean> pluginStatus = new HashMap<String, Boolean>();
+
+	public String effort;
+
+	public int minRank;
+
+	public String minPriority;
+
+	public HashSet<String> hiddenBugCategories = new HashSet<String>();
+
+	/**
+	 * Detector short name -> enabled.
+	 */
+	public HashMap<String, Boolean> detectors = new HashMap<String, Boolean>();
+
+	public ArrayList<String> includeFilterFiles = new ArrayList<String>();
+
+	public ArrayList<String> excludeFilterFiles = new ArrayList<String>();
+
+	public ArrayList<String> excludeBugsFiles = new ArrayList<String>();
+}
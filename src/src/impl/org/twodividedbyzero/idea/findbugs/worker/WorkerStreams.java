@@ -0,0 +1,87 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.worker;
+
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * Object streams of the worker protocol.
+ * <p>
+ * {@link edu.umd.cs.findbugs.BugInstance} references its (not serializable) {@link DetectorFactory}.
+ * The factory is written as its short name and resolved against the {@link DetectorFactoryCollection}
+ * of the receiving side.
+ */
+final class WorkerStreams {
+
+	private WorkerStreams() {
+	}
+
+	static final class Output extends ObjectOutputStream {
+
+		Output(@NotNull final OutputStream out) throws IOException {
+			super(out);
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(final Object obj) throws IOException {
+			if (obj instanceof DetectorFactory) {
+				return new DetectorFactoryRef(((DetectorFactory) obj).getShortName());
+			}
+			return obj;
+		}
+	}
+
+	static final class Input extends ObjectInputStream {
+
+		Input(@NotNull final InputStream in) throws IOException {
+			super(in);
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Object resolveObject(final Object obj) throws IOException {
+			if (obj instanceof DetectorFactoryRef) {
+				return DetectorFactoryCollection.instance().getFactory(((DetectorFactoryRef) obj).shortName);
+			}
+			return obj;
+		}
+	}
+
+	private static final class DetectorFactoryRef implements Serializable {
+
+		private static final long serialVersionUID = 0L;
+
+		@NotNull
+		private final String shortName;
+
+		private DetectorFactoryRef(@NotNull final String shortName) {
+			this.shortName = shortName;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.core;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.SourceLineAnnotation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Benchmark driver (not a unit test) for {@link FindBugsResultSnapshot}: writes a synthetic result
+ * (3 modules x n bugs) as deflated and plain snapshot and one module as XML, then compares the file sizes and
+ * the time to read one module (best of three runs). It also checks that a round trip yields the same XML
+ * (without the timestamps and runtime statistics).
+ * <p>
+ * Usage: {@code java ResultSnapshotBenchmark [bugsPerModule] [outputDir]} (defaults: 20000, temp directory)
+ */
+public final class ResultSnapshotBenchmark {
+
+	private static final int MODULE_COUNT = 3;
+	private static final int RUNS = 3;
+
+	private ResultSnapshotBenchmark() {
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final int bugsPerModule = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		final File dir = args.length > 1 ? new File(args[1]) : new File(System.getProperty("java.io.tmpdir"));
+
+		final FindBugsResult result = createResult(bugsPerModule);
+		final File deflated = new File(dir, "benchmark." + FindBugsResultSnapshot.EXTENSION);
+		final File plain = new File(dir, "benchmark-plain." + FindBugsResultSnapshot.EXTENSION);
+		final File xml = new File(dir, "benchmark.xml");
+
+		final Map.Entry<Project, SortedBugCollection> first = result.getResults().entrySet().iterator().next();
+		final String name = first.getKey().getProjectName();
+		FindBugsResultSnapshot.write(deflated, result, true);
+		FindBugsResultSnapshot.write(plain, result, false);
+		first.getValue().writeXML(xml);
+
+		print("XML of one module: %.2f MB", xml.length() / 1e6);
+		print("Snapshot of %d modules: %.2f MB deflated, %.2f MB plain", MODULE_COUNT, deflated.length() / 1e6, plain.length() / 1e6);
+
+		SortedBugCollection fromDeflated = null;
+		SortedBugCollection fromPlain = null;
+		long bestDeflated = Long.MAX_VALUE;
+		long bestPlain = Long.MAX_VALUE;
+		long bestXml = Long.MAX_VALUE;
+		for (int run = 0; run < RUNS; run++) {
+			long start = System.nanoTime();
+			fromDeflated = new SortedBugCollection();
+			FindBugsResultSnapshot.read(deflated, name, fromDeflated);
+			bestDeflated = Math.min(bestDeflated, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			fromPlain = new SortedBugCollection();
+			FindBugsResultSnapshot.read(plain, name, fromPlain);
+			bestPlain = Math.min(bestPlain, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			new SortedBugCollection().readXML(xml);
+			bestXml = Math.min(bestXml, System.nanoTime() - start);
+		}
+		print("Read one module: %d ms from deflated snapshot, %d ms from plain snapshot, %d ms from XML", bestDeflated / 1000000, bestPlain / 1000000, bestXml / 1000000);
+
+		final String expected = toXml(first.getValue());
+		print("Round trip equal: deflated=%s, plain=%s", expected.equals(toXml(fromDeflated)), expected.equals(toXml(fromPlain)));
+	}
+
+	private static FindBugsResult createResult(final int bugsPerModule) {
+		final FindBugsResult ret = new FindBugsResult();
+		for (int m = 0; m < MODULE_COUNT; m++) {
+			final Project project = new Project();
+			project.setProjectName("module" + m);
+			final SortedBugCollection bugCollection = new SortedBugCollection(project);
+			for (int i = 0; i < bugsPerModule; i++) {
+				final String className = "com.acme.pkg" + i % 20 + ".Class" + i % 300;
+				final BugInstance bug = new BugInstance("NP_NULL_ON_SOME_PATH", 1 + i % 3);
+				bug.addClass(className).addMethod(className, "method" + i % 7, "(Ljava/lang/String;)V", false);
+				bug.addSourceLine(new SourceLineAnnotation(className, "Class.java", i % 100, i % 100 + 2, 0, 10));
+				bug.addString("text <&> \u00e9 " + i % 5).addInt(i);
+				bug.setProperty("KEY", "value" + i % 3);
+				bugCollection.add(bug, false);
+			}
+			ret.put(project, bugCollection);
+		}
+		return ret;
+	}
+
+	private static String toXml(final SortedBugCollection bugCollection) throws IOException {
+		final StringWriter writer = new StringWriter();
+		bugCollection.setWithMessages(false);
+		bugCollection.writeXML(writer);
+		// the timestamps and runtime statistics are recomputed on every write
+		return writer.toString().replaceAll("(analysisTimestamp|timestamp|cpu_seconds|clock_seconds|peak_mbytes|alloc_mbytes|gc_seconds)=\"[^\"]*\"", "");
+	}
+
+	private static void print(final String format, final Object... args) {
+		System.out.println(String.format(Locale.ENGLISH, format, args));
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2008-2016 Andre Pfeiler
+ *
+ * This file is part of FindBugs-IDEA.
+ *
+ * FindBugs-IDEA is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FindBugs-IDEA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with FindBugs-IDEA.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.twodividedbyzero.idea.findbugs.gui.tree.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmark driver (not a unit test) for the group lookup of {@link GroupTreeModel}.
+ * <p>
+ * {@link GroupTreeModel} needs a running IDE, so this is a standalone model of both insert paths with three
+ * group levels (9 categories, 250 bug types, n/8 classes):
+ * <ul>
+ * <li>old: the former {@code Grouper} which copied, sorted and binary-searched the sibling groups at every depth,
+ * followed by the recursive {@code RootNode.findChildNode} lookup of the parent group</li>
+ * <li>indexed: the group path index of {@link GroupTreeModel} (one hash lookup per group level)</li>
+ * </ul>
+ * Prints the best of three runs per bug count. Usage: {@code java GroupLookupBenchmark [bugCount...]}
+ */
+public final class GroupLookupBenchmark {
+
+	private static final int DEPTH = 3;
+	private static final int RUNS = 3;
+
+	private static final class Node {
+		private final String name;
+		private final int depth;
+		private final String[] path;
+		private final List<Node> children = new ArrayList<Node>();
+
+		private Node(final String name, final int depth, final String[] path) {
+			this.name = name;
+			this.depth = depth;
+			this.path = path;
+		}
+	}
+
+	private Node root;
+
+	/**
+	 * Old model: parent group path -> depth -> groups.
+	 */
+	private Map<String, Map<Integer, List<Node>>> groups;
+
+	/**
+	 * Indexed model: group path -> group.
+	 */
+	private Map<List<String>, Node> index;
+
+	private GroupLookupBenchmark() {
+	}
+
+	public static void main(final String[] args) {
+		final int[] bugCounts;
+		if (args.length > 0) {
+			bugCounts = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				bugCounts[i] = Integer.parseInt(args[i]);
+			}
+		} else {
+			bugCounts = new int[]{10000, 50000, 100000};
+		}
+		final GroupLookupBenchmark benchmark = new GroupLookupBenchmark();
+		for (final int bugCount : bugCounts) {
+			final String[][] bugs = createBugs(bugCount);
+			long bestOld = Long.MAX_VALUE;
+			long bestIndexed = Long.MAX_VALUE;
+			for (int run = 0; run < RUNS; run++) {
+				benchmark.root = new Node("root", -1, null);
+				benchmark.groups = new HashMap<String, Map<Integer, List<Node>>>();
+				long start = System.nanoTime();
+				for (final String[] bug : bugs) {
+					benchmark.insertOld(bug);
+				}
+				bestOld = Math.min(bestOld, System.nanoTime() - start);
+
+				benchmark.root = new Node("root", -1, null);
+				benchmark.index = new HashMap<List<String>, Node>();
+				start = System.nanoTime();
+				for (final String[] bug : bugs) {
+					benchmark.insertIndexed(bug);
+				}
+				bestIndexed = Math.min(bestIndexed, System.nanoTime() - start);
+			}
+			System.out.println(String.format(Locale.ENGLISH, "%7d bugs: old %7d ms, indexed %4d ms", bugCount, bestOld / 1000000, bestIndexed / 1000000));
+		}
+	}
+
+	/**
+	 * @return group path (category, bug type, class) per bug
+	 */
+	private static String[][] createBugs(final int count) {
+		final Random random = new Random(42);
+		final int classCount = Math.max(50, count / 8);
+		final String[][] ret = new String[count][];
+		for (int i = 0; i < count; i++) {
+			ret[i] = new String[]{"category" + random.nextInt(9), "type" + random.nextInt(250), "com.acme.pkg" + random.nextInt(40) + ".Class" + random.nextInt(classCount)};
+		}
+		return ret;
+	}
+
+	private void insertOld(final String[] bug) {
+		int depth = 0;
+		boolean found = true;
+		for (int i = 0; i < DEPTH; i++) {
+			final int level = i;
+			final Comparator<String[]> comparator = new Comparator<String[]>() {
+				@Override
+				public int compare(final String[] a, final String[] b) {
+					return a[level].compareTo(b[level]);
+				}
+			};
+			final List<String[]> siblings = getSiblingPaths(i, bug);
+			Collections.sort(siblings, comparator);
+			depth = i;
+			if (Collections.binarySearch(siblings, bug, comparator) < 0) {
+				found = false;
+				break;
+			}
+		}
+		Node parent = root;
+		for (int d = 0; d < DEPTH; d++) {
+			if (d > 0) {
+				parent = findChildNode(root, d - 1, bug);
+			}
+			if (!found && d >= depth) {
+				final Node group = new Node(bug[d], d, bug);
+				addGroup(Arrays.toString(Arrays.copyOf(bug, d)), d, group);
+				parent.children.add(group);
+			}
+		}
+		findChildNode(root, DEPTH - 1, bug).children.add(new Node("bug", DEPTH, bug));
+	}
+
+	private List<String[]> getSiblingPaths(final int depth, final String[] bug) {
+		final Map<Integer, List<Node>> byDepth = groups.get(Arrays.toString(Arrays.copyOf(bug, depth)));
+		final List<String[]> ret = new ArrayList<String[]>();
+		if (byDepth != null && byDepth.containsKey(depth)) {
+			for (final Node node : byDepth.get(depth)) {
+				ret.add(node.path);
+			}
+		}
+		return ret;
+	}
+
+	private void addGroup(final String parentPath, final int depth, final Node group) {
+		Map<Integer, List<Node>> byDepth = groups.get(parentPath);
+		if (byDepth == null) {
+			byDepth = new HashMap<Integer, List<Node>>();
+			groups.put(parentPath, byDepth);
+		}
+		List<Node> list = byDepth.get(depth);
+		if (list == null) {
+			list = new ArrayList<Node>();
+			byDepth.put(depth, list);
+		}
+		list.add(group);
+	}
+
+	private static Node findChildNode(final Node start, final int depth, final String[] bug) {
+		for (final Node child : start.children) {
+			if (child.depth == depth && child.name.equals(bug[depth]) && Arrays.equals(Arrays.copyOf(child.path, depth), Arrays.copyOf(bug, depth))) {
+				return child;
+			}
+			if (child.depth < depth) {
+				final Node ret = findChildNode(child, depth, bug);
+				if (ret != null) {
+					return ret;
+				}
+			}
+		}
+		return null;
+	}
+
+	private void insertIndexed(final String[] bug) {
+		final List<String> path = Arrays.asList(bug);
+		Node parent = root;
+		for (int d = 0; d < DEPTH; d++) {
+			final List<String> key = path.subList(0, d + 1);
+			Node group = index.get(key);
+			if (group == null) {
+				group = new Node(bug[d], d, bug);
+				index.put(new ArrayList<String>(key), group);
+				parent.children.add(group);
+			}
+			parent = group;
+		}
+		parent.children.add(new Node("bug", DEPTH, bug));
+	}
+}